@@ -0,0 +1,288 @@
+package tron;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Draws the game board (floor, walls, trails and player heads) through a
+ * scrolling, zoomable viewport.
+ *
+ * The board is split into square chunks of cells. Each visible chunk is
+ * rendered once into an offscreen image and afterwards only patched from
+ * the {@link TrailGrid} change log; chunks that scroll out of view are
+ * evicted. A frame therefore costs a handful of blits plus the head
+ * sprites, and the cost depends on the size of the window rather than
+ * the size of the arena. When the arena does not fit, the camera follows
+ * the midpoint of the players and a {@link Minimap} shows the whole arena.
+ */
+public class ArenaRenderer {
+    private static final int CHUNK_CELLS = 32;
+    private static final int MIN_AUTO_CELL_SIZE = 6;
+    private static final int MIN_CELL_SIZE = 2;
+    private static final int MAX_CELL_SIZE = 64;
+    private static final int MINIMAP_MARGIN = 8;
+    private static final Color BORDER_COLOR = new Color(90, 90, 90, 200);
+    private static final Color[] PICKUP_COLORS = {Color.YELLOW, Color.CYAN, Color.WHITE};
+
+    private final Level level;
+    private final TrailGrid grid;
+    private final Color[] colors;
+    private final Minimap minimap;
+    private final int chunksAcross;
+    private final Map<Integer, BufferedImage> chunks = new LinkedHashMap<>(64, 0.75f, true);
+    private int chunkCapacity = 64;
+    private SpriteAtlas atlas;
+    private int zoom;
+    private final Rectangle visibleCells = new Rectangle();
+    private ArenaRules rules;
+
+    /**
+     * Creates a renderer for one round.
+     *
+     * @param level The level being played
+     * @param grid The trail grid to draw
+     * @param colors The team colors; trail owner {@code n} uses {@code colors[n - 1]}
+     */
+    public ArenaRenderer(Level level, TrailGrid grid, Color... colors) {
+        this.level = level;
+        this.grid = grid;
+        this.colors = colors;
+        this.minimap = new Minimap(level, grid, colors);
+        this.chunksAcross = (level.getWidth() + CHUNK_CELLS - 1) / CHUNK_CELLS;
+    }
+
+    /**
+     * Sets the rules whose pickups and shrinking border are drawn over the board.
+     *
+     * @param rules The round's rules, or null if it has none
+     */
+    public void setRules(ArenaRules rules) {
+        this.rules = rules;
+    }
+
+    /**
+     * Computes the largest whole cell size at which the board fits an area.
+     *
+     * @param width Available width in pixels
+     * @param height Available height in pixels
+     * @return The cell size in pixels, at least 1
+     */
+    public int cellSizeFor(int width, int height) {
+        return Math.max(1, Math.min(width / level.getWidth(), height / level.getHeight()));
+    }
+
+    /**
+     * Enlarges the cells by one zoom step.
+     */
+    public void zoomIn() {
+        int current = currentCellSize();
+        zoom = Math.min(MAX_CELL_SIZE, current + Math.max(1, current / 4));
+    }
+
+    /**
+     * Shrinks the cells by one zoom step.
+     */
+    public void zoomOut() {
+        int current = currentCellSize();
+        zoom = Math.max(MIN_CELL_SIZE, current - Math.max(1, current / 4));
+    }
+
+    /**
+     * Returns to the automatic zoom that fits the arena to the window when possible.
+     */
+    public void resetZoom() {
+        zoom = 0;
+    }
+
+    /**
+     * Paints the visible part of the board into the given area.
+     *
+     * @param g2d The graphics context to paint on
+     * @param x Left edge of the area
+     * @param y Top edge of the area
+     * @param width Width of the area
+     * @param height Height of the area
+     * @param players The players whose heads are drawn, in their team's color
+     */
+    public void paint(Graphics2D g2d, int x, int y, int width, int height, Player... players) {
+        int fit = cellSizeFor(width, height);
+        int cellSize = zoom > 0 ? zoom : Math.max(fit, MIN_AUTO_CELL_SIZE);
+        if(atlas == null || atlas.getCellSize() != cellSize) {
+            atlas = new SpriteAtlas(cellSize, colors);
+            chunks.clear();
+        }
+        applyChanges();
+
+        int boardWidth = level.getWidth() * cellSize;
+        int boardHeight = level.getHeight() * cellSize;
+        int offsetX = cameraOffset(width, boardWidth, cellSize, midpoint(players, true));
+        int offsetY = cameraOffset(height, boardHeight, cellSize, midpoint(players, false));
+
+        int firstX = Math.max(0, -offsetX / cellSize);
+        int firstY = Math.max(0, -offsetY / cellSize);
+        int lastX = Math.min(level.getWidth() - 1, (width - 1 - offsetX) / cellSize);
+        int lastY = Math.min(level.getHeight() - 1, (height - 1 - offsetY) / cellSize);
+        visibleCells.setBounds(firstX, firstY, lastX - firstX + 1, lastY - firstY + 1);
+
+        int firstChunkX = firstX / CHUNK_CELLS;
+        int firstChunkY = firstY / CHUNK_CELLS;
+        int lastChunkX = lastX / CHUNK_CELLS;
+        int lastChunkY = lastY / CHUNK_CELLS;
+        chunkCapacity = Math.max(chunkCapacity, 2 * (lastChunkX - firstChunkX + 1) * (lastChunkY - firstChunkY + 1));
+
+        Shape oldClip = g2d.getClip();
+        g2d.clipRect(x, y, width, height);
+        int chunkPixels = CHUNK_CELLS * cellSize;
+        for(int cy = firstChunkY; cy <= lastChunkY; cy++) {
+            for(int cx = firstChunkX; cx <= lastChunkX; cx++) {
+                g2d.drawImage(chunk(cx, cy), x + offsetX + cx * chunkPixels, y + offsetY + cy * chunkPixels, null);
+            }
+        }
+
+        if(rules != null) {
+            paintRules(g2d, x + offsetX, y + offsetY, cellSize);
+        }
+
+        for(int i = 0; i < players.length; i++) {
+            Point p = players[i].getPosition();
+            atlas.drawHead(g2d, players[i].getTeam() + 1, x + offsetX + p.x * cellSize, y + offsetY + p.y * cellSize);
+        }
+
+        if(boardWidth > width || boardHeight > height) {
+            minimap.paint(g2d,
+                x + width - minimap.getWidth() - MINIMAP_MARGIN,
+                y + height - minimap.getHeight() - MINIMAP_MARGIN,
+                visibleCells);
+        }
+        g2d.setClip(oldClip);
+    }
+
+    /**
+     * Computes where the board starts relative to the viewport along one axis.
+     * Boards smaller than the viewport are centered; larger boards are
+     * scrolled so the focus cell is centered, without showing past the edges.
+     */
+    private static int cameraOffset(int viewport, int board, int cellSize, double focusCell) {
+        if(board <= viewport) {
+            return (viewport - board) / 2;
+        }
+        int camera = (int)(focusCell * cellSize + cellSize / 2.0 - viewport / 2.0);
+        return -Math.max(0, Math.min(board - viewport, camera));
+    }
+
+    /**
+     * Draws the shrinking border and the pickups that are on the board.
+     */
+    private void paintRules(Graphics2D g2d, int originX, int originY, int cellSize) {
+        int inset = rules.getBorderInset();
+        if(inset > 0) {
+            int w = level.getWidth() * cellSize;
+            int h = level.getHeight() * cellSize;
+            int band = inset * cellSize;
+            g2d.setColor(BORDER_COLOR);
+            g2d.fillRect(originX, originY, w, band);
+            g2d.fillRect(originX, originY + h - band, w, band);
+            g2d.fillRect(originX, originY + band, band, h - 2 * band);
+            g2d.fillRect(originX + w - band, originY + band, band, h - 2 * band);
+        }
+        java.util.List<Point> spawns = level.getPickupSpawns();
+        int margin = cellSize / 5;
+        for(int i = 0; i < spawns.size(); i++) {
+            ArenaRules.Pickup pickup = rules.getPickup(i);
+            Point p = spawns.get(i);
+            if(pickup == null || !visibleCells.contains(p)) continue;
+            g2d.setColor(PICKUP_COLORS[pickup.ordinal()]);
+            g2d.fillOval(originX + p.x * cellSize + margin, originY + p.y * cellSize + margin,
+                         cellSize - 2 * margin, cellSize - 2 * margin);
+        }
+    }
+
+    private static double midpoint(Player[] players, boolean horizontal) {
+        if(players.length == 0) return 0;
+        double sum = 0;
+        for(Player p : players) {
+            sum += horizontal ? p.getPosition().x : p.getPosition().y;
+        }
+        return sum / players.length;
+    }
+
+    private int currentCellSize() {
+        if(zoom > 0) return zoom;
+        return atlas == null ? MIN_AUTO_CELL_SIZE : atlas.getCellSize();
+    }
+
+    private void applyChanges() {
+        if(grid.isChangeLogOverflowed()) {
+            chunks.clear();
+            minimap.refreshAll();
+        } else {
+            int count = grid.getChangeCount();
+            for(int i = 0; i < count; i++) {
+                int index = grid.getChange(i);
+                int cx = index % grid.getWidth();
+                int cy = index / grid.getWidth();
+                minimap.cellChanged(cx, cy);
+                BufferedImage image = chunks.get(chunkKey(cx / CHUNK_CELLS, cy / CHUNK_CELLS));
+                if(image != null) {
+                    Graphics2D g = image.createGraphics();
+                    drawCell(g, cx, cy, (cx % CHUNK_CELLS) * atlas.getCellSize(), (cy % CHUNK_CELLS) * atlas.getCellSize());
+                    g.dispose();
+                }
+            }
+        }
+        grid.clearChanges();
+    }
+
+    private BufferedImage chunk(int chunkX, int chunkY) {
+        int key = chunkKey(chunkX, chunkY);
+        BufferedImage image = chunks.get(key);
+        if(image == null) {
+            image = renderChunk(chunkX, chunkY);
+            chunks.put(key, image);
+            while(chunks.size() > chunkCapacity) {
+                chunks.remove(chunks.keySet().iterator().next());
+            }
+        }
+        return image;
+    }
+
+    private BufferedImage renderChunk(int chunkX, int chunkY) {
+        int cellSize = atlas.getCellSize();
+        int startX = chunkX * CHUNK_CELLS;
+        int startY = chunkY * CHUNK_CELLS;
+        int cellsX = Math.min(CHUNK_CELLS, level.getWidth() - startX);
+        int cellsY = Math.min(CHUNK_CELLS, level.getHeight() - startY);
+        BufferedImage image = SpriteAtlas.createImage(cellsX * cellSize, cellsY * cellSize, Transparency.OPAQUE);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.DARK_GRAY);
+        g.fillRect(0, 0, image.getWidth(), image.getHeight());
+        for(int cy = 0; cy < cellsY; cy++) {
+            for(int cx = 0; cx < cellsX; cx++) {
+                int cellX = startX + cx;
+                int cellY = startY + cy;
+                if(grid.getOwner(cellX, cellY) != TrailGrid.EMPTY || level.isWall(cellX, cellY)) {
+                    drawCell(g, cellX, cellY, cx * cellSize, cy * cellSize);
+                }
+            }
+        }
+        g.dispose();
+        return image;
+    }
+
+    private void drawCell(Graphics g, int cx, int cy, int px, int py) {
+        int owner = grid.getOwner(cx, cy);
+        if(owner != TrailGrid.EMPTY) {
+            atlas.drawTrail(g, owner, grid.getLinks(cx, cy), px, py);
+        } else if(level.isWall(cx, cy)) {
+            atlas.drawWall(g, px, py);
+        } else {
+            atlas.drawFloor(g, px, py);
+        }
+    }
+
+    private int chunkKey(int chunkX, int chunkY) {
+        return chunkY * chunksAcross + chunkX;
+    }
+}
@@ -0,0 +1,364 @@
+package tron;
+
+import java.awt.Point;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Optional rules a level can turn on with directives in its file:
+ * timed pickups, trails that decay and arena borders that shrink.
+ *
+ * Everything that happens at a later tick is an event on an
+ * {@link EventWheel}, so a match can have thousands of pending decays,
+ * expiries and spawns at a cost of O(1) each. All randomness comes from
+ * the engine's generator, so rounds with rules still replay exactly.
+ *
+ * Supported directives:
+ * <ul>
+ * <li>{@code @decay=N} trail cells vanish N ticks after they are laid</li>
+ * <li>{@code @shrink=N} the border moves in by one cell every N ticks</li>
+ * <li>{@code @pickups=N} a pickup appears on a random spawn point every N ticks</li>
+ * <li>{@code @pickup-lifetime=N} an uncollected pickup disappears after N ticks</li>
+ * <li>{@code @effect=N} speed boost and phase-through last N ticks</li>
+ * </ul>
+ */
+public class ArenaRules {
+    /** Setting for the number of ticks before a trail cell decays. */
+    public static final String DECAY = "decay";
+    /** Setting for the number of ticks between border shrinks. */
+    public static final String SHRINK = "shrink";
+    /** Setting for the number of ticks between pickup spawns. */
+    public static final String PICKUP_INTERVAL = "pickups";
+    /** Setting for the number of ticks an uncollected pickup stays. */
+    public static final String PICKUP_LIFETIME = "pickup-lifetime";
+    /** Setting for the number of ticks a pickup's effect lasts. */
+    public static final String EFFECT_TICKS = "effect";
+
+    /**
+     * Kinds of pickup.
+     */
+    public enum Pickup {
+        /** Moves the player two cells per tick. */
+        SPEED_BOOST,
+        /** Lets the player pass through trails. */
+        PHASE,
+        /** Removes every trail on the board. */
+        TRAIL_ERASER
+    }
+
+    private static final Pickup[] PICKUPS = Pickup.values();
+    private static final int WHEEL_SLOTS = 256;
+    private static final int MIN_ARENA = 6;
+
+    private static final int EVENT_SPAWN = 1;
+    private static final int EVENT_EXPIRE = 2;
+    private static final int EVENT_DECAY = 3;
+    private static final int EVENT_SHRINK = 4;
+
+    private final Level level;
+    private final int decayTicks;
+    private final int shrinkTicks;
+    private final int pickupInterval;
+    private final int pickupLifetime;
+    private final int effectTicks;
+    private final int maxInset;
+    private final EventWheel wheel = new EventWheel(WHEEL_SLOTS);
+    private final EventWheel.Handler handler = this::fire;
+
+    private final int[] spawnCells;
+    private final int[] spawnOrder;
+    private final byte[] pickups;
+    private final int[] pickupSerials;
+
+    private final long[] boostUntil;
+    private final long[] phaseUntil;
+    private final int[] generations;
+    private int inset;
+
+    private GameEngine engine;
+    private final Point removed = new Point();
+    private final Point oldest = new Point();
+
+    /**
+     * Creates the rules a level asks for.
+     *
+     * @param level The level being played
+     * @param playerCount The number of players in the round
+     * @return The rules, or null if the level does not turn any on
+     */
+    public static ArenaRules forLevel(Level level, int playerCount) {
+        boolean pickups = !level.getPickupSpawns().isEmpty();
+        if(level.getSetting(DECAY, 0) <= 0 && level.getSetting(SHRINK, 0) <= 0 && !pickups) {
+            return null;
+        }
+        return new ArenaRules(level, playerCount);
+    }
+
+    private ArenaRules(Level level, int playerCount) {
+        this.level = level;
+        this.decayTicks = Math.max(0, level.getSetting(DECAY, 0));
+        this.shrinkTicks = Math.max(0, level.getSetting(SHRINK, 0));
+        this.pickupInterval = Math.max(1, level.getSetting(PICKUP_INTERVAL, 50));
+        this.pickupLifetime = Math.max(1, level.getSetting(PICKUP_LIFETIME, 100));
+        this.effectTicks = Math.max(1, level.getSetting(EFFECT_TICKS, 30));
+        this.maxInset = Math.max(0, (Math.min(level.getWidth(), level.getHeight()) - MIN_ARENA) / 2);
+
+        // Spawn points sorted by cell index, so finding the pickup under a
+        // player is a binary search
+        List<Point> spawns = level.getPickupSpawns();
+        long[] keyed = new long[spawns.size()];
+        for(int i = 0; i < keyed.length; i++) {
+            Point p = spawns.get(i);
+            keyed[i] = ((long)(p.y * level.getWidth() + p.x) << 32) | i;
+        }
+        Arrays.sort(keyed);
+        spawnCells = new int[keyed.length];
+        spawnOrder = new int[keyed.length];
+        for(int i = 0; i < keyed.length; i++) {
+            spawnCells[i] = (int)(keyed[i] >>> 32);
+            spawnOrder[i] = (int)keyed[i];
+        }
+        pickups = new byte[spawns.size()];
+        Arrays.fill(pickups, (byte)-1);
+        pickupSerials = new int[spawns.size()];
+
+        boostUntil = new long[playerCount];
+        phaseUntil = new long[playerCount];
+        generations = new int[playerCount];
+
+        if(!spawns.isEmpty()) wheel.schedule(pickupInterval, event(EVENT_SPAWN, 0, 0));
+        if(shrinkTicks > 0) wheel.schedule(shrinkTicks, event(EVENT_SHRINK, 0, 0));
+    }
+
+    /**
+     * Fires the events due on the engine's current tick. Called before the players move.
+     *
+     * @param engine The round being played
+     */
+    void beforeMove(GameEngine engine) {
+        this.engine = engine;
+        wheel.advance(engine.getTickCount(), handler);
+    }
+
+    /**
+     * Records a newly laid trail cell so it can decay later.
+     *
+     * @param engine The round being played
+     * @param playerIndex 0-based index of the player that laid the cell
+     */
+    void cellLaid(GameEngine engine, int playerIndex) {
+        if(decayTicks > 0) {
+            wheel.schedule(engine.getTickCount() + decayTicks,
+                event(EVENT_DECAY, playerIndex, generations[playerIndex]));
+        }
+    }
+
+    /**
+     * Lets players still in the round collect the pickups they have reached.
+     * Called after the players move.
+     *
+     * @param engine The round being played
+     */
+    void afterMove(GameEngine engine) {
+        if(spawnCells.length == 0) return;
+        for(int i = 0; i < engine.getPlayerCount(); i++) {
+            if(engine.isEliminated(i)) continue;
+            Point p = engine.getPlayer(i).getPosition();
+            if(!level.isWall(p.x, p.y)) {
+                collect(engine, i, p.y * level.getWidth() + p.x);
+            }
+        }
+    }
+
+    private void collect(GameEngine engine, int playerIndex, int cell) {
+        int found = Arrays.binarySearch(spawnCells, cell);
+        if(found < 0) return;
+        int spawn = spawnOrder[found];
+        if(pickups[spawn] < 0) return;
+        Pickup pickup = PICKUPS[pickups[spawn]];
+        pickups[spawn] = -1;
+        long tick = engine.getTickCount();
+        switch(pickup) {
+            case SPEED_BOOST: boostUntil[playerIndex] = tick + effectTicks; break;
+            case PHASE: phaseUntil[playerIndex] = tick + effectTicks; break;
+            case TRAIL_ERASER: eraseTrails(engine); break;
+        }
+    }
+
+    private void eraseTrails(GameEngine engine) {
+        TrailGrid grid = engine.getTrailGrid();
+        for(int i = 0; i < engine.getPlayerCount(); i++) {
+            TrailHistory trail = engine.getTrail(i);
+            trail.forEachCell(grid::clear);
+            trail.clear();
+            // Decays already scheduled for the erased cells must not fire
+            generations[i]++;
+        }
+    }
+
+    private void fire(long event) {
+        int type = (int)(event & 0xFF);
+        int index = (int)((event >>> 8) & 0xFFFFFF);
+        int arg = (int)(event >>> 32);
+        long tick = engine.getTickCount();
+        switch(type) {
+            case EVENT_SPAWN:
+                spawnPickup();
+                wheel.schedule(tick + pickupInterval, event);
+                break;
+            case EVENT_EXPIRE:
+                if(pickupSerials[index] == arg) pickups[index] = -1;
+                break;
+            case EVENT_DECAY:
+                if(generations[index] == arg) decay(index);
+                break;
+            case EVENT_SHRINK:
+                if(inset < maxInset) {
+                    inset++;
+                    removeOutsidePickups();
+                    wheel.schedule(tick + shrinkTicks, event);
+                }
+                break;
+        }
+    }
+
+    private void spawnPickup() {
+        int spawn = engine.nextRandom(pickups.length);
+        int type = engine.nextRandom(PICKUPS.length);
+        Point p = level.getPickupSpawns().get(spawn);
+        if(pickups[spawn] >= 0 || engine.isBlocked(p.x, p.y)) return;
+        for(Player player : engine.getPlayers()) {
+            if(player.getPosition().equals(p)) return;
+        }
+        pickups[spawn] = (byte)type;
+        pickupSerials[spawn]++;
+        wheel.schedule(engine.getTickCount() + pickupLifetime, event(EVENT_EXPIRE, spawn, pickupSerials[spawn]));
+    }
+
+    private void decay(int playerIndex) {
+        TrailHistory trail = engine.getTrail(playerIndex);
+        TrailGrid grid = engine.getTrailGrid();
+        int owner = engine.getPlayer(playerIndex).getTeam() + 1;
+        if(!trail.removeFirst(removed)) return;
+        // A phasing player may have laid its own trail over this cell
+        if(grid.getOwner(removed.x, removed.y) == owner) {
+            grid.clear(removed.x, removed.y);
+        }
+        if(trail.peekFirst(oldest) && grid.getOwner(oldest.x, oldest.y) == owner) {
+            int links = grid.getLinks(oldest.x, oldest.y) & ~TrailGrid.linkTowards(oldest, removed);
+            grid.set(oldest.x, oldest.y, owner, links);
+        }
+    }
+
+    private void removeOutsidePickups() {
+        List<Point> spawns = level.getPickupSpawns();
+        for(int i = 0; i < pickups.length; i++) {
+            Point p = spawns.get(i);
+            if(isOutside(p.x, p.y)) pickups[i] = -1;
+        }
+    }
+
+    private static long event(int type, int index, int arg) {
+        return type | ((long)index << 8) | ((long)arg << 32);
+    }
+
+    /**
+     * Checks whether a cell has been cut off by the shrinking border.
+     *
+     * @param x X-coordinate to check
+     * @param y Y-coordinate to check
+     * @return true if the cell lies outside the current border
+     */
+    public boolean isOutside(int x, int y) {
+        return x < inset || y < inset || x >= level.getWidth() - inset || y >= level.getHeight() - inset;
+    }
+
+    /**
+     * @param playerIndex 0-based index of the player
+     * @param tick The tick being played
+     * @return true if the player moves two cells on that tick
+     */
+    public boolean isBoosted(int playerIndex, long tick) {
+        return tick <= boostUntil[playerIndex];
+    }
+
+    /**
+     * @param playerIndex 0-based index of the player
+     * @param tick The tick being played
+     * @return true if the player passes through trails on that tick
+     */
+    public boolean isPhasing(int playerIndex, long tick) {
+        return tick <= phaseUntil[playerIndex];
+    }
+
+    /**
+     * @return The number of cells the border has moved in on each side
+     */
+    public int getBorderInset() { return inset; }
+
+    /**
+     * @return The number of pickup spawn points
+     */
+    public int getSpawnCount() { return pickups.length; }
+
+    /**
+     * @param spawn 0-based spawn point index, in the order of {@link Level#getPickupSpawns()}
+     * @return The pickup waiting there, or null if there is none
+     */
+    public Pickup getPickup(int spawn) {
+        return pickups[spawn] < 0 ? null : PICKUPS[pickups[spawn]];
+    }
+
+    /**
+     * @return The number of pending timed events
+     */
+    public int getPendingEventCount() { return wheel.size(); }
+
+    /**
+     * Writes the rules' state for a snapshot.
+     *
+     * @param out The stream to write to
+     * @throws IOException if writing fails
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(inset);
+        for(int i = 0; i < generations.length; i++) {
+            out.writeLong(boostUntil[i]);
+            out.writeLong(phaseUntil[i]);
+            out.writeInt(generations[i]);
+        }
+        out.writeInt(pickups.length);
+        for(int i = 0; i < pickups.length; i++) {
+            out.writeByte(pickups[i]);
+            out.writeInt(pickupSerials[i]);
+        }
+        wheel.writeTo(out);
+    }
+
+    /**
+     * Restores state written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in The stream to read from
+     * @throws IOException if reading fails or the state does not match the level
+     */
+    void readFrom(DataInput in) throws IOException {
+        inset = in.readInt();
+        for(int i = 0; i < generations.length; i++) {
+            boostUntil[i] = in.readLong();
+            phaseUntil[i] = in.readLong();
+            generations[i] = in.readInt();
+        }
+        if(in.readInt() != pickups.length) {
+            throw new IOException("Pickup spawn points do not match the level");
+        }
+        for(int i = 0; i < pickups.length; i++) {
+            pickups[i] = in.readByte();
+            pickupSerials[i] = in.readInt();
+            if(pickups[i] >= PICKUPS.length) throw new IOException("Corrupt pickup " + pickups[i]);
+        }
+        wheel.readFrom(in);
+    }
+}
@@ -0,0 +1,117 @@
+package tron;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes the board as bit planes: one bit per cell, packed into longs in
+ * row-major order. There is one plane for the level walls and one for each
+ * team's trail, which in a one-on-one round is each player's. Trail planes
+ * are updated from the {@link TrailGrid}'s change log, so they follow
+ * everything that lays or removes trail, and encoding a state costs a copy
+ * of the planes rather than a scan of the board.
+ */
+public class BoardEncoder {
+    private final int width;
+    private final int height;
+    private final int words;
+    private final long[] walls;
+    private final long[][] trails;
+
+    /**
+     * Creates an encoder for a level and computes its wall plane.
+     *
+     * @param level The level being played
+     * @param teamCount The number of trail planes to keep
+     */
+    public BoardEncoder(Level level, int teamCount) {
+        this.width = level.getWidth();
+        this.height = level.getHeight();
+        this.words = (width * height + 63) / 64;
+        this.walls = new long[words];
+        this.trails = new long[teamCount][words];
+        for(int y = 0; y < height; y++) {
+            for(int x = 0; x < width; x++) {
+                if(level.isWall(x, y)) {
+                    setBit(walls, y * width + x);
+                }
+            }
+        }
+    }
+
+    /**
+     * Clears all trail planes for a new round on the same level.
+     */
+    public void reset() {
+        for(long[] plane : trails) {
+            java.util.Arrays.fill(plane, 0L);
+        }
+    }
+
+    /**
+     * Brings the trail planes up to date with the cells a grid logged as
+     * changed, and empties its change log. If the log overflowed, the
+     * planes are rebuilt from the whole grid.
+     *
+     * @param grid The grid of the round being encoded
+     */
+    public void update(TrailGrid grid) {
+        if(grid.isChangeLogOverflowed()) {
+            reset();
+            for(int index = 0; index < width * height; index++) {
+                updateCell(grid, index);
+            }
+        } else {
+            for(int i = 0; i < grid.getChangeCount(); i++) {
+                updateCell(grid, grid.getChange(i));
+            }
+        }
+        grid.clearChanges();
+    }
+
+    private void updateCell(TrailGrid grid, int index) {
+        for(long[] plane : trails) {
+            plane[index >>> 6] &= ~(1L << (index & 63));
+        }
+        int owner = grid.getOwner(index % width, index / width);
+        if(owner != TrailGrid.EMPTY && owner <= trails.length) {
+            setBit(trails[owner - 1], index);
+        }
+    }
+
+    /**
+     * @return The number of longs in one plane
+     */
+    public int getWordsPerPlane() {
+        return words;
+    }
+
+    /**
+     * Writes the wall plane.
+     *
+     * @param out The buffer to write to; must have room for one plane
+     */
+    public void writeWalls(ByteBuffer out) {
+        writePlane(out, walls);
+    }
+
+    /**
+     * Writes every trail plane in team order.
+     *
+     * @param out The buffer to write to; must have room for one plane per team
+     */
+    public void writeTrails(ByteBuffer out) {
+        for(long[] plane : trails) {
+            writePlane(out, plane);
+        }
+    }
+
+    private static void writePlane(ByteBuffer out, long[] plane) {
+        for(long word : plane) {
+            out.putLong(word);
+        }
+    }
+
+    private static void setBit(long[] plane, int index) {
+        plane[index >>> 6] |= 1L << (index & 63);
+    }
+}
@@ -0,0 +1,38 @@
+package tron;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event emitted when a collision ends the round.
+ */
+@Name("tron.Collision")
+@Label("Collision")
+@Category("Tron")
+@Description("Collision detected by the game loop and the resulting winner")
+public class CollisionEvent extends Event {
+    @Label("Tick")
+    public long tick;
+
+    @Label("Cause")
+    @Description("wall, trail or head-on")
+    public String cause;
+
+    @Label("Winner")
+    public String winner;
+
+    @Label("Player 1 X")
+    public int player1X;
+
+    @Label("Player 1 Y")
+    public int player1Y;
+
+    @Label("Player 2 X")
+    public int player2X;
+
+    @Label("Player 2 Y")
+    public int player2Y;
+}
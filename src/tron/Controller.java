@@ -0,0 +1,31 @@
+package tron;
+
+/**
+ * Something that steers a light-cycle, such as a bot.
+ * A controller is asked once per tick, before the engine moves the players.
+ *
+ * Controllers can be added as plugins: implementations listed in
+ * {@code META-INF/services/tron.Controller} files of jars on the classpath
+ * are offered in the start dialog, see {@link Plugins}. Plugin controllers
+ * need a public no-argument constructor; a new instance is created for
+ * every round. {@link #nextDirection(GameEngine, int)} runs inside the
+ * game loop, so it must not allocate objects and must stay within the
+ * per-tick time budget checked by {@link PluginBenchmark}.
+ */
+public interface Controller {
+    /**
+     * @return The name shown to players when choosing who controls a light-cycle
+     */
+    default String getName() {
+        return getClass().getSimpleName();
+    }
+
+    /**
+     * Chooses the direction for the next move.
+     *
+     * @param engine The round being played
+     * @param playerIndex 0-based index of the controlled player
+     * @return The direction to steer in, or null to keep the current direction
+     */
+    Direction nextDirection(GameEngine engine, int playerIndex);
+}
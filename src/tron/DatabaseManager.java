@@ -2,14 +2,112 @@ package tron;
 
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * Manages the game's database operations for storing and retrieving player scores.
  * Handles database connections, score updates, and high score retrieval.
+ *
+ * Besides win counts, every match is stored in the {@code matches} table and
+ * updates both players' {@link EloRating} in the {@code ratings} table. The
+ * leaderboard is read a page at a time through an index on the rating.
+ * Matches played from the keyboard also store their input latency
+ * percentiles in {@code match_latency}, labelled with the build. Team
+ * matches are stored in the history under the team names and update the
+ * teams' records in {@code team_standings} instead of the ratings, keyed
+ * by team name and team size.
  */
 public class DatabaseManager {
     private static final String DB_URL = "jdbc:sqlite:game.db";
+    private static final int FETCH_SIZE = 1000;
     private Connection conn;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "score-writer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Tables that can be exported and imported, with their columns.
+     * Rows of keyed tables replace existing rows for the same player or
+     * team on import; matches are appended.
+     */
+    public enum Table {
+        SCORES("scores", true, "player_name", "player_name:S", "wins:I"),
+        RATINGS("ratings", true, "player_name", "player_name:S", "rating:R", "games:I", "wins:I", "losses:I",
+                "draws:I"),
+        MATCHES("matches", false, "id", "played_at:I", "level:S", "player1:S", "player2:S", "winner:S", "ticks:I",
+                "duration_ms:I", "player1_rating:R", "player2_rating:R", "player1_change:R", "player2_change:R"),
+        TEAM_STANDINGS("team_standings", true, "team_name, team_size", "team_name:S", "team_size:I", "games:I",
+                       "wins:I", "losses:I", "draws:I", "last_played:I");
+
+        /** Column holds text. */
+        public static final char TEXT = 'S';
+        /** Column holds a whole number. */
+        public static final char INTEGER = 'I';
+        /** Column holds a real number. */
+        public static final char REAL = 'R';
+
+        private final String tableName;
+        private final boolean keyed;
+        // Columns the rows are exported in the order of
+        private final String orderBy;
+        private final String[] columns;
+        private final char[] types;
+
+        Table(String tableName, boolean keyed, String orderBy, String... columns) {
+            this.tableName = tableName;
+            this.keyed = keyed;
+            this.orderBy = orderBy;
+            this.columns = new String[columns.length];
+            this.types = new char[columns.length];
+            for(int i = 0; i < columns.length; i++) {
+                this.columns[i] = columns[i].substring(0, columns[i].indexOf(':'));
+                this.types[i] = columns[i].charAt(columns[i].length() - 1);
+            }
+        }
+
+        /**
+         * @return The number of columns
+         */
+        public int getColumnCount() { return columns.length; }
+
+        /**
+         * @param index 0-based column index
+         * @return The column's name
+         */
+        public String getColumnName(int index) { return columns[index]; }
+
+        /**
+         * @param index 0-based column index
+         * @return {@link #TEXT}, {@link #INTEGER} or {@link #REAL}
+         */
+        public char getColumnType(int index) { return types[index]; }
+    }
+
+    /**
+     * Receives exported rows one at a time.
+     */
+    public interface RowVisitor {
+        /**
+         * @param row The row's values in column order: String, Long, Double or null.
+         *            The array is reused for the next row.
+         * @throws java.io.IOException if the row cannot be written
+         */
+        void visit(Object[] row) throws java.io.IOException;
+    }
+
+    /**
+     * Supplies rows to import one at a time.
+     */
+    public interface RowSource {
+        /**
+         * @return The next row's values in column order, or null at the end.
+         *         The array may be reused for the next row.
+         * @throws java.io.IOException if the row cannot be read
+         */
+        Object[] next() throws java.io.IOException;
+    }
 
     /**
      * Initializes the database manager and creates the scores table if it doesn't exist.
@@ -26,12 +124,31 @@ public class DatabaseManager {
     }
 
     /**
-     * Creates the scores table in the database if it doesn't exist.
+     * Creates the scores, ratings, matches, match latency and team standings tables in the database if they don't exist.
      * @throws SQLException if there's an error executing the SQL
      */
     private void initDB() throws SQLException {
         Statement st = conn.createStatement();
         st.execute("CREATE TABLE IF NOT EXISTS scores (player_name TEXT PRIMARY KEY, wins INTEGER)");
+        st.execute("CREATE TABLE IF NOT EXISTS ratings (player_name TEXT PRIMARY KEY, rating REAL NOT NULL, "
+            + "games INTEGER NOT NULL, wins INTEGER NOT NULL, losses INTEGER NOT NULL, draws INTEGER NOT NULL)");
+        st.execute("CREATE INDEX IF NOT EXISTS ratings_by_rank ON ratings (rating DESC, player_name)");
+        st.execute("CREATE TABLE IF NOT EXISTS matches (id INTEGER PRIMARY KEY AUTOINCREMENT, "
+            + "played_at INTEGER NOT NULL, level TEXT, player1 TEXT NOT NULL, player2 TEXT NOT NULL, "
+            + "winner TEXT, ticks INTEGER NOT NULL, duration_ms INTEGER NOT NULL, "
+            + "player1_rating REAL NOT NULL, player2_rating REAL NOT NULL, "
+            + "player1_change REAL NOT NULL, player2_change REAL NOT NULL)");
+        st.execute("CREATE TABLE IF NOT EXISTS match_latency (match_id INTEGER PRIMARY KEY REFERENCES matches(id), "
+            + "build TEXT NOT NULL, turns INTEGER NOT NULL, "
+            + "applied_p50_us INTEGER NOT NULL, applied_p95_us INTEGER NOT NULL, "
+            + "applied_p99_us INTEGER NOT NULL, applied_max_us INTEGER NOT NULL, "
+            + "painted_p50_us INTEGER NOT NULL, painted_p95_us INTEGER NOT NULL, "
+            + "painted_p99_us INTEGER NOT NULL, painted_max_us INTEGER NOT NULL)");
+        st.execute("CREATE INDEX IF NOT EXISTS match_latency_by_build ON match_latency (build)");
+        st.execute("CREATE TABLE IF NOT EXISTS team_standings (team_name TEXT NOT NULL, team_size INTEGER NOT NULL, "
+            + "games INTEGER NOT NULL, wins INTEGER NOT NULL, losses INTEGER NOT NULL, draws INTEGER NOT NULL, "
+            + "last_played INTEGER NOT NULL, PRIMARY KEY (team_name, team_size))");
+        st.execute("CREATE INDEX IF NOT EXISTS team_standings_by_rank ON team_standings (team_size, wins DESC, games, team_name)");
         st.close();
     }
 
@@ -41,34 +158,521 @@ public class DatabaseManager {
      *
      * @param winner The name of the player to update score for
      */
-    public void updateScore(String winner) {
+    public synchronized void updateScore(String winner) {
         if(winner == null || winner.trim().isEmpty() || winner.equals("Draw")) return;
 
+        long writeStart = GameMetrics.start();
+        ScorePersistEvent event = new ScorePersistEvent();
+        event.begin();
         try {
-            PreparedStatement ps = conn.prepareStatement("SELECT wins FROM scores WHERE player_name = ?");
-            ps.setString(1, winner);
-            ResultSet rs = ps.executeQuery();
-            if(rs.next()) {
-                int currentWins = rs.getInt("wins");
-                rs.close();
+            addWin(winner);
+            event.success = true;
+        } catch(SQLException e) {
+            e.printStackTrace();
+        } finally {
+            GameMetrics.stop(GameMetrics.DB_WRITE, writeStart);
+            event.end();
+            if(event.shouldCommit()) {
+                event.player = winner;
+                event.commit();
+            }
+        }
+    }
+
+    private void addWin(String winner) throws SQLException {
+        PreparedStatement ps = conn.prepareStatement(
+            "INSERT INTO scores(player_name, wins) VALUES(?, 1) "
+            + "ON CONFLICT(player_name) DO UPDATE SET wins = wins + 1");
+        ps.setString(1, winner);
+        ps.executeUpdate();
+        ps.close();
+    }
+
+    /**
+     * Records a finished match: stores it in the match history, updates
+     * both players' ratings and counts the win, all in one transaction.
+     * Draws count towards the ratings but not the win counts.
+     *
+     * @param player1 Player 1's name
+     * @param player2 Player 2's name
+     * @param result The outcome, won by team 0 for player 1 or team 1 for player 2
+     * @param level The name of the level played
+     * @param ticks The number of ticks the match lasted
+     * @param durationMillis The length of the match in milliseconds
+     */
+    public void recordMatch(String player1, String player2, MatchResult result,
+                            String level, long ticks, long durationMillis) {
+        recordMatch(player1, player2, result, level, ticks, durationMillis, null);
+    }
+
+    /**
+     * Records a finished match together with its input latency, see
+     * {@link #recordMatch(String, String, MatchResult, String, long, long)}.
+     *
+     * @param player1 Player 1's name
+     * @param player2 Player 2's name
+     * @param result The outcome, won by team 0 for player 1 or team 1 for player 2
+     * @param level The name of the level played
+     * @param ticks The number of ticks the match lasted
+     * @param durationMillis The length of the match in milliseconds
+     * @param latency The match's input latency, or null if it was not measured
+     */
+    public synchronized void recordMatch(String player1, String player2, MatchResult result, String level,
+                                         long ticks, long durationMillis, MatchLatency latency) {
+        boolean draw = result.isDraw();
+        String winner = draw ? null : result.getWinningTeam() == 0 ? player1 : player2;
+        if(player1.equals(player2)) {
+            // Ratings need two different players
+            updateScore(winner);
+            return;
+        }
+        double score1 = draw ? 0.5 : result.getWinningTeam() == 0 ? 1 : 0;
+
+        long writeStart = GameMetrics.start();
+        ScorePersistEvent event = new ScorePersistEvent();
+        event.begin();
+        try {
+            conn.setAutoCommit(false);
+            try {
+                PlayerRating r1 = loadRating(player1);
+                PlayerRating r2 = loadRating(player2);
+                double new1 = EloRating.update(r1.rating, r1.games, r2.rating, score1);
+                double new2 = EloRating.update(r2.rating, r2.games, r1.rating, 1 - score1);
+                saveRating(player1, new1, score1);
+                saveRating(player2, new2, 1 - score1);
+                if(!draw) addWin(winner);
+
+                addMatch(player1, player2, winner, level, ticks, durationMillis,
+                    r1.rating, r2.rating, new1 - r1.rating, new2 - r2.rating, latency);
+                conn.commit();
+                event.success = true;
+            } catch(SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch(SQLException e) {
+            e.printStackTrace();
+        } finally {
+            GameMetrics.stop(GameMetrics.DB_WRITE, writeStart);
+            event.end();
+            if(event.shouldCommit()) {
+                event.player = result.toString();
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Records a finished match on a background thread, see
+     * {@link #recordMatch(String, String, MatchResult, String, long, long)}.
+     *
+     * @param player1 Player 1's name
+     * @param player2 Player 2's name
+     * @param result The outcome, won by team 0 for player 1 or team 1 for player 2
+     * @param level The name of the level played
+     * @param ticks The number of ticks the match lasted
+     * @param durationMillis The length of the match in milliseconds
+     * @return A future that completes once the match has been written
+     */
+    public CompletableFuture<Void> recordMatchAsync(String player1, String player2, MatchResult result,
+                                                    String level, long ticks, long durationMillis) {
+        return recordMatchAsync(player1, player2, result, level, ticks, durationMillis, null);
+    }
+
+    /**
+     * Records a finished match and its input latency on a background thread, see
+     * {@link #recordMatch(String, String, MatchResult, String, long, long, MatchLatency)}.
+     *
+     * @param player1 Player 1's name
+     * @param player2 Player 2's name
+     * @param result The outcome, won by team 0 for player 1 or team 1 for player 2
+     * @param level The name of the level played
+     * @param ticks The number of ticks the match lasted
+     * @param durationMillis The length of the match in milliseconds
+     * @param latency The match's input latency, or null if it was not measured
+     * @return A future that completes once the match has been written
+     */
+    public CompletableFuture<Void> recordMatchAsync(String player1, String player2, MatchResult result, String level,
+                                                    long ticks, long durationMillis, MatchLatency latency) {
+        return CompletableFuture.runAsync(
+            () -> recordMatch(player1, player2, result, level, ticks, durationMillis, latency), writer);
+    }
+
+    private void addMatch(String player1, String player2, String winner, String level, long ticks,
+                          long durationMillis, double rating1, double rating2, double change1, double change2,
+                          MatchLatency latency) throws SQLException {
+        PreparedStatement ps = conn.prepareStatement(
+            "INSERT INTO matches(played_at, level, player1, player2, winner, ticks, duration_ms, "
+            + "player1_rating, player2_rating, player1_change, player2_change) "
+            + "VALUES(?,?,?,?,?,?,?,?,?,?,?)", Statement.RETURN_GENERATED_KEYS);
+        ps.setLong(1, System.currentTimeMillis());
+        ps.setString(2, level);
+        ps.setString(3, player1);
+        ps.setString(4, player2);
+        ps.setString(5, winner);
+        ps.setLong(6, ticks);
+        ps.setLong(7, durationMillis);
+        ps.setDouble(8, rating1);
+        ps.setDouble(9, rating2);
+        ps.setDouble(10, change1);
+        ps.setDouble(11, change2);
+        ps.executeUpdate();
+        ResultSet keys = ps.getGeneratedKeys();
+        long matchId = keys.next() ? keys.getLong(1) : -1;
+        keys.close();
+        ps.close();
+        if(latency != null && matchId >= 0) saveLatency(matchId, latency);
+    }
+
+    /**
+     * Records a finished team match: stores it in the match history under
+     * the team names and updates both teams' standings, in one transaction.
+     * Team matches do not change the players' ratings, so their rating
+     * columns in the history are 0.
+     *
+     * @param teamSize The number of players per team
+     * @param teamNames The name of each team, in team order
+     * @param result The outcome
+     * @param level The name of the level played
+     * @param ticks The number of ticks the match lasted
+     * @param durationMillis The length of the match in milliseconds
+     * @param latency The match's input latency, or null if it was not measured
+     */
+    public synchronized void recordTeamMatch(int teamSize, String[] teamNames, MatchResult result, String level,
+                                             long ticks, long durationMillis, MatchLatency latency) {
+        long writeStart = GameMetrics.start();
+        ScorePersistEvent event = new ScorePersistEvent();
+        event.begin();
+        try {
+            conn.setAutoCommit(false);
+            try {
+                PreparedStatement ps = conn.prepareStatement(
+                    "INSERT INTO team_standings(team_name, team_size, games, wins, losses, draws, last_played) "
+                    + "VALUES(?,?,1,?,?,?,?) ON CONFLICT(team_name, team_size) DO UPDATE SET games = games + 1, "
+                    + "wins = wins + excluded.wins, losses = losses + excluded.losses, "
+                    + "draws = draws + excluded.draws, last_played = excluded.last_played");
+                long now = System.currentTimeMillis();
+                for(int team = 0; team < teamNames.length; team++) {
+                    boolean won = result.getWinningTeam() == team;
+                    ps.setString(1, teamNames[team]);
+                    ps.setInt(2, teamSize);
+                    ps.setInt(3, won ? 1 : 0);
+                    ps.setInt(4, result.isDraw() || won ? 0 : 1);
+                    ps.setInt(5, result.isDraw() ? 1 : 0);
+                    ps.setLong(6, now);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
                 ps.close();
-                PreparedStatement ups = conn.prepareStatement("UPDATE scores SET wins = ? WHERE player_name = ?");
-                ups.setInt(1, currentWins+1);
-                ups.setString(2, winner);
-                ups.executeUpdate();
-                ups.close();
+                String winner = result.isDraw() ? null : teamNames[result.getWinningTeam()];
+                addMatch(teamNames[0], teamNames[1], winner, level, ticks, durationMillis, 0, 0, 0, 0, latency);
+                conn.commit();
+                event.success = true;
+            } catch(SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch(SQLException e) {
+            e.printStackTrace();
+        } finally {
+            GameMetrics.stop(GameMetrics.DB_WRITE, writeStart);
+            event.end();
+            if(event.shouldCommit()) {
+                event.player = result.toString();
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Records a finished team match on a background thread, see
+     * {@link #recordTeamMatch(int, String[], MatchResult, String, long, long, MatchLatency)}.
+     *
+     * @param teamSize The number of players per team
+     * @param teamNames The name of each team, in team order
+     * @param result The outcome
+     * @param level The name of the level played
+     * @param ticks The number of ticks the match lasted
+     * @param durationMillis The length of the match in milliseconds
+     * @param latency The match's input latency, or null if it was not measured
+     * @return A future that completes once the match has been written
+     */
+    public CompletableFuture<Void> recordTeamMatchAsync(int teamSize, String[] teamNames, MatchResult result,
+                                                        String level, long ticks, long durationMillis,
+                                                        MatchLatency latency) {
+        String[] names = teamNames.clone();
+        return CompletableFuture.runAsync(
+            () -> recordTeamMatch(teamSize, names, result, level, ticks, durationMillis, latency), writer);
+    }
+
+    /**
+     * Reads the best teams of one size, by wins and then by fewest games played.
+     *
+     * @param teamSize The number of players per team
+     * @param limit The maximum number of teams to return
+     * @return The teams' standings
+     */
+    public synchronized List<TeamStanding> getTeamStandings(int teamSize, int limit) {
+        List<TeamStanding> teams = new ArrayList<>();
+        long readStart = GameMetrics.start();
+        try {
+            PreparedStatement ps = conn.prepareStatement(
+                "SELECT team_name, games, wins, losses, draws FROM team_standings WHERE team_size = ? "
+                + "ORDER BY wins DESC, games, team_name LIMIT ?");
+            ps.setInt(1, teamSize);
+            ps.setInt(2, limit);
+            ResultSet rs = ps.executeQuery();
+            while(rs.next()) {
+                teams.add(new TeamStanding(rs.getString(1), rs.getInt(2), rs.getInt(3), rs.getInt(4), rs.getInt(5)));
+            }
+            rs.close();
+            ps.close();
+        } catch(SQLException e) {
+            e.printStackTrace();
+        } finally {
+            GameMetrics.stop(GameMetrics.DB_READ, readStart);
+        }
+        return teams;
+    }
+
+    private void saveLatency(long matchId, MatchLatency latency) throws SQLException {
+        PreparedStatement ps = conn.prepareStatement(
+            "INSERT INTO match_latency(match_id, build, turns, applied_p50_us, applied_p95_us, applied_p99_us, "
+            + "applied_max_us, painted_p50_us, painted_p95_us, painted_p99_us, painted_max_us) "
+            + "VALUES(?,?,?,?,?,?,?,?,?,?,?)");
+        ps.setLong(1, matchId);
+        ps.setString(2, MatchLatency.BUILD);
+        ps.setLong(3, latency.getTurnCount());
+        int column = 4;
+        for(LatencyHistogram h : new LatencyHistogram[] {latency.getApplied(), latency.getPainted()}) {
+            ps.setLong(column++, h.valueAtPercentile(50) / 1000);
+            ps.setLong(column++, h.valueAtPercentile(95) / 1000);
+            ps.setLong(column++, h.valueAtPercentile(99) / 1000);
+            ps.setLong(column++, Math.round(h.getMaxMicros()));
+        }
+        ps.executeUpdate();
+        ps.close();
+    }
+
+    /**
+     * Summarises the stored input latencies per build, most recently played
+     * build first. Each figure is the average over the build's matches of
+     * that match's percentile.
+     *
+     * @param limit The maximum number of builds to return
+     * @return The latency summary of each build
+     */
+    public synchronized List<BuildLatency> getLatencyByBuild(int limit) {
+        List<BuildLatency> builds = new ArrayList<>();
+        long readStart = GameMetrics.start();
+        try {
+            PreparedStatement ps = conn.prepareStatement(
+                "SELECT l.build, COUNT(*), SUM(l.turns), AVG(l.applied_p50_us), AVG(l.applied_p99_us), "
+                + "AVG(l.painted_p50_us), AVG(l.painted_p99_us), MAX(m.played_at) "
+                + "FROM match_latency l JOIN matches m ON m.id = l.match_id WHERE l.turns > 0 "
+                + "GROUP BY l.build ORDER BY MAX(m.played_at) DESC LIMIT ?");
+            ps.setInt(1, limit);
+            ResultSet rs = ps.executeQuery();
+            while(rs.next()) {
+                builds.add(new BuildLatency(rs.getString(1), rs.getInt(2), rs.getLong(3), rs.getDouble(4),
+                    rs.getDouble(5), rs.getDouble(6), rs.getDouble(7), rs.getLong(8)));
+            }
+            rs.close();
+            ps.close();
+        } catch(SQLException e) {
+            e.printStackTrace();
+        } finally {
+            GameMetrics.stop(GameMetrics.DB_READ, readStart);
+        }
+        return builds;
+    }
+
+    /**
+     * Looks up a player's rating.
+     *
+     * @param player The player's name
+     * @return The rating, or a new player's rating if the player has not played yet
+     */
+    public synchronized PlayerRating getRating(String player) {
+        try {
+            return loadRating(player);
+        } catch(SQLException e) {
+            e.printStackTrace();
+            return new PlayerRating(player, EloRating.INITIAL_RATING, 0, 0, 0, 0);
+        }
+    }
+
+    private PlayerRating loadRating(String player) throws SQLException {
+        PreparedStatement ps = conn.prepareStatement(
+            "SELECT player_name, rating, games, wins, losses, draws FROM ratings WHERE player_name = ?");
+        ps.setString(1, player);
+        ResultSet rs = ps.executeQuery();
+        PlayerRating rating = rs.next() ? readRating(rs) : new PlayerRating(player, EloRating.INITIAL_RATING, 0, 0, 0, 0);
+        rs.close();
+        ps.close();
+        return rating;
+    }
+
+    private void saveRating(String player, double rating, double score) throws SQLException {
+        PreparedStatement ps = conn.prepareStatement(
+            "INSERT INTO ratings(player_name, rating, games, wins, losses, draws) VALUES(?,?,1,?,?,?) "
+            + "ON CONFLICT(player_name) DO UPDATE SET rating = excluded.rating, games = games + 1, "
+            + "wins = wins + excluded.wins, losses = losses + excluded.losses, draws = draws + excluded.draws");
+        ps.setString(1, player);
+        ps.setDouble(2, rating);
+        ps.setInt(3, score == 1 ? 1 : 0);
+        ps.setInt(4, score == 0 ? 1 : 0);
+        ps.setInt(5, score == 0.5 ? 1 : 0);
+        ps.executeUpdate();
+        ps.close();
+    }
+
+    /**
+     * Reads one page of the leaderboard, ordered by rating and then name.
+     * Pages are found through the rating index from the last row of the
+     * previous page, so every page costs the same however deep it is.
+     *
+     * @param after The last row of the previous page, or null for the first page
+     * @param limit The maximum number of rows to return
+     * @return The ratings on the page
+     */
+    public synchronized List<PlayerRating> getLeaderboardPage(PlayerRating after, int limit) {
+        List<PlayerRating> page = new ArrayList<>();
+        long readStart = GameMetrics.start();
+        try {
+            PreparedStatement ps;
+            if(after == null) {
+                ps = conn.prepareStatement("SELECT player_name, rating, games, wins, losses, draws FROM ratings "
+                    + "ORDER BY rating DESC, player_name LIMIT ?");
+                ps.setInt(1, limit);
             } else {
-                rs.close();
-                ps.close();
-                PreparedStatement ins = conn.prepareStatement("INSERT INTO scores(player_name, wins) VALUES(?,?)");
-                ins.setString(1, winner);
-                ins.setInt(2, 1);
-                ins.executeUpdate();
-                ins.close();
+                ps = conn.prepareStatement("SELECT player_name, rating, games, wins, losses, draws FROM ratings "
+                    + "WHERE rating <= ? AND (rating < ? OR player_name > ?) "
+                    + "ORDER BY rating DESC, player_name LIMIT ?");
+                ps.setDouble(1, after.rating);
+                ps.setDouble(2, after.rating);
+                ps.setString(3, after.name);
+                ps.setInt(4, limit);
             }
+            ResultSet rs = ps.executeQuery();
+            while(rs.next()) {
+                page.add(readRating(rs));
+            }
+            rs.close();
+            ps.close();
         } catch(SQLException e) {
             e.printStackTrace();
+        } finally {
+            GameMetrics.stop(GameMetrics.DB_READ, readStart);
+        }
+        return page;
+    }
+
+    private static PlayerRating readRating(ResultSet rs) throws SQLException {
+        return new PlayerRating(rs.getString("player_name"), rs.getDouble("rating"), rs.getInt("games"),
+            rs.getInt("wins"), rs.getInt("losses"), rs.getInt("draws"));
+    }
+
+    /**
+     * Streams every row of a table through a database cursor, so memory use
+     * does not grow with the size of the table.
+     *
+     * @param table The table to read
+     * @param visitor Receives the rows
+     * @return The number of rows read
+     * @throws SQLException if the table cannot be read
+     * @throws java.io.IOException if the visitor fails
+     */
+    public synchronized long exportRows(Table table, RowVisitor visitor) throws SQLException, java.io.IOException {
+        long readStart = GameMetrics.start();
+        long count = 0;
+        try(Statement st = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            st.setFetchSize(FETCH_SIZE);
+            ResultSet rs = st.executeQuery("SELECT " + String.join(", ", table.columns) + " FROM " + table.tableName
+                + " ORDER BY " + table.orderBy);
+            Object[] row = new Object[table.columns.length];
+            while(rs.next()) {
+                for(int i = 0; i < row.length; i++) {
+                    switch(table.types[i]) {
+                        case Table.INTEGER: row[i] = rs.getLong(i + 1); break;
+                        case Table.REAL: row[i] = rs.getDouble(i + 1); break;
+                        default: row[i] = rs.getString(i + 1); break;
+                    }
+                    if(rs.wasNull()) row[i] = null;
+                }
+                visitor.visit(row);
+                count++;
+            }
+            rs.close();
+        } finally {
+            GameMetrics.stop(GameMetrics.DB_READ, readStart);
+        }
+        return count;
+    }
+
+    /**
+     * Imports rows into a table in batches. Each batch is written in one
+     * transaction, so a failure keeps every batch before it and none of
+     * the failing one.
+     *
+     * @param table The table to write
+     * @param source Supplies the rows
+     * @param batchSize The number of rows per transaction
+     * @return The number of rows imported
+     * @throws SQLException if a batch cannot be written
+     * @throws java.io.IOException if the source fails
+     */
+    public synchronized long importRows(Table table, RowSource source, int batchSize) throws SQLException, java.io.IOException {
+        long writeStart = GameMetrics.start();
+        String placeholders = String.join(",", Collections.nCopies(table.columns.length, "?"));
+        String sql = (table.keyed ? "INSERT OR REPLACE INTO " : "INSERT INTO ") + table.tableName
+            + "(" + String.join(", ", table.columns) + ") VALUES(" + placeholders + ")";
+        long count = 0;
+        conn.setAutoCommit(false);
+        try(PreparedStatement ps = conn.prepareStatement(sql)) {
+            int pending = 0;
+            Object[] row;
+            while((row = source.next()) != null) {
+                for(int i = 0; i < table.columns.length; i++) {
+                    ps.setObject(i + 1, row[i]);
+                }
+                ps.addBatch();
+                if(++pending == batchSize) {
+                    ps.executeBatch();
+                    conn.commit();
+                    count += pending;
+                    pending = 0;
+                }
+            }
+            if(pending > 0) {
+                ps.executeBatch();
+                conn.commit();
+                count += pending;
+            }
+        } catch(SQLException | java.io.IOException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+            GameMetrics.stop(GameMetrics.DB_WRITE, writeStart);
         }
+        return count;
+    }
+
+    /**
+     * Updates the score for a player on a background thread, so the caller
+     * never waits on the database. Writes run one at a time in the order
+     * they were submitted.
+     *
+     * @param winner The name of the player to update score for
+     * @return A future that completes once the score has been written
+     */
+    public CompletableFuture<Void> updateScoreAsync(String winner) {
+        return CompletableFuture.runAsync(() -> updateScore(winner), writer);
     }
 
     /**
@@ -77,8 +681,9 @@ public class DatabaseManager {
      * @param limit The maximum number of scores to retrieve
      * @return List of player scores, sorted by score in descending order
      */
-    public List<PlayerScore> getTopScores(int limit) {
+    public synchronized List<PlayerScore> getTopScores(int limit) {
         List<PlayerScore> list = new ArrayList<>();
+        long readStart = GameMetrics.start();
         try {
             PreparedStatement ps = conn.prepareStatement("SELECT player_name, wins FROM scores ORDER BY wins DESC LIMIT ?");
             ps.setInt(1, limit);
@@ -90,19 +695,94 @@ public class DatabaseManager {
             ps.close();
         } catch(SQLException e) {
             e.printStackTrace();
+        } finally {
+            GameMetrics.stop(GameMetrics.DB_READ, readStart);
         }
         return list;
     }
 
     /**
-     * Closes the database connection.
+     * Closes the database connection after any pending background writes.
      * Should be called when the application is shutting down.
      */
     public void closeConnection() {
+        writer.shutdown();
         try {
-            conn.close();
-        } catch (SQLException e) {
-            e.printStackTrace();
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized(this) {
+            try {
+                if(conn != null) conn.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Represents a player's rating and record.
+     */
+    public static class PlayerRating {
+        public String name;
+        public double rating;
+        public int games;
+        public int wins;
+        public int losses;
+        public int draws;
+
+        public PlayerRating(String n, double r, int g, int w, int l, int d) {
+            name = n;
+            rating = r;
+            games = g;
+            wins = w;
+            losses = l;
+            draws = d;
+        }
+    }
+
+    /**
+     * A team's record in matches of one team size.
+     */
+    public static class TeamStanding {
+        public String name;
+        public int games;
+        public int wins;
+        public int losses;
+        public int draws;
+
+        public TeamStanding(String n, int g, int w, int l, int d) {
+            name = n;
+            games = g;
+            wins = w;
+            losses = l;
+            draws = d;
+        }
+    }
+
+    /**
+     * Input latency of the matches played on one build, in microseconds.
+     */
+    public static class BuildLatency {
+        public String build;
+        public int matches;
+        public long turns;
+        public double appliedP50;
+        public double appliedP99;
+        public double paintedP50;
+        public double paintedP99;
+        public long lastPlayed;
+
+        public BuildLatency(String b, int m, long t, double ap50, double ap99, double pp50, double pp99, long last) {
+            build = b;
+            matches = m;
+            turns = t;
+            appliedP50 = ap50;
+            appliedP99 = ap99;
+            paintedP50 = pp50;
+            paintedP99 = pp99;
+            lastPlayed = last;
         }
     }
 
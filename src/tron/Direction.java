@@ -5,5 +5,35 @@ package tron;
  * Used to track and update player movement directions.
  */
 public enum Direction {
-    UP, DOWN, LEFT, RIGHT
+    UP(0, -1), DOWN(0, 1), LEFT(-1, 0), RIGHT(1, 0);
+
+    private final int dx;
+    private final int dy;
+
+    Direction(int dx, int dy) {
+        this.dx = dx;
+        this.dy = dy;
+    }
+
+    /**
+     * @return The change in X-coordinate of one step in this direction
+     */
+    public int getDx() { return dx; }
+
+    /**
+     * @return The change in Y-coordinate of one step in this direction
+     */
+    public int getDy() { return dy; }
+
+    /**
+     * @return The direction pointing the opposite way
+     */
+    public Direction opposite() {
+        switch(this) {
+            case UP: return DOWN;
+            case DOWN: return UP;
+            case LEFT: return RIGHT;
+            default: return LEFT;
+        }
+    }
 }
@@ -0,0 +1,47 @@
+package tron;
+
+/**
+ * Elo skill ratings. Each match moves both players' ratings towards the
+ * result by an amount that depends on how surprising the result was.
+ *
+ * New players use a larger K-factor for their first games so that their
+ * rating settles quickly, which captures the main benefit of Glicko's
+ * rating deviation without having to store and decay it.
+ */
+public final class EloRating {
+    /** Rating given to a player before their first match. */
+    public static final double INITIAL_RATING = 1500;
+    /** Number of games a rating is considered provisional for. */
+    public static final int PROVISIONAL_GAMES = 30;
+
+    private static final double PROVISIONAL_K = 40;
+    private static final double ESTABLISHED_K = 20;
+
+    private EloRating() {
+    }
+
+    /**
+     * Computes the score a player is expected to get against an opponent.
+     *
+     * @param rating The player's rating
+     * @param opponentRating The opponent's rating
+     * @return The expected score, from 0 (certain loss) to 1 (certain win)
+     */
+    public static double expectedScore(double rating, double opponentRating) {
+        return 1.0 / (1.0 + Math.pow(10, (opponentRating - rating) / 400.0));
+    }
+
+    /**
+     * Computes a player's rating after a match.
+     *
+     * @param rating The player's rating before the match
+     * @param gamesPlayed The number of games the player had played before the match
+     * @param opponentRating The opponent's rating before the match
+     * @param score 1 for a win, 0.5 for a draw, 0 for a loss
+     * @return The new rating
+     */
+    public static double update(double rating, int gamesPlayed, double opponentRating, double score) {
+        double k = gamesPlayed < PROVISIONAL_GAMES ? PROVISIONAL_K : ESTABLISHED_K;
+        return rating + k * (score - expectedScore(rating, opponentRating));
+    }
+}
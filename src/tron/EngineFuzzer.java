@@ -0,0 +1,583 @@
+package tron;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Randomized correctness check for {@link GameEngine}.
+ *
+ * Each case is a small random level with random start cells and a random
+ * sequence of steering inputs. The case is played on the engine and on a
+ * deliberately simple reference model side by side, and after every tick
+ * the two must agree on the positions and the outcome. The engine is also
+ * checked against its own invariants: the trail grid holds exactly the
+ * cells of the trail histories, and a round restored from a
+ * {@link GameSnapshot} mid-game plays on identically.
+ *
+ * A failing case is shrunk by cutting ticks after the failure, dropping
+ * inputs, removing walls and cropping the level for as long as it keeps
+ * failing, and then printed as a level file and an input list so it can be
+ * replayed by hand. Cases are generated from their index and the base seed
+ * alone, so {@code EngineFuzzer 1 <seed+index>} reruns a single case.
+ *
+ * A quarter of the levels wrap around. Half of the cases are played in a
+ * random {@link MatchFormat} on a level with {@code @decay} and
+ * {@code @shrink} rules; the reference model only knows plain one-on-one
+ * rounds, so those cases are checked against the invariants alone.
+ */
+public class EngineFuzzer {
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final MatchFormat[] FORMATS = MatchFormat.values();
+    private static final String[] TEAM_NAMES = {"P1", "P2"};
+    private static final Color[] TEAM_COLORS = {Color.BLUE, Color.RED};
+    private static final int MIN_SIZE = 3;
+    private static final int MAX_SIZE = 20;
+
+    private final AtomicLong games = new AtomicLong();
+    private final AtomicLong ticks = new AtomicLong();
+
+    /**
+     * A level and the steering inputs to play on it.
+     */
+    static final class Case {
+        final char[][] map;
+        final Point[] starts;
+        // inputs[player][tick]: 0 keeps the direction, otherwise 1 + a Direction ordinal
+        final byte[][] inputs;
+        final boolean wrap;
+        final MatchFormat format;
+        // Level rule settings, 0 when the rule is off
+        final int decay;
+        final int shrink;
+
+        Case(char[][] map, Point[] starts, byte[][] inputs, boolean wrap, MatchFormat format, int decay, int shrink) {
+            this.map = map;
+            this.starts = starts;
+            this.inputs = inputs;
+            this.wrap = wrap;
+            this.format = format;
+            this.decay = decay;
+            this.shrink = shrink;
+        }
+
+        int getTickCount() { return inputs[0].length; }
+
+        /**
+         * @return true if the reference model plays by the same rules as the case
+         */
+        boolean isModelled() { return format == MatchFormat.ONE_V_ONE && decay == 0 && shrink == 0; }
+
+        Case withInputs(byte[][] newInputs) {
+            return new Case(map, starts, newInputs, wrap, format, decay, shrink);
+        }
+
+        Case withMap(char[][] newMap, Point[] newStarts) {
+            return new Case(newMap, newStarts, inputs, wrap, format, decay, shrink);
+        }
+    }
+
+    /**
+     * Why and when a case failed.
+     */
+    static final class Failure {
+        final long tick;
+        final String message;
+
+        Failure(long tick, String message) {
+            this.tick = tick;
+            this.message = message;
+        }
+    }
+
+    /**
+     * Runs cases on worker threads until one fails or all have passed.
+     *
+     * @param caseCount Number of cases to run
+     * @param seed Seed of the first case; case i uses seed + i
+     * @param threads Number of worker threads
+     * @return The first failing case found, or null if all passed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public Case run(long caseCount, long seed, int threads) throws InterruptedException {
+        AtomicReference<Case> failed = new AtomicReference<>();
+        AtomicLong next = new AtomicLong();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for(int w = 0; w < threads; w++) {
+            pool.execute(() -> {
+                long i;
+                while(failed.get() == null && (i = next.getAndIncrement()) < caseCount) {
+                    Case c = generate(seed + i);
+                    if(check(c) != null) {
+                        failed.compareAndSet(null, c);
+                        System.out.println("Case " + (seed + i) + " failed");
+                    }
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        return failed.get();
+    }
+
+    /**
+     * @return The number of cases played so far
+     */
+    public long getGameCount() { return games.get(); }
+
+    /**
+     * @return The number of ticks played so far
+     */
+    public long getTickCount() { return ticks.get(); }
+
+    /**
+     * Generates the case for a seed.
+     *
+     * @param seed The case seed
+     * @return The case
+     */
+    static Case generate(long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int width = random.nextInt(MIN_SIZE, MAX_SIZE + 1);
+        int height = random.nextInt(MIN_SIZE, MAX_SIZE + 1);
+        double wallChance = random.nextDouble(0.2);
+        char[][] map = new char[height][width];
+        for(int y = 0; y < height; y++) {
+            for(int x = 0; x < width; x++) {
+                map[y][x] = random.nextDouble() < wallChance ? '#' : ' ';
+            }
+        }
+
+        Point p1 = new Point(random.nextInt(width), random.nextInt(height));
+        Point p2;
+        if(random.nextInt(3) == 0) {
+            // Close starts make head-on meetings likely
+            p2 = new Point(Math.min(width - 1, p1.x + random.nextInt(1, 4)), p1.y);
+        } else {
+            p2 = new Point(random.nextInt(width), random.nextInt(height));
+        }
+        if(p1.equals(p2)) p2.x = (p1.x + 1) % width;
+        map[p1.y][p1.x] = ' ';
+        map[p2.y][p2.x] = ' ';
+
+        Point[] starts = {p1, p2};
+        boolean wrap = random.nextInt(4) == 0;
+        MatchFormat format = MatchFormat.ONE_V_ONE;
+        int decay = 0;
+        int shrink = 0;
+        if(random.nextBoolean()) {
+            format = FORMATS[random.nextInt(FORMATS.length)];
+            decay = random.nextInt(3) == 0 ? 0 : random.nextInt(2, 16);
+            shrink = random.nextInt(3) == 0 ? 0 : random.nextInt(2, 20);
+        }
+        Case blank = new Case(map, starts, new byte[format.getPlayerCount()][0], wrap, format, decay, shrink);
+        // Small levels have no room for every team member
+        while(!hasDistinctStarts(createLevel(blank), format)) {
+            format = FORMATS[format.ordinal() - 1];
+            blank = new Case(map, starts, new byte[format.getPlayerCount()][0], wrap, format, decay, shrink);
+        }
+
+        // Inputs are chosen while playing the engine, mostly avoiding
+        // crashes so that rounds last long enough to be interesting
+        GameEngine engine = createEngine(blank);
+        double steerChance = random.nextDouble(0.5);
+        double care = random.nextDouble(0.9, 1.0);
+        byte[][] inputs = new byte[format.getPlayerCount()][width * height + 1];
+        int tickCount = 0;
+        while(!engine.isGameOver() && tickCount < inputs[0].length) {
+            for(int p = 0; p < inputs.length; p++) {
+                Direction current = engine.getPlayer(p).getDirection();
+                Direction d = null;
+                if(random.nextDouble() < steerChance) {
+                    d = DIRECTIONS[random.nextInt(DIRECTIONS.length)];
+                }
+                if(random.nextDouble() < care && !isFree(engine, p, d == null ? current : d)) {
+                    int first = random.nextInt(DIRECTIONS.length);
+                    for(int i = 0; i < DIRECTIONS.length; i++) {
+                        Direction option = DIRECTIONS[(first + i) % DIRECTIONS.length];
+                        if(option != current.opposite() && isFree(engine, p, option)) {
+                            d = option;
+                            break;
+                        }
+                    }
+                }
+                if(d != null) inputs[p][tickCount] = (byte)(1 + d.ordinal());
+                engine.steer(p, d);
+            }
+            engine.tick();
+            tickCount++;
+        }
+        return blank.withInputs(truncate(inputs, tickCount));
+    }
+
+    private static boolean isFree(GameEngine engine, int p, Direction d) {
+        Point pos = engine.getPlayer(p).getPosition();
+        int nx = pos.x + (d == Direction.LEFT ? -1 : d == Direction.RIGHT ? 1 : 0);
+        int ny = pos.y + (d == Direction.UP ? -1 : d == Direction.DOWN ? 1 : 0);
+        return !engine.isBlocked(nx, ny);
+    }
+
+    private static Level createLevel(Case c) {
+        Map<String, Integer> settings = new HashMap<>();
+        if(c.wrap) settings.put(Level.WRAP, 1);
+        if(c.decay > 0) settings.put(ArenaRules.DECAY, c.decay);
+        if(c.shrink > 0) settings.put(ArenaRules.SHRINK, c.shrink);
+        return new Level(c.map, new Point(c.starts[0]), new Point(c.starts[1]), "Fuzz", null,
+                         settings, Collections.emptyList());
+    }
+
+    private static GameEngine createEngine(Case c) {
+        return new GameEngine(createLevel(c), c.format, TEAM_NAMES, TEAM_COLORS, 0);
+    }
+
+    /**
+     * Checks that every player of a format gets a start cell of its own.
+     */
+    private static boolean hasDistinctStarts(Level level, MatchFormat format) {
+        Set<Point> taken = new HashSet<>();
+        for(int team = 0; team < MatchFormat.TEAMS; team++) {
+            for(Point start : level.getTeamStarts(team, format.getTeamSize())) {
+                if(start == null || !taken.add(start)) return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Plays a case on the engine and, if it models the case's rules, the
+     * reference model.
+     *
+     * @param c The case
+     * @return The first disagreement or broken invariant, or null if there is none
+     */
+    Failure check(Case c) {
+        Level level = createLevel(c);
+        // Shrinking can leave a team without room to start; such a case no longer says anything
+        if(!hasDistinctStarts(level, c.format)) return null;
+        GameEngine engine = new GameEngine(level, c.format, TEAM_NAMES, TEAM_COLORS, 0);
+        Reference reference = c.isModelled() ? new Reference(c.map, c.starts, c.wrap) : null;
+        GameEngine restored = null;
+        int restoreTick = c.getTickCount() / 3;
+
+        try {
+            for(int t = 0; t < c.getTickCount() && !(reference == null ? engine.isGameOver() : reference.over); t++) {
+                if(t == restoreTick) {
+                    try {
+                        restored = GameSnapshot.restore(GameSnapshot.capture(engine), level);
+                    } catch(IOException e) {
+                        return new Failure(t, "snapshot does not restore: " + e);
+                    }
+                }
+                for(int p = 0; p < c.inputs.length; p++) {
+                    Direction d = c.inputs[p][t] == 0 ? null : DIRECTIONS[c.inputs[p][t] - 1];
+                    engine.steer(p, d);
+                    if(restored != null) restored.steer(p, d);
+                    if(reference != null) reference.steer(p, d);
+                }
+                engine.tick();
+                if(restored != null) restored.tick();
+                if(reference != null) reference.tick();
+
+                String problem = reference == null ? null : compare(engine, reference);
+                if(problem == null) problem = checkGrid(engine);
+                if(problem == null && restored != null && !sameState(engine, restored)) {
+                    problem = "restored snapshot diverged";
+                }
+                if(problem != null) return new Failure(t, problem);
+            }
+        } catch(RuntimeException e) {
+            return new Failure(engine.getTickCount(), "engine threw " + e);
+        } finally {
+            games.incrementAndGet();
+            ticks.addAndGet(engine.getTickCount());
+        }
+        return null;
+    }
+
+    private static String compare(GameEngine engine, Reference reference) {
+        for(int p = 0; p < 2; p++) {
+            Point pos = engine.getPlayer(p).getPosition();
+            if(pos.x != reference.x[p] || pos.y != reference.y[p]) {
+                return "player " + (p + 1) + " at " + pos.x + "," + pos.y
+                    + ", expected " + reference.x[p] + "," + reference.y[p];
+            }
+        }
+        String expected = reference.getWinner();
+        String outcome = engine.isGameOver() ? engine.getResult().toString() : null;
+        if(engine.isGameOver() != reference.over || !String.valueOf(outcome).equals(String.valueOf(expected))) {
+            return "outcome " + (engine.isGameOver() ? outcome : "running")
+                + ", expected " + (reference.over ? expected : "running");
+        }
+        return null;
+    }
+
+    private static String checkGrid(GameEngine engine) {
+        TrailGrid grid = engine.getTrailGrid();
+        int historyCells = 0;
+        for(int p = 0; p < engine.getPlayerCount(); p++) {
+            int owner = engine.getPlayer(p).getTeam() + 1;
+            TrailHistory trail = engine.getTrail(p);
+            historyCells += trail.getCellCount();
+            int[] wrong = {0};
+            trail.forEachCell((x, y) -> {
+                if(grid.getOwner(x, y) != owner) wrong[0]++;
+            });
+            if(wrong[0] > 0) return wrong[0] + " trail cells of player " + (p + 1) + " missing from the grid";
+        }
+        int gridCells = 0;
+        for(int y = 0; y < grid.getHeight(); y++) {
+            for(int x = 0; x < grid.getWidth(); x++) {
+                if(grid.getOwner(x, y) != TrailGrid.EMPTY) gridCells++;
+            }
+        }
+        if(gridCells != historyCells) {
+            return "grid has " + gridCells + " trail cells, histories have " + historyCells;
+        }
+        return null;
+    }
+
+    private static boolean sameState(GameEngine a, GameEngine b) {
+        return Arrays.equals(GameSnapshot.capture(a), GameSnapshot.capture(b));
+    }
+
+    /**
+     * Shrinks a failing case to a smaller one that still fails.
+     *
+     * @param c A failing case
+     * @return The smallest failing case found
+     */
+    Case shrink(Case c) {
+        boolean progress = true;
+        while(progress) {
+            progress = false;
+
+            // Nothing after the failing tick matters
+            Failure failure = check(c);
+            int length = (int)Math.min(c.getTickCount(), failure.tick + 1);
+            if(length < c.getTickCount()) {
+                c = c.withInputs(truncate(c.inputs, length));
+                progress = true;
+            }
+
+            for(int p = 0; p < c.inputs.length; p++) {
+                for(int t = 0; t < c.getTickCount(); t++) {
+                    if(c.inputs[p][t] == 0) continue;
+                    byte[][] inputs = truncate(c.inputs, c.getTickCount());
+                    inputs[p][t] = 0;
+                    Case smaller = c.withInputs(inputs);
+                    if(check(smaller) != null) {
+                        c = smaller;
+                        progress = true;
+                    }
+                }
+            }
+
+            for(int y = 0; y < c.map.length; y++) {
+                for(int x = 0; x < c.map[0].length; x++) {
+                    if(c.map[y][x] != '#') continue;
+                    char[][] map = copy(c.map);
+                    map[y][x] = ' ';
+                    Case smaller = c.withMap(map, c.starts);
+                    if(check(smaller) != null) {
+                        c = smaller;
+                        progress = true;
+                    }
+                }
+            }
+
+            for(int side = 0; side < 4; side++) {
+                Case smaller = crop(c, side);
+                if(smaller != null && check(smaller) != null) {
+                    c = smaller;
+                    progress = true;
+                }
+            }
+        }
+        return c;
+    }
+
+    /**
+     * Removes one edge row or column of the level, unless a start is on it.
+     *
+     * @param side 0 left, 1 right, 2 top, 3 bottom
+     */
+    private static Case crop(Case c, int side) {
+        int height = c.map.length;
+        int width = c.map[0].length;
+        boolean horizontal = side < 2;
+        if((horizontal ? width : height) <= 1) return null;
+        int edge = side == 0 || side == 2 ? 0 : (horizontal ? width : height) - 1;
+        Point[] starts = new Point[2];
+        for(int p = 0; p < 2; p++) {
+            if((horizontal ? c.starts[p].x : c.starts[p].y) == edge) return null;
+            starts[p] = new Point(c.starts[p]);
+            if(edge == 0) starts[p].translate(horizontal ? -1 : 0, horizontal ? 0 : -1);
+        }
+        char[][] map;
+        if(horizontal) {
+            map = new char[height][];
+            for(int y = 0; y < height; y++) {
+                map[y] = Arrays.copyOfRange(c.map[y], edge == 0 ? 1 : 0, edge == 0 ? width : width - 1);
+            }
+        } else {
+            map = Arrays.copyOfRange(c.map, edge == 0 ? 1 : 0, edge == 0 ? height : height - 1);
+        }
+        return c.withMap(copy(map), starts);
+    }
+
+    private static byte[][] truncate(byte[][] inputs, int length) {
+        byte[][] copy = new byte[inputs.length][];
+        for(int p = 0; p < inputs.length; p++) {
+            copy[p] = Arrays.copyOf(inputs[p], length);
+        }
+        return copy;
+    }
+
+    private static char[][] copy(char[][] map) {
+        char[][] copy = new char[map.length][];
+        for(int y = 0; y < map.length; y++) {
+            copy[y] = map[y].clone();
+        }
+        return copy;
+    }
+
+    /**
+     * Formats a case as a level file followed by its inputs and failure.
+     *
+     * @param c The case
+     * @return The replay text
+     */
+    String describe(Case c) {
+        StringBuilder text = new StringBuilder();
+        if(c.wrap) text.append('@').append(Level.WRAP).append("=1\n");
+        if(c.decay > 0) text.append('@').append(ArenaRules.DECAY).append('=').append(c.decay).append('\n');
+        if(c.shrink > 0) text.append('@').append(ArenaRules.SHRINK).append('=').append(c.shrink).append('\n');
+        for(int y = 0; y < c.map.length; y++) {
+            for(int x = 0; x < c.map[y].length; x++) {
+                char cell = c.map[y][x];
+                if(c.starts[0].x == x && c.starts[0].y == y) cell = '1';
+                if(c.starts[1].x == x && c.starts[1].y == y) cell = '2';
+                text.append(cell);
+            }
+            text.append('\n');
+        }
+        if(c.format.isTeamGame()) text.append("played as ").append(c.format).append('\n');
+        for(int t = 0; t < c.getTickCount(); t++) {
+            for(int p = 0; p < c.inputs.length; p++) {
+                if(c.inputs[p][t] != 0) {
+                    text.append("tick ").append(t + 1).append(": player ").append(p + 1)
+                        .append(' ').append(DIRECTIONS[c.inputs[p][t] - 1]).append('\n');
+                }
+            }
+        }
+        Failure failure = check(c);
+        text.append("fails at tick ").append(failure.tick + 1).append(": ").append(failure.message);
+        return text.toString();
+    }
+
+    /**
+     * The rules written as plainly as possible, to check the engine against.
+     * Both players step at once; each crashes on a wall, outside the level
+     * or on any trail cell; players ending on the same cell or swapping
+     * cells both crash. On wraparound levels positions are taken modulo
+     * the level size.
+     */
+    private static final class Reference {
+        final char[][] map;
+        final boolean[][] trail;
+        final int[] x = new int[2];
+        final int[] y = new int[2];
+        final Direction[] direction = {Direction.RIGHT, Direction.LEFT};
+        final boolean wrap;
+        boolean over;
+        int winner; // 0 for a draw, otherwise the 1-based winner
+
+        Reference(char[][] map, Point[] starts, boolean wrap) {
+            this.map = map;
+            this.wrap = wrap;
+            this.trail = new boolean[map.length][map[0].length];
+            for(int p = 0; p < 2; p++) {
+                x[p] = starts[p].x;
+                y[p] = starts[p].y;
+            }
+        }
+
+        void steer(int p, Direction d) {
+            if(!over && d != null && d != direction[p].opposite()) direction[p] = d;
+        }
+
+        void tick() {
+            if(over) return;
+            int[] oldX = x.clone();
+            int[] oldY = y.clone();
+            boolean[] crashed = new boolean[2];
+            for(int p = 0; p < 2; p++) {
+                trail[y[p]][x[p]] = true;
+                switch(direction[p]) {
+                    case UP: y[p]--; break;
+                    case DOWN: y[p]++; break;
+                    case LEFT: x[p]--; break;
+                    case RIGHT: x[p]++; break;
+                }
+                if(wrap) {
+                    x[p] = Math.floorMod(x[p], map[0].length);
+                    y[p] = Math.floorMod(y[p], map.length);
+                }
+            }
+            for(int p = 0; p < 2; p++) {
+                boolean inside = x[p] >= 0 && y[p] >= 0 && y[p] < map.length && x[p] < map[0].length;
+                crashed[p] = !inside || map[y[p]][x[p]] == '#' || trail[y[p]][x[p]];
+            }
+            boolean sameCell = x[0] == x[1] && y[0] == y[1];
+            boolean swapped = x[0] == oldX[1] && y[0] == oldY[1] && x[1] == oldX[0] && y[1] == oldY[0];
+            if(sameCell || swapped) {
+                crashed[0] = true;
+                crashed[1] = true;
+            }
+            if(crashed[0] || crashed[1]) {
+                over = true;
+                winner = crashed[0] && crashed[1] ? 0 : (crashed[0] ? 2 : 1);
+            }
+        }
+
+        String getWinner() {
+            if(!over) return null;
+            return winner == 0 ? MatchResult.DRAW.toString() : "P" + winner;
+        }
+    }
+
+    /**
+     * Runs the fuzzer from the command line and prints a shrunk replay of
+     * the first failure.
+     * Usage: {@code EngineFuzzer [cases] [seed] [threads]}
+     *
+     * @param args Optional case count, seed and thread count
+     */
+    public static void main(String[] args) throws InterruptedException {
+        long caseCount = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        EngineFuzzer fuzzer = new EngineFuzzer();
+        System.out.println("Seed " + seed);
+        long started = System.nanoTime();
+        Case failed = fuzzer.run(caseCount, seed, threads);
+        double seconds = (System.nanoTime() - started) / 1e9;
+        System.out.printf("%d games, %d ticks in %.1f s (%.0f games/s)%n",
+            fuzzer.getGameCount(), fuzzer.getTickCount(), seconds, fuzzer.getGameCount() / seconds);
+        if(failed != null) {
+            System.out.println(fuzzer.describe(fuzzer.shrink(failed)));
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package tron;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Hashed timing wheel of events keyed by the tick they are due on.
+ *
+ * An event is a {@code long} whose meaning is up to the caller, so
+ * scheduling never allocates once the slots have grown to their working
+ * size. Scheduling is O(1) and each tick only looks at the one slot its
+ * tick hashes to; events due more than one revolution ahead simply stay in
+ * their slot until their tick comes round.
+ */
+public class EventWheel {
+    /**
+     * Receives events as they fall due.
+     */
+    public interface Handler {
+        /**
+         * @param event The event as passed to {@link EventWheel#schedule(long, long)}
+         */
+        void fire(long event);
+    }
+
+    private final int mask;
+    private final long[][] dueTicks;
+    private final long[][] events;
+    private final int[] counts;
+    private int size;
+
+    /**
+     * Creates an empty wheel.
+     *
+     * @param slots Number of slots, rounded up to a power of two
+     */
+    public EventWheel(int slots) {
+        int n = Integer.highestOneBit(Math.max(1, slots - 1)) << 1;
+        this.mask = n - 1;
+        this.dueTicks = new long[n][4];
+        this.events = new long[n][4];
+        this.counts = new int[n];
+    }
+
+    /**
+     * Schedules an event.
+     *
+     * @param dueTick The tick the event should fire on
+     * @param event The event
+     */
+    public void schedule(long dueTick, long event) {
+        int slot = (int)(dueTick & mask);
+        int count = counts[slot];
+        if(count == events[slot].length) {
+            dueTicks[slot] = Arrays.copyOf(dueTicks[slot], count * 2);
+            events[slot] = Arrays.copyOf(events[slot], count * 2);
+        }
+        dueTicks[slot][count] = dueTick;
+        events[slot][count] = event;
+        counts[slot] = count + 1;
+        size++;
+    }
+
+    /**
+     * Fires and removes every event due on a tick. The handler may schedule
+     * further events, but those due on the same tick are not fired until the
+     * tick comes round again.
+     *
+     * @param tick The tick that has been reached
+     * @param handler Receives the due events
+     */
+    public void advance(long tick, Handler handler) {
+        int slot = (int)(tick & mask);
+        for(int i = counts[slot] - 1; i >= 0; i--) {
+            if(dueTicks[slot][i] != tick) continue;
+            long event = events[slot][i];
+            // Order within a slot does not matter, so swap with the last entry
+            int last = counts[slot] - 1;
+            dueTicks[slot][i] = dueTicks[slot][last];
+            events[slot][i] = events[slot][last];
+            counts[slot] = last;
+            size--;
+            handler.fire(event);
+        }
+    }
+
+    /**
+     * Removes every event.
+     */
+    public void clear() {
+        Arrays.fill(counts, 0);
+        size = 0;
+    }
+
+    /**
+     * @return The number of pending events
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Writes the pending events, slot by slot, so a wheel read back fires
+     * them in the same order.
+     *
+     * @param out The stream to write to
+     * @throws IOException if writing fails
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(size);
+        for(int slot = 0; slot < counts.length; slot++) {
+            for(int i = 0; i < counts[slot]; i++) {
+                out.writeLong(dueTicks[slot][i]);
+                out.writeLong(events[slot][i]);
+            }
+        }
+    }
+
+    /**
+     * Replaces the pending events with those written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in The stream to read from
+     * @throws IOException if reading fails
+     */
+    public void readFrom(DataInput in) throws IOException {
+        clear();
+        int count = in.readInt();
+        if(count < 0) throw new IOException("Corrupt event count " + count);
+        for(int i = 0; i < count; i++) {
+            long dueTick = in.readLong();
+            schedule(dueTick, in.readLong());
+        }
+    }
+}
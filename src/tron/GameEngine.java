@@ -0,0 +1,495 @@
+package tron;
+
+import java.awt.Color;
+import java.awt.Point;
+
+/**
+ * Headless game rules for one round: moving the light-cycles, recording
+ * their trails and detecting collisions. Holds no UI or timer state, so
+ * it can be stepped by the {@link GamePanel} timer or by a
+ * {@link MatchScheduler} hosting many rounds at once.
+ *
+ * Players play in two teams, see {@link MatchFormat}. The trail grid
+ * records the team that owns each cell, so teammates share their trails'
+ * color. A crashed player is out, its trail staying on the board, and the
+ * round goes on until at most one team has players left.
+ */
+public class GameEngine {
+    /** Result code of a round still running, see {@link #getResultCode()}. */
+    static final int RUNNING = -2;
+
+    private final Level level;
+    private final Player[] players;
+    private final TrailHistory[] trails;
+    private final TrailGrid trailGrid;
+    private final ArenaRules rules;
+    private final String[] teamNames;
+    // Result of a win for each team, created up front so ending a round does not allocate
+    private final MatchResult[] teamResults;
+    private GameMode mode;
+    // Where each player stood when the current tick started
+    private final Point[] tickStarts;
+    private final boolean[] crashed;
+    private final boolean[] eliminated;
+    // Level cell index of each player's position
+    private final int[] heads;
+    private MatchResult result;
+    private long tickCount;
+    private long rngState;
+
+    /**
+     * Creates a round on the given level with both players at their start positions.
+     *
+     * @param level The level to play on
+     * @param p1Name Player 1's name
+     * @param p1Color Player 1's color
+     * @param p2Name Player 2's name
+     * @param p2Color Player 2's color
+     */
+    public GameEngine(Level level, String p1Name, Color p1Color, String p2Name, Color p2Color) {
+        this(level, p1Name, p1Color, p2Name, p2Color, System.nanoTime());
+    }
+
+    /**
+     * Creates a round with a fixed random seed, so it can be replayed exactly.
+     *
+     * @param level The level to play on
+     * @param p1Name Player 1's name
+     * @param p1Color Player 1's color
+     * @param p2Name Player 2's name
+     * @param p2Color Player 2's color
+     * @param seed Seed for the engine's random number generator
+     */
+    public GameEngine(Level level, String p1Name, Color p1Color, String p2Name, Color p2Color, long seed) {
+        this(level, MatchFormat.ONE_V_ONE, new String[] {p1Name, p2Name}, new Color[] {p1Color, p2Color}, seed);
+    }
+
+    /**
+     * Creates a round between two teams. In a team game the players are
+     * named after their team and numbered, for example "Red 2".
+     *
+     * @param level The level to play on
+     * @param format The number of players per team
+     * @param teamNames The name of each team; in a one-on-one round, the players' names
+     * @param teamColors The color of each team
+     * @param seed Seed for the engine's random number generator
+     */
+    public GameEngine(Level level, MatchFormat format, String[] teamNames, Color[] teamColors, long seed) {
+        this.level = level;
+        this.teamNames = teamNames.clone();
+        this.players = new Player[format.getPlayerCount()];
+        Point[][] starts = new Point[MatchFormat.TEAMS][];
+        for(int team = 0; team < MatchFormat.TEAMS; team++) {
+            starts[team] = level.getTeamStarts(team, format.getTeamSize());
+        }
+        for(int i = 0; i < players.length; i++) {
+            int team = MatchFormat.teamOf(i);
+            int member = MatchFormat.memberOf(i);
+            String name = format.isTeamGame() ? teamNames[team] + " " + (member + 1) : teamNames[team];
+            players[i] = new Player(name, teamColors[team], starts[team][member],
+                team == 0 ? Direction.RIGHT : Direction.LEFT, team);
+        }
+        this.trails = new TrailHistory[players.length];
+        for(int i = 0; i < trails.length; i++) {
+            trails[i] = new TrailHistory();
+        }
+        this.trailGrid = new TrailGrid(level.getWidth(), level.getHeight());
+        this.rules = ArenaRules.forLevel(level, players.length);
+        this.teamResults = createResults(this.teamNames);
+        this.tickStarts = createPoints(players.length);
+        this.crashed = new boolean[players.length];
+        this.eliminated = new boolean[players.length];
+        this.heads = new int[players.length];
+        this.rngState = seed;
+        findHeads();
+    }
+
+    /**
+     * Recreates a round from saved state. Used by {@link GameSnapshot}.
+     * The trail grid is rebuilt from the trail histories; the caller
+     * restores the state of the level's rules, if it has any.
+     */
+    GameEngine(Level level, Player[] players, String[] teamNames, boolean[] eliminated, TrailHistory[] trails,
+               long tickCount, int result, long rngState) {
+        this.level = level;
+        this.players = players;
+        this.teamNames = teamNames;
+        this.trails = trails;
+        this.trailGrid = new TrailGrid(level.getWidth(), level.getHeight());
+        this.rules = ArenaRules.forLevel(level, players.length);
+        for(int i = 0; i < trails.length; i++) {
+            rebuildGrid(i);
+        }
+        this.teamResults = createResults(teamNames);
+        this.tickStarts = createPoints(players.length);
+        this.crashed = new boolean[players.length];
+        this.eliminated = eliminated;
+        this.heads = new int[players.length];
+        this.tickCount = tickCount;
+        if(result != RUNNING) {
+            this.result = result == MatchResult.NO_TEAM ? MatchResult.DRAW : teamResults[result];
+        }
+        this.rngState = rngState;
+        findHeads();
+    }
+
+    private static MatchResult[] createResults(String[] teamNames) {
+        MatchResult[] results = new MatchResult[teamNames.length];
+        for(int team = 0; team < results.length; team++) {
+            results[team] = new MatchResult(team, teamNames[team]);
+        }
+        return results;
+    }
+
+    private static Point[] createPoints(int count) {
+        Point[] points = new Point[count];
+        for(int i = 0; i < count; i++) {
+            points[i] = new Point();
+        }
+        return points;
+    }
+
+    private void findHeads() {
+        for(int i = 0; i < players.length; i++) {
+            Point p = players[i].getPosition();
+            heads[i] = level.getCell(p.x, p.y);
+        }
+    }
+
+    /**
+     * Turns a player unless the new direction would reverse into its own
+     * trail. Players that are out can no longer turn.
+     *
+     * @param playerIndex 0-based index of the player
+     * @param direction The requested direction
+     * @return true if the direction was applied
+     */
+    public boolean steer(int playerIndex, Direction direction) {
+        Player player = players[playerIndex];
+        if(result != null || eliminated[playerIndex] || direction == null || direction == player.getDirection().opposite()) return false;
+        player.setDirection(direction);
+        return true;
+    }
+
+    /**
+     * Advances the round by one step: fires any timed rule events, moves the
+     * players still in, lets them collect pickups and checks for collisions.
+     * Does nothing once the round is over.
+     */
+    public void tick() {
+        if(result != null) return;
+        TickEvent tickEvent = new TickEvent();
+        tickEvent.begin();
+        tickCount++;
+        for(int i = 0; i < players.length; i++) {
+            tickStarts[i].setLocation(players[i].getPosition());
+        }
+        if(rules != null) rules.beforeMove(this);
+        if(mode != null) mode.beforeMove(this);
+        for(int i = 0; i < players.length; i++) {
+            if(!eliminated[i]) movePlayer(i);
+        }
+        if(rules != null) rules.afterMove(this);
+
+        checkCollisions();
+        if(mode != null && result == null) mode.afterMove(this);
+        tickEvent.end();
+        if(tickEvent.shouldCommit()) {
+            tickEvent.tick = tickCount;
+            tickEvent.level = level.getName();
+            tickEvent.commit();
+        }
+    }
+
+    /**
+     * Ends the round early. Used by game modes with their own winning
+     * conditions. Does nothing once the round is over.
+     *
+     * @param winningTeam 0-based index of the winning team, or
+     *                    {@link MatchResult#NO_TEAM} for a draw
+     */
+    public void endRound(int winningTeam) {
+        if(result != null) return;
+        result = winningTeam == MatchResult.NO_TEAM ? MatchResult.DRAW : teamResults[winningTeam];
+    }
+
+    /**
+     * Checks whether a cell would end the round for a player entering it.
+     * On wraparound levels coordinates outside the level are wrapped onto it.
+     *
+     * @param x X-coordinate to check
+     * @param y Y-coordinate to check
+     * @return true if the cell is a wall, outside the level or its border, or part of a trail
+     */
+    public boolean isBlocked(int x, int y) {
+        if(level.isWraparound()) {
+            x = Math.floorMod(x, level.getWidth());
+            y = Math.floorMod(y, level.getHeight());
+        } else if(!trailGrid.contains(x, y)) {
+            return true;
+        }
+        return isWall(level.getCell(x, y), x, y) || trailGrid.getOwner(x, y) != TrailGrid.EMPTY;
+    }
+
+    private boolean isWall(int cell, int x, int y) {
+        return level.isWallCell(cell) || (rules != null && rules.isOutside(x, y));
+    }
+
+    /**
+     * Draws the next number from the engine's random number generator.
+     * All randomness in the rules must come from here so that snapshots
+     * and replays reproduce a round exactly.
+     *
+     * @param bound The exclusive upper bound, must be positive
+     * @return A pseudo-random number in the range 0 to bound - 1
+     */
+    public int nextRandom(int bound) {
+        // SplitMix64
+        rngState += 0x9E3779B97F4A7C15L;
+        long z = rngState;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z = z ^ (z >>> 31);
+        return (int)Math.floorMod(z, (long)bound);
+    }
+
+    private void rebuildGrid(int index) {
+        int owner = players[index].getTeam() + 1;
+        int[] cells = new int[trails[index].getCellCount() * 2];
+        int[] filled = {0};
+        trails[index].forEachCell((x, y) -> {
+            cells[filled[0]++] = x;
+            cells[filled[0]++] = y;
+        });
+
+        // Each cell links back to the cell laid before it and forward to the
+        // one laid after it; the newest cell links forward to the player's head
+        Point cell = new Point();
+        Point neighbour = new Point();
+        for(int i = 0; i < cells.length; i += 2) {
+            cell.setLocation(cells[i], cells[i + 1]);
+            int links = 0;
+            if(i > 0) {
+                neighbour.setLocation(cells[i - 2], cells[i - 1]);
+                links |= TrailGrid.linkTowards(cell, neighbour);
+            }
+            if(i + 2 < cells.length) {
+                neighbour.setLocation(cells[i + 2], cells[i + 3]);
+            } else {
+                neighbour.setLocation(players[index].getPosition());
+            }
+            links |= TrailGrid.linkTowards(cell, neighbour);
+            trailGrid.set(cell.x, cell.y, owner, links);
+        }
+    }
+
+    private void movePlayer(int index) {
+        step(index);
+        if(rules == null || !rules.isBoosted(index, tickCount)) return;
+        // A boosted player takes a second step unless the first one crashed
+        Point p = players[index].getPosition();
+        if(isWall(heads[index], p.x, p.y)) return;
+        int owner = trailGrid.getOwner(p.x, p.y);
+        if(owner != TrailGrid.EMPTY && !rules.isPhasing(index, tickCount)) return;
+        step(index);
+    }
+
+    private void step(int index) {
+        Player player = players[index];
+        TrailHistory trail = trails[index];
+        int owner = player.getTeam() + 1;
+        Point oldPos = player.getPosition();
+        Point cameFrom = player.getPreviousPosition();
+        Direction direction = player.getDirection();
+        int cell = level.getNeighbour(heads[index], direction);
+        heads[index] = cell;
+        Point newPos = level.isWraparound()
+            ? new Point(level.getCellX(cell), level.getCellY(cell))
+            : new Point(oldPos.x + direction.getDx(), oldPos.y + direction.getDy());
+
+        player.setPosition(newPos);
+        trail.append(oldPos.x, oldPos.y);  // Add the old position to trail
+        trailGrid.set(oldPos.x, oldPos.y, owner,
+            TrailGrid.linkTowards(oldPos, cameFrom) | TrailGrid.linkTowards(oldPos, newPos));
+        if(rules != null) rules.cellLaid(this, index);
+    }
+
+    /**
+     * Puts out every player that crashed this tick and ends the round once
+     * at most one team is left. A player crashes by ending the tick in a
+     * wall or on any trail, its own and its teammates' included, unless it
+     * is phasing. Two players that end on the same cell or swap cells meet
+     * head-on and both crash, phasing or not. When the last players of
+     * every team crash on the same tick the round is a draw.
+     *
+     * The teams still in are collected, as a bit set of team indices, in
+     * the same pass over the players that finds the crashes.
+     */
+    private void checkCollisions() {
+        String cause = null;
+        boolean anyCrashed = false;
+        int teamsLeft = 0;
+
+        for(int i = 0; i < players.length; i++) {
+            crashed[i] = false;
+            if(eliminated[i]) continue;
+            Point p = players[i].getPosition();
+            if(isWall(heads[i], p.x, p.y)) {
+                crashed[i] = true;
+                if(cause == null) cause = "wall";
+            } else if(trailGrid.getOwner(p.x, p.y) != TrailGrid.EMPTY
+                      && (rules == null || !rules.isPhasing(i, tickCount))) {
+                crashed[i] = true;
+                if(cause == null) cause = "trail";
+            }
+            for(int j = 0; j < players.length; j++) {
+                if(j == i || eliminated[j]) continue;
+                Point q = players[j].getPosition();
+                if(p.equals(q) || (p.equals(tickStarts[j]) && q.equals(tickStarts[i]))) {
+                    crashed[i] = true;
+                    cause = "head-on";
+                }
+            }
+            if(crashed[i]) {
+                anyCrashed = true;
+            } else {
+                teamsLeft |= 1 << players[i].getTeam();
+            }
+        }
+        if(!anyCrashed) return;
+
+        if(teamsLeft == 0) {
+            result = MatchResult.DRAW;
+        } else if(Integer.bitCount(teamsLeft) == 1) {
+            result = teamResults[Integer.numberOfTrailingZeros(teamsLeft)];
+        }
+        for(int i = 0; i < players.length; i++) {
+            if(crashed[i]) eliminate(i);
+        }
+
+        if(result == null) return;
+        CollisionEvent event = new CollisionEvent();
+        if(event.shouldCommit()) {
+            Point p1Pos = players[0].getPosition();
+            Point p2Pos = players[1].getPosition();
+            event.tick = tickCount;
+            event.cause = cause;
+            event.winner = result.toString();
+            event.player1X = p1Pos.x;
+            event.player1Y = p1Pos.y;
+            event.player2X = p2Pos.x;
+            event.player2Y = p2Pos.y;
+            event.commit();
+        }
+    }
+
+    /**
+     * Puts a crashed player out. While the round goes on, the cell it
+     * crashed on joins its trail if it is still free, so that the others
+     * cannot drive through the wreck.
+     */
+    private void eliminate(int index) {
+        eliminated[index] = true;
+        if(result != null) return;
+        Point p = players[index].getPosition();
+        if(isWall(heads[index], p.x, p.y) || trailGrid.getOwner(p.x, p.y) != TrailGrid.EMPTY) return;
+        trails[index].append(p.x, p.y);
+        trailGrid.set(p.x, p.y, players[index].getTeam() + 1,
+            TrailGrid.linkTowards(p, players[index].getPreviousPosition()));
+    }
+
+    /**
+     * Plays the round under a game mode's rules, starting the mode.
+     *
+     * @param mode The game mode, or null for the classic rules
+     */
+    public void setMode(GameMode mode) {
+        this.mode = mode;
+        if(mode != null) mode.start(this);
+    }
+
+    /**
+     * @return The game mode, or null for the classic rules
+     */
+    public GameMode getMode() { return mode; }
+
+    /**
+     * @return The level being played
+     */
+    public Level getLevel() { return level; }
+
+    /**
+     * @param index 0-based index of the player
+     * @return The player at that index
+     */
+    public Player getPlayer(int index) { return players[index]; }
+
+    /**
+     * @return The players in owner order; the array must not be modified
+     */
+    public Player[] getPlayers() { return players; }
+
+    /**
+     * @return The number of players in the round
+     */
+    public int getPlayerCount() { return players.length; }
+
+    /**
+     * @param index 0-based index of the player
+     * @return The ordered trail of that player
+     */
+    public TrailHistory getTrail(int index) { return trails[index]; }
+
+    /**
+     * @return The level's timed rules, or null if the level has none
+     */
+    public ArenaRules getRules() { return rules; }
+
+    /**
+     * @return The trail occupancy grid
+     */
+    public TrailGrid getTrailGrid() { return trailGrid; }
+
+    /**
+     * @param index 0-based index of the player
+     * @return true if the player has crashed and is out of the round
+     */
+    public boolean isEliminated(int index) { return eliminated[index]; }
+
+    /**
+     * @return The number of teams in the round
+     */
+    public int getTeamCount() { return teamNames.length; }
+
+    /**
+     * @param team 0-based index of the team
+     * @return The team's name; in a one-on-one round, its player's name
+     */
+    public String getTeamName(int team) { return teamNames[team]; }
+
+    /**
+     * @return true once the round has ended
+     */
+    public boolean isGameOver() { return result != null; }
+
+    /**
+     * @return The outcome of the round, or null while it is running
+     */
+    public MatchResult getResult() { return result; }
+
+    /**
+     * @return The winning team, {@link MatchResult#NO_TEAM} for a draw or
+     *         {@link #RUNNING}, for snapshots
+     */
+    int getResultCode() { return result == null ? RUNNING : result.getWinningTeam(); }
+
+    /**
+     * @return The number of ticks played so far
+     */
+    public long getTickCount() { return tickCount; }
+
+    /**
+     * @return The internal state of the random number generator, for snapshots
+     */
+    long getRandomState() { return rngState; }
+}
@@ -3,103 +3,145 @@ package tron;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
-import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * The main game window that contains the game panel and manages the game life cycle.
  * Handles window initialization, game setup, and coordinates between different game components.
+ *
+ * Opening the database (which loads the SQLite native library) and listing
+ * the levels both run in the background while the start dialog is shown,
+ * so the first window appears without waiting for either.
  */
 public class GameFrame extends JFrame {
     private GamePanel gamePanel;
-    private DatabaseManager dbManager;
-    private String currentLevelPath;
-    private String player1Name;
-    private String player2Name;
-    private Color player1Color;
-    private Color player2Color;
-    private Level currentLevel;
+    private final CompletableFuture<DatabaseManager> database;
+    private boolean closed;
 
     /**
-     * Creates and initializes the main game window.
-     * Sets up the window properties and starts the game setup process.
+     * Creates the main game window and starts opening the database and
+     * listing the levels in the background. Call {@link #start()} to show
+     * the start dialog.
      */
     public GameFrame() {
         setTitle("Tron Light-Cycle Battle");
-        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-        
-        dbManager = new DatabaseManager();
-
-        while (true) {
-            // Show start dialog
-            StartDialog startDialog = new StartDialog(this);
-            startDialog.setLocationRelativeTo(null);  // Center the start dialog
-            startDialog.setVisible(true);
-
-            // If user cancels the dialog, exit the game
-            if(!startDialog.isConfirmed()) {
-                System.exit(0);
+        setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                closeResources();
             }
+        });
 
-            player1Name = startDialog.getPlayer1Name();
-            player2Name = startDialog.getPlayer2Name();
-            player1Color = startDialog.getPlayer1Color();
-            player2Color = startDialog.getPlayer2Color();
-            currentLevelPath = startDialog.getSelectedLevel();
-
-            // Attempt to load the selected level
-            Level attemptedLevel = null;
-            try {
-                attemptedLevel = LevelLoader.loadLevel(currentLevelPath);
-            } catch(IOException e) {
-                // If failed to load, show error and prompt again
-                JOptionPane.showMessageDialog(this, 
-                    "Failed to load the level. Please select another level.",
-                    "Load Error", 
-                    JOptionPane.ERROR_MESSAGE);
-                continue; // Go back to StartDialog
-            }
+        database = CompletableFuture.supplyAsync(DatabaseManager::new, task -> {
+            Thread t = new Thread(task, "database-init");
+            t.setDaemon(true);
+            t.start();
+        });
+        LevelCatalog.levels();
+    }
 
-            // Check if the loaded level is valid
-            if (attemptedLevel == null || attemptedLevel.getWidth() == 0 || attemptedLevel.getHeight() == 0) {
-                JOptionPane.showMessageDialog(this, 
-                    "This level file is empty or invalid. Please select another level.", 
-                    "Invalid Level", 
-                    JOptionPane.ERROR_MESSAGE);
-                continue; // Go back to StartDialog
+    /**
+     * Shows the start dialog. Once the players confirm, the selected level
+     * is loaded in the background and the game window is shown; if they
+     * cancel, the game closes.
+     */
+    public void start() {
+        StartDialog startDialog = new StartDialog(this, false);
+        startDialog.addLevelSelectionListener(e -> LevelCache.prefetch(startDialog.getSelectedLevel()));
+        LevelCache.prefetch(startDialog.getSelectedLevel());
+        startDialog.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                if(!startDialog.isConfirmed()) {
+                    shutdown();
+                } else if(startDialog.getSelectedLevel() == null) {
+                    JOptionPane.showMessageDialog(GameFrame.this,
+                        "No levels were found in the levels folder.",
+                        "Load Error",
+                        JOptionPane.ERROR_MESSAGE);
+                    shutdown();
+                } else {
+                    String p1Name = startDialog.getPlayer1Name();
+                    Color p1Color = startDialog.getPlayer1Color();
+                    String p2Name = startDialog.getPlayer2Name();
+                    Color p2Color = startDialog.getPlayer2Color();
+                    MatchFormat format = startDialog.getFormat();
+                    String mode = startDialog.getGameMode();
+                    String[] controllers = startDialog.getControllers();
+                    CompletableFuture<Level> loading = LevelCache.get(startDialog.getSelectedLevel());
+                    loading.whenComplete((level, failure) -> SwingUtilities.invokeLater(
+                        () -> levelLoaded(loading, p1Name, p1Color, p2Name, p2Color, format, mode, controllers)));
+                }
             }
+        });
+        startDialog.setLocationRelativeTo(null);  // Center the start dialog
+        startDialog.setVisible(true);
+    }
 
-            // If we reach here, the level is valid, break out of the loop
-            currentLevel = attemptedLevel;
-            break;
+    private void levelLoaded(CompletableFuture<Level> loading, String p1Name, Color p1Color, String p2Name,
+                             Color p2Color, MatchFormat format, String mode, String[] controllers) {
+        Level level;
+        try {
+            level = loading.join();
+        } catch(CompletionException e) {
+            // If failed to load, show error and prompt again
+            e.getCause().printStackTrace();
+            JOptionPane.showMessageDialog(this,
+                "Failed to load the level. Please select another level.",
+                "Load Error",
+                JOptionPane.ERROR_MESSAGE);
+            start();
+            return;
         }
 
         // Create the game panel with the valid level
-        gamePanel = new GamePanel(this, player1Name, player1Color, player2Name, player2Color, currentLevel, dbManager);
+        gamePanel = new GamePanel(this, p1Name, p1Color, p2Name, p2Color, level, format, mode, controllers, getDbManager());
         add(gamePanel);
-        
+
         pack();
-        setResizable(false);
+        setResizable(true);
         setLocationRelativeTo(null);  // Center the game window
+        setVisible(true);
+        gamePanel.requestFocusInWindow();
     }
 
     /**
-     * Returns the database manager instance used by the game.
+     * Closes the game window. Stopping the game and closing the database
+     * happen in the window listener, after which the JVM exits once no
+     * other windows or non-daemon threads remain.
+     */
+    public void shutdown() {
+        dispose();
+        // A window that was never shown gets no close event
+        closeResources();
+    }
+
+    private void closeResources() {
+        if(closed) return;
+        closed = true;
+        if(gamePanel != null) gamePanel.stop();
+        database.thenAccept(DatabaseManager::closeConnection);
+    }
+
+    /**
+     * Returns the database manager instance used by the game, waiting for
+     * it to finish opening if necessary.
      *
      * @return the database manager instance
      */
     public DatabaseManager getDbManager() {
-        return dbManager;
+        return database.join();
     }
 
     /**
      * The main entry point of the application.
-     * Creates and displays the game window.
+     * Creates the game window and shows the start dialog.
      *
      * @param args Command line arguments (not used)
      */
     public static void main(String[] args) {
-        SwingUtilities.invokeLater(() -> {
-            new GameFrame().setVisible(true);
-        });
+        SwingUtilities.invokeLater(() -> new GameFrame().start());
     }
 }
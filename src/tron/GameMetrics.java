@@ -0,0 +1,97 @@
+package tron;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Registry of runtime latency histograms for the game loop, rendering,
+ * level loading and database access.
+ *
+ * Metrics are only collected when the JVM is started with
+ * {@code -Dtron.metrics=true}. Because {@link #ENABLED} is a static final
+ * constant, the JIT removes the timing calls entirely when it is off.
+ * When enabled, every histogram is also published over JMX under
+ * {@code tron:type=Metrics,name=<histogram>}.
+ */
+public final class GameMetrics {
+    /** Whether metrics collection was switched on at startup. */
+    public static final boolean ENABLED = Boolean.getBoolean("tron.metrics");
+
+    private static final List<LatencyHistogram> ALL = new ArrayList<>();
+
+    /** Duration of one game tick ({@code GamePanel.actionPerformed}). */
+    public static final LatencyHistogram TICK = register("tick");
+    /** Duration of one frame ({@code GamePanel.paintComponent}). */
+    public static final LatencyHistogram PAINT = register("paint");
+    /** Delay between the OS key event and its handling on the EDT. */
+    public static final LatencyHistogram INPUT = register("input");
+    /** Delay between a steering key press and the tick that applies it. */
+    public static final LatencyHistogram TURN = register("turn");
+    /** Duration of {@code LevelLoader.loadLevel}. */
+    public static final LatencyHistogram LEVEL_LOAD = register("levelLoad");
+    /** Duration of database writes. */
+    public static final LatencyHistogram DB_WRITE = register("dbWrite");
+    /** Duration of database reads. */
+    public static final LatencyHistogram DB_READ = register("dbRead");
+
+    static {
+        if(ENABLED) {
+            registerMBeans();
+        }
+    }
+
+    private GameMetrics() {
+    }
+
+    /**
+     * Starts timing an operation.
+     *
+     * @return The current {@link System#nanoTime()}, or 0 when metrics are disabled
+     */
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * Finishes timing an operation started with {@link #start()}.
+     *
+     * @param histogram The histogram to record the duration in
+     * @param startNanos The value returned by {@link #start()}
+     */
+    public static void stop(LatencyHistogram histogram, long startNanos) {
+        if(ENABLED) {
+            histogram.record(System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * @return All registered histograms, in registration order
+     */
+    public static List<LatencyHistogram> getHistograms() {
+        return Collections.unmodifiableList(ALL);
+    }
+
+    private static LatencyHistogram register(String name) {
+        LatencyHistogram histogram = new LatencyHistogram(name);
+        ALL.add(histogram);
+        return histogram;
+    }
+
+    private static void registerMBeans() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            for(LatencyHistogram histogram : ALL) {
+                ObjectName objectName = new ObjectName("tron:type=Metrics,name=" + histogram.getName());
+                if(!server.isRegistered(objectName)) {
+                    server.registerMBean(histogram, objectName);
+                }
+            }
+        } catch(Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
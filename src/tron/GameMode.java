@@ -0,0 +1,48 @@
+package tron;
+
+/**
+ * Extra rules applied to a round on every tick, such as a time limit.
+ *
+ * Game modes are plugins: implementations are found with
+ * {@link java.util.ServiceLoader} from {@code META-INF/services/tron.GameMode}
+ * files in the jars on the classpath, and need a public no-argument
+ * constructor. A new instance is created for every round.
+ *
+ * The tick methods run inside the game loop, so they must not allocate
+ * objects and must stay within the per-tick time budget checked by
+ * {@link PluginBenchmark}; {@link #start(GameEngine)} may do both.
+ */
+public interface GameMode {
+    /**
+     * @return The name shown to players when choosing a mode
+     */
+    default String getName() {
+        return getClass().getSimpleName();
+    }
+
+    /**
+     * Called once before the first tick of a round, or when a saved round is resumed.
+     *
+     * @param engine The round
+     */
+    default void start(GameEngine engine) {
+    }
+
+    /**
+     * Called on every tick before the players move.
+     *
+     * @param engine The round
+     */
+    default void beforeMove(GameEngine engine) {
+    }
+
+    /**
+     * Called on every tick after the players have moved and collisions
+     * have been checked, unless a collision ended the round. A mode can
+     * end the round here with {@link GameEngine#endRound(int)}.
+     *
+     * @param engine The round
+     */
+    default void afterMove(GameEngine engine) {
+    }
+}
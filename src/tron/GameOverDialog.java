@@ -14,18 +14,20 @@ import java.io.IOException;
 public class GameOverDialog extends JDialog {
     private boolean playAgain = false;
     private boolean showHighScores = false;
+    private boolean exitRequested = false;
     private DatabaseManager dbManager;
 
     /**
      * Creates a new game over dialog with the specified winner and game duration.
+     * The dialog is modeless; read the player's choice once it has been closed.
      *
      * @param owner The parent frame (game window)
-     * @param winner The name of the winning player or "Draw"
+     * @param result The outcome of the game
      * @param gameTime The duration of the game in milliseconds
      * @param dbManager Database manager for updating scores
      */
-    public GameOverDialog(Frame owner, String winner, long gameTime, DatabaseManager dbManager) {
-        super(owner, "Game Over", true);
+    public GameOverDialog(Frame owner, MatchResult result, long gameTime, DatabaseManager dbManager) {
+        super(owner, "Game Over", false);
         setDefaultCloseOperation(DISPOSE_ON_CLOSE);
 
         JPanel mainPanel = new JPanel(new BorderLayout(10, 10));
@@ -48,11 +50,11 @@ public class GameOverDialog extends JDialog {
         JPanel messagePanel = new JPanel(new GridLayout(2, 1, 5, 5));
         messagePanel.setOpaque(false);
         
-        JLabel congratsLabel = new JLabel("Congratulations!");
+        JLabel congratsLabel = new JLabel(result.isDraw() ? "Game Over" : "Congratulations!");
         congratsLabel.setFont(new Font("Arial", Font.BOLD, 24));
         congratsLabel.setForeground(new Color(51, 51, 51));
         
-        JLabel winnerLabel = new JLabel(winner + " wins!");
+        JLabel winnerLabel = new JLabel(result.isDraw() ? "It's a draw!" : result.getWinner() + " wins!");
         winnerLabel.setFont(new Font("Arial", Font.PLAIN, 18));
         
         messagePanel.add(congratsLabel);
@@ -88,8 +90,8 @@ public class GameOverDialog extends JDialog {
         });
 
         exitButton.addActionListener(e -> {
+            exitRequested = true;
             dispose();
-            System.exit(0);
         });
 
         buttonPanel.add(playAgainButton);
@@ -167,4 +169,13 @@ public class GameOverDialog extends JDialog {
     public boolean isShowHighScores() {
         return showHighScores;
     }
+
+    /**
+     * Checks if the player wants to quit the game.
+     *
+     * @return true if the player clicked "Exit", false otherwise
+     */
+    public boolean isExitRequested() {
+        return exitRequested;
+    }
 }
@@ -4,28 +4,68 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
 import java.io.IOException;
-import java.util.HashSet;
-import java.util.Set;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * Main game panel that handles the game logic, rendering, and player interactions.
  * This panel contains the game board, status bar, and manages the game loop.
  */
 public class GamePanel extends JPanel implements ActionListener {
-    private static final int CELL_SIZE = 20;
+    /**
+     * Stages of the game lifecycle. The game thread never waits in any of
+     * them: dialogs are modeless and level loads and score writes run in
+     * the background, with each stage moving on from a callback.
+     */
+    public enum State {
+        /** A round is running. */
+        PLAYING,
+        /** The round has ended and the game over dialog is showing. */
+        GAME_OVER,
+        /** The players are choosing the settings for the next round. */
+        LOBBY,
+        /** The next round's level is being loaded. */
+        LOADING
+    }
+
+    private static final int DEFAULT_CELL_SIZE = 20;
+    private static final int MAX_VIEWPORT_WIDTH = 1200;
+    private static final int MAX_VIEWPORT_HEIGHT = 800;
+    private static final int TICK_MILLIS = 150;
+    private static final Path QUICKSAVE_FILE = Paths.get("saves", "quicksave.tsnap");
+    private static final Path RECORDINGS_DIR = Paths.get("recordings");
+    private static final DateTimeFormatter RECORDING_NAME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final Font PAUSE_FONT = new Font("Arial", Font.BOLD, 36);
     private static final int STATUS_BAR_HEIGHT = 50;
     private static final int PLAYER_CIRCLE_SIZE = 20;
+    private static final Font METRICS_FONT = new Font("Monospaced", Font.PLAIN, 10);
     private javax.swing.Timer timer;
-    private Player player1;
-    private Player player2;
+    private GameEngine engine;
     private Level level;
-    private Set<Point> trailPlayer1;
-    private Set<Point> trailPlayer2;
-    private boolean gameOver;
-    private String winner;
+    private ArenaRenderer renderer;
     private long startTime;
+    private boolean paused;
+    private long pausedAt;
     private GameFrame parentFrame;
     private DatabaseManager dbManager;
+    private boolean showMetrics;
+    private State state;
+    private final StatusBar statusBar = new StatusBar(STATUS_BAR_HEIGHT, PLAYER_CIRCLE_SIZE);
+    private final KeyBindings bindings = KeyBindings.load(KeyBindings.DEFAULT_FILE);
+    private final KeyboardController keyboard = new KeyboardController(bindings);
+    private MatchLatency latency = new MatchLatency();
+    // Press times of the keyboard turns applied in the current tick
+    private final long[] appliedPresses = new long[KeyBindings.MAX_PLAYERS];
+    private MatchFormat format;
+    private String modeName;
+    private String[] controllerNames;
+    // Plugin controller of each player, or null where the keyboard steers
+    private Controller[] controllers;
+    private MatchRecording recording;
 
     /**
      * Creates a new game panel with the specified players and level configuration.
@@ -37,19 +77,24 @@ public class GamePanel extends JPanel implements ActionListener {
      * @param p2Name Player 2's name
      * @param p2Color Player 2's color
      * @param level The game level to be loaded
+     * @param format The number of players per team; in team games the names and colors are the teams'
+     * @param modeName The game mode's name, or null for the classic rules
+     * @param controllerNames The controller name for each player, or null where the keyboard steers
      * @param dbManager Database manager for score tracking
      */
-    public GamePanel(GameFrame parent, String p1Name, Color p1Color, String p2Name, Color p2Color, Level level, DatabaseManager dbManager) {
+    public GamePanel(GameFrame parent, String p1Name, Color p1Color, String p2Name, Color p2Color, Level level,
+                     MatchFormat format, String modeName, String[] controllerNames, DatabaseManager dbManager) {
         this.parentFrame = parent;
         this.level = level;
         this.dbManager = dbManager;
         
-        // Set the panel size to include both the game board and status bar
-        int totalWidth = level.getWidth() * CELL_SIZE;
-        int totalHeight = level.getHeight() * CELL_SIZE + STATUS_BAR_HEIGHT;
+        // Set the panel size to include both the game board and status bar;
+        // arenas larger than the viewport are scrolled by the renderer
+        int totalWidth = Math.min(MAX_VIEWPORT_WIDTH, level.getWidth() * DEFAULT_CELL_SIZE);
+        int totalHeight = Math.min(MAX_VIEWPORT_HEIGHT, level.getHeight() * DEFAULT_CELL_SIZE) + STATUS_BAR_HEIGHT;
         setPreferredSize(new Dimension(totalWidth, totalHeight));
         
-        resetGame(p1Name, p1Color, p2Name, p2Color, level);
+        resetGame(p1Name, p1Color, p2Name, p2Color, level, format, modeName, controllerNames);
         setBackground(Color.BLACK);
         setFocusable(true);
         addKeyListener(new KeyAdapter() {
@@ -57,6 +102,23 @@ public class GamePanel extends JPanel implements ActionListener {
             public void keyPressed(KeyEvent e) {
                 handleKeyPress(e);
             }
+
+            @Override
+            public void keyReleased(KeyEvent e) {
+                keyboard.keyReleased(e.getKeyCode());
+            }
+        });
+        addFocusListener(new FocusAdapter() {
+            @Override
+            public void focusLost(FocusEvent e) {
+                // Releases are not delivered without focus
+                keyboard.reset();
+            }
+        });
+        addMouseWheelListener(e -> {
+            if(e.getWheelRotation() < 0) renderer.zoomIn();
+            else renderer.zoomOut();
+            repaint();
         });
     }
 
@@ -69,148 +131,306 @@ public class GamePanel extends JPanel implements ActionListener {
      * @param p2Name Player 2's name
      * @param p2Color Player 2's color
      * @param newLevel The new level to load
+     * @param format The number of players per team; in team games the names and colors are the teams'
+     * @param modeName The game mode's name, or null for the classic rules
+     * @param controllerNames The controller name for each player, or null where the keyboard steers
      */
-    public void resetGame(String p1Name, Color p1Color, String p2Name, Color p2Color, Level newLevel) {
+    public void resetGame(String p1Name, Color p1Color, String p2Name, Color p2Color, Level newLevel,
+                          MatchFormat format, String modeName, String[] controllerNames) {
         this.level = newLevel;
-        Point p1Start = level.getPlayer1Start();
-        Point p2Start = level.getPlayer2Start();
-        player1 = new Player(p1Name, p1Color, p1Start, Direction.RIGHT);
-        player2 = new Player(p2Name, p2Color, p2Start, Direction.LEFT);
-
-        trailPlayer1 = new HashSet<>();
-        trailPlayer2 = new HashSet<>();
-        gameOver = false;
-        winner = null;
+        this.format = format;
+        this.modeName = modeName;
+        this.controllerNames = controllerNames.clone();
+        engine = new GameEngine(level, format, new String[] {p1Name, p2Name}, new Color[] {p1Color, p2Color},
+            System.nanoTime());
+        startPlugins();
+        recording = new MatchRecording(engine, modeName, TICK_MILLIS);
+        renderer = new ArenaRenderer(level, engine.getTrailGrid(), p1Color, p2Color);
+        renderer.setRules(engine.getRules());
+        statusBar.setRound(p1Name, p1Color, p2Name, p2Color, level.getName());
         startTime = System.currentTimeMillis();
+
+        MatchStartEvent startEvent = new MatchStartEvent();
+        if(startEvent.shouldCommit()) {
+            startEvent.level = level.getName();
+            startEvent.player1 = p1Name;
+            startEvent.player2 = p2Name;
+            startEvent.commit();
+        }
         
+        paused = false;
+        state = State.PLAYING;
+        keyboard.reset();
+        latency = new MatchLatency();
         if(timer != null) timer.stop();
-        timer = new javax.swing.Timer(150, this);
+        timer = new javax.swing.Timer(TICK_MILLIS, this);
         timer.start();
         
         repaint();
     }
 
-    private void endGame() {
+    /**
+     * Pauses or resumes the running round. The elapsed time does not
+     * advance while the round is paused.
+     */
+    public void togglePause() {
+        if(state != State.PLAYING) return;
+        if(paused) {
+            startTime += System.currentTimeMillis() - pausedAt;
+            paused = false;
+            timer.start();
+        } else {
+            pausedAt = System.currentTimeMillis();
+            paused = true;
+            timer.stop();
+        }
+        repaint();
+    }
+
+    /**
+     * Saves the running round to the quicksave file.
+     */
+    public void quickSave() {
+        if(state != State.PLAYING) return;
+        try {
+            GameSnapshot.save(engine, QUICKSAVE_FILE);
+        } catch(IOException ex) {
+            ex.printStackTrace();
+            JOptionPane.showMessageDialog(this, "Failed to save the game.");
+        }
+    }
+
+    /**
+     * Replaces the current round with the one in the quicksave file.
+     * The loaded round starts paused.
+     */
+    public void quickLoad() {
+        if(state != State.PLAYING) return;
+        GameEngine loaded;
+        try {
+            loaded = GameSnapshot.load(QUICKSAVE_FILE);
+        } catch(IOException ex) {
+            ex.printStackTrace();
+            JOptionPane.showMessageDialog(this, "Failed to load the saved game.");
+            return;
+        }
+        if(loaded.isGameOver()) return;
+        Player p1 = loaded.getPlayer(0);
+        Player p2 = loaded.getPlayer(1);
+        timer.stop();
+        keyboard.reset();
+        latency = new MatchLatency();
+        engine = loaded;
+        level = loaded.getLevel();
+        format = MatchFormat.forTeamSize(loaded.getPlayerCount() / loaded.getTeamCount());
+        startPlugins();
+        recording = new MatchRecording(engine, modeName, TICK_MILLIS);
+        renderer = new ArenaRenderer(level, engine.getTrailGrid(), p1.getColor(), p2.getColor());
+        renderer.setRules(engine.getRules());
+        statusBar.setRound(loaded.getTeamName(0), p1.getColor(), loaded.getTeamName(1), p2.getColor(), level.getName());
+        pausedAt = System.currentTimeMillis();
+        startTime = pausedAt - loaded.getTickCount() * TICK_MILLIS;
+        paused = true;
+        repaint();
+    }
+
+    /**
+     * The round has ended: stops the timer, records the result on a
+     * background thread and shows the game over dialog without waiting for it.
+     * Closing the dialog without choosing leaves the finished round on screen.
+     */
+    private void enterGameOver() {
+        state = State.GAME_OVER;
         timer.stop();
         long elapsedTime = System.currentTimeMillis() - startTime;
+        MatchResult result = engine.getResult();
+
+        MatchEndEvent endEvent = new MatchEndEvent();
+        if(endEvent.shouldCommit()) {
+            endEvent.level = level.getName();
+            endEvent.winner = result.toString();
+            endEvent.ticks = engine.getTickCount();
+            endEvent.matchDuration = elapsedTime;
+            endEvent.commit();
+        }
         
-        dbManager.updateScore(winner);
+        if(format.isTeamGame()) {
+            dbManager.recordTeamMatchAsync(format.getTeamSize(),
+                new String[] {engine.getTeamName(0), engine.getTeamName(1)}, result,
+                level.getName(), engine.getTickCount(), elapsedTime, latency);
+        } else {
+            dbManager.recordMatchAsync(engine.getPlayer(0).getName(), engine.getPlayer(1).getName(), result,
+                level.getName(), engine.getTickCount(), elapsedTime, latency);
+        }
+        saveRecording();
+        // Most rematches are on the same level, so have it ready before it is asked for
+        LevelCache.prefetch(level.getSourcePath());
         
         GameOverDialog dialog = new GameOverDialog(
             (Frame)SwingUtilities.getWindowAncestor(this),
-            winner,
+            result,
             elapsedTime,
             dbManager
         );
-        dialog.setVisible(true);
-        
-        if(dialog.isPlayAgain()) {
-            StartDialog sd = new StartDialog((GameFrame)SwingUtilities.getWindowAncestor(this));
-            sd.setLocationRelativeTo(this);
-            sd.setVisible(true);
-            if(sd.isConfirmed()) {
-                String p1Name = sd.getPlayer1Name();
-                String p2Name = sd.getPlayer2Name();
-                Color p1Color = sd.getPlayer1Color();
-                Color p2Color = sd.getPlayer2Color();
-                try {
-                    Level newLevel = LevelLoader.loadLevel(sd.getSelectedLevel());
-                    resetGame(p1Name, p1Color, p2Name, p2Color, newLevel);
-                } catch(IOException ex) {
-                    ex.printStackTrace();
-                    JOptionPane.showMessageDialog(this, "Failed to load level.");
+        dialog.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                if(dialog.isPlayAgain()) {
+                    enterLobby();
+                } else if(dialog.isExitRequested()) {
+                    parentFrame.shutdown();
                 }
-            } else {
-                System.exit(0);
             }
-        }
+        });
+        dialog.setVisible(true);
+        repaint();
     }
 
-    private void handleKeyPress(KeyEvent e) {
-        if(gameOver) return;
-        
-        int key = e.getKeyCode();
-        
-        // Player 1 controls (WASD)
-        if(key == KeyEvent.VK_W && player1.getDirection() != Direction.DOWN) {
-            player1.setDirection(Direction.UP);
-        }
-        if(key == KeyEvent.VK_S && player1.getDirection() != Direction.UP) {
-            player1.setDirection(Direction.DOWN);
-        }
-        if(key == KeyEvent.VK_A && player1.getDirection() != Direction.RIGHT) {
-            player1.setDirection(Direction.LEFT);
-        }
-        if(key == KeyEvent.VK_D && player1.getDirection() != Direction.LEFT) {
-            player1.setDirection(Direction.RIGHT);
-        }
-        
-        // Player 2 controls (Arrow keys)
-        if(key == KeyEvent.VK_UP && player2.getDirection() != Direction.DOWN) {
-            player2.setDirection(Direction.UP);
-        }
-        if(key == KeyEvent.VK_DOWN && player2.getDirection() != Direction.UP) {
-            player2.setDirection(Direction.DOWN);
-        }
-        if(key == KeyEvent.VK_LEFT && player2.getDirection() != Direction.RIGHT) {
-            player2.setDirection(Direction.LEFT);
-        }
-        if(key == KeyEvent.VK_RIGHT && player2.getDirection() != Direction.LEFT) {
-            player2.setDirection(Direction.RIGHT);
-        }
+    /**
+     * Writes the finished round's recording to the recordings directory on a
+     * background thread, named by the time the round ended. The recordings
+     * are played back by {@link MatchVideo}.
+     */
+    private void saveRecording() {
+        MatchRecording finished = recording;
+        Path file = RECORDINGS_DIR.resolve(LocalDateTime.now().format(RECORDING_NAME) + MatchRecording.FILE_EXTENSION);
+        CompletableFuture.runAsync(() -> {
+            try {
+                finished.save(file);
+            } catch(IOException ex) {
+                ex.printStackTrace();
+            }
+        });
     }
 
-    private void movePlayer(Player player, Set<Point> trail) {
-        Point oldPos = player.getPosition();
-        Point newPos = new Point(oldPos);
-        
-        switch(player.getDirection()) {
-            case UP: newPos.y--; break;
-            case DOWN: newPos.y++; break;
-            case LEFT: newPos.x--; break;
-            case RIGHT: newPos.x++; break;
+    /**
+     * Creates fresh instances of the chosen game mode and controllers for
+     * the current round. Their state is not part of a saved game, so a
+     * loaded round starts them again. Players left to the keyboard that
+     * have no keys of their own are given a {@link SurvivalBot}.
+     */
+    private void startPlugins() {
+        engine.setMode(Plugins.createMode(modeName));
+        controllers = new Controller[engine.getPlayerCount()];
+        for(int i = 0; i < controllers.length; i++) {
+            if(i < controllerNames.length) controllers[i] = Plugins.createController(controllerNames[i]);
+            if(controllers[i] == null && i >= KeyBindings.MAX_PLAYERS) controllers[i] = new SurvivalBot();
         }
-        
-        player.setPosition(newPos);
-        trail.add(new Point(oldPos));  // Add the old position to trail
     }
 
-    private void checkCollisions() {
-        Point p1Pos = player1.getPosition();
-        Point p2Pos = player2.getPosition();
+    /**
+     * Shows the start dialog for the next round, filled with the settings of
+     * the last one. Each level the players select is loaded in the background
+     * while they are still choosing.
+     */
+    private void enterLobby() {
+        state = State.LOBBY;
+        Player p1 = engine.getPlayer(0);
+        Player p2 = engine.getPlayer(1);
+        LevelCatalog.refresh();
+        StartDialog sd = new StartDialog((GameFrame)SwingUtilities.getWindowAncestor(this), false);
+        sd.setDefaults(engine.getTeamName(0), p1.getColor(), engine.getTeamName(1), p2.getColor(), level.getSourcePath());
+        sd.setFormat(format);
+        sd.setPlugins(modeName, controllerNames);
+        sd.addLevelSelectionListener(e -> LevelCache.prefetch(sd.getSelectedLevel()));
+        LevelCache.prefetch(sd.getSelectedLevel());
+        sd.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                if(sd.isConfirmed() && sd.getSelectedLevel() != null) {
+                    enterLoading(sd.getPlayer1Name(), sd.getPlayer1Color(), sd.getPlayer2Name(), sd.getPlayer2Color(),
+                                 sd.getSelectedLevel(), sd.getFormat(), sd.getGameMode(), sd.getControllers());
+                } else {
+                    parentFrame.shutdown();
+                }
+            }
+        });
+        sd.setLocationRelativeTo(this);
+        sd.setVisible(true);
+        repaint();
+    }
 
-        // Check wall collisions
-        if(level.isWall(p1Pos.x, p1Pos.y)) {
-            gameOver = true;
-            winner = player2.getName();
-        }
-        if(level.isWall(p2Pos.x, p2Pos.y)) {
-            gameOver = true;
-            winner = player1.getName();
+    /**
+     * Starts the next round as soon as its level is loaded. A level that was
+     * prefetched starts immediately; otherwise the panel shows a loading
+     * message until the background load completes.
+     */
+    private void enterLoading(String p1Name, Color p1Color, String p2Name, Color p2Color, String levelPath,
+                              MatchFormat format, String mode, String[] controllers) {
+        state = State.LOADING;
+        CompletableFuture<Level> loading = LevelCache.get(levelPath);
+        if(loading.isDone()) {
+            levelLoaded(loading, p1Name, p1Color, p2Name, p2Color, format, mode, controllers);
+            return;
         }
+        repaint();
+        loading.whenComplete((loaded, failure) -> SwingUtilities.invokeLater(
+            () -> levelLoaded(loading, p1Name, p1Color, p2Name, p2Color, format, mode, controllers)));
+    }
 
-        // Check trail collisions (excluding current position)
-        if(trailPlayer1.contains(p2Pos) || trailPlayer2.contains(p1Pos)) {
-            gameOver = true;
-            // Determine winner based on who hit whose trail
-            if(trailPlayer1.contains(p2Pos) && trailPlayer2.contains(p1Pos)) {
-                winner = "Draw"; // Both hit a trail simultaneously
-            } else if(trailPlayer1.contains(p2Pos)) {
-                winner = player1.getName();
-            } else {
-                winner = player2.getName();
-            }
+    private void levelLoaded(CompletableFuture<Level> loading, String p1Name, Color p1Color, String p2Name,
+                             Color p2Color, MatchFormat format, String mode, String[] controllers) {
+        if(state != State.LOADING) return;
+        try {
+            resetGame(p1Name, p1Color, p2Name, p2Color, loading.join(), format, mode, controllers);
+        } catch(CompletionException ex) {
+            ex.getCause().printStackTrace();
+            JOptionPane.showMessageDialog(this, "Failed to load level.");
+            enterLobby();
         }
+    }
 
-        // Head-on collision
-        if(p1Pos.equals(p2Pos)) {
-            gameOver = true;
-            winner = "Draw";
-        }
+    /**
+     * @return The current stage of the game lifecycle
+     */
+    public State getState() { return state; }
 
-        if(gameOver) {
-            endGame();
+    /**
+     * Stops the game timer. Called when the window is being closed.
+     */
+    public void stop() {
+        if(timer != null) timer.stop();
+    }
+
+    private void handleKeyPress(KeyEvent e) {
+        // Date the press back to the key event, so time spent before it reached us counts too
+        long eventAge = Math.max(0, System.currentTimeMillis() - e.getWhen()) * 1_000_000L;
+        long pressed = System.nanoTime() - eventAge;
+        if(GameMetrics.ENABLED) {
+            GameMetrics.INPUT.record(eventAge);
+        }
+        int binding = bindings.get(e.getKeyCode());
+        if(KeyBindings.isSteer(binding)) {
+            if(state == State.PLAYING && !paused) keyboard.keyPressed(e.getKeyCode(), pressed);
+            return;
+        }
+        KeyBindings.Command command = KeyBindings.getCommand(binding);
+        if(command == null) return;
+        switch(command) {
+            case ZOOM_IN:
+                renderer.zoomIn();
+                break;
+            case ZOOM_OUT:
+                renderer.zoomOut();
+                break;
+            case ZOOM_RESET:
+                renderer.resetZoom();
+                break;
+            case PAUSE:
+                togglePause();
+                return;
+            case QUICK_SAVE:
+                quickSave();
+                return;
+            case QUICK_LOAD:
+                quickLoad();
+                return;
+            case METRICS:
+                if(!GameMetrics.ENABLED) return;
+                showMetrics = !showMetrics;
+                break;
         }
+        repaint();
     }
 
     /**
@@ -221,105 +441,94 @@ public class GamePanel extends JPanel implements ActionListener {
      */
     @Override
     public void actionPerformed(ActionEvent e) {
-        if(gameOver) {
+        if(state != State.PLAYING) {
             timer.stop();
             return;
         }
 
-        movePlayer(player1, trailPlayer1);
-        movePlayer(player2, trailPlayer2);
+        long tickStart = GameMetrics.start();
+        // Keys are sampled here, at the tick boundary, rather than as they arrive
+        int turns = 0;
+        for(int i = 0; i < engine.getPlayerCount(); i++) {
+            if(controllers[i] != null) {
+                engine.steer(i, controllers[i].nextDirection(engine, i));
+            } else if(engine.steer(i, keyboard.nextDirection(engine, i)) && keyboard.getPressTime(i) != 0) {
+                // Only turns the engine took count, not presses of players who are out or reversing
+                appliedPresses[turns++] = keyboard.getPressTime(i);
+            }
+        }
+        recording.recordTick(engine);
+        engine.tick();
+        if(turns > 0) {
+            long applied = System.nanoTime();
+            for(int t = 0; t < turns; t++) {
+                latency.turnApplied(appliedPresses[t], applied);
+                if(GameMetrics.ENABLED) GameMetrics.TURN.record(applied - appliedPresses[t]);
+            }
+        }
+        GameMetrics.stop(GameMetrics.TICK, tickStart);
 
-        checkCollisions();
+        if(engine.isGameOver()) {
+            enterGameOver();
+        }
         repaint();
     }
 
     /**
      * Renders the game state including the status bar, game board, walls,
      * player trails, and current player positions.
-     * Uses anti-aliasing for smooth graphics.
+     * The board is drawn by the {@link ArenaRenderer} and scales with the panel;
+     * the status bar is drawn from images cached by {@link StatusBar}.
      *
      * @param g The graphics context to paint on
      */
     @Override
     protected void paintComponent(Graphics g) {
+        long paintStart = GameMetrics.start();
         super.paintComponent(g);
         Graphics2D g2d = (Graphics2D) g;
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-
-        // Draw the status bar background
-        g2d.setColor(Color.BLACK);
-        g2d.fillRect(0, 0, getWidth(), STATUS_BAR_HEIGHT);
-
-        // Draw player 1 info
-        g2d.setColor(Color.WHITE);
-        g2d.setFont(new Font("Arial", Font.BOLD, 14));
-        g2d.drawString(player1.getName(), 10, STATUS_BAR_HEIGHT/3 + 5);
-        
-        // Draw player 1 color circle
-        g2d.setColor(player1.getColor());
-        g2d.fillOval(10 + g2d.getFontMetrics().stringWidth(player1.getName()) + 10, 
-                     STATUS_BAR_HEIGHT/3 - PLAYER_CIRCLE_SIZE/2, 
-                     PLAYER_CIRCLE_SIZE, PLAYER_CIRCLE_SIZE);
-
-        // Draw player 2 info
-        g2d.setColor(Color.WHITE);
-        int p2NameWidth = g2d.getFontMetrics().stringWidth(player2.getName());
-        g2d.drawString(player2.getName(), getWidth() - p2NameWidth - 40, STATUS_BAR_HEIGHT/3 + 5);
-        
-        // Draw player 2 color circle
-        g2d.setColor(player2.getColor());
-        g2d.fillOval(getWidth() - 30, 
-                     STATUS_BAR_HEIGHT/3 - PLAYER_CIRCLE_SIZE/2, 
-                     PLAYER_CIRCLE_SIZE, PLAYER_CIRCLE_SIZE);
-
-        // Draw current level info
-        g2d.setColor(Color.WHITE);
-        String levelInfo = "Level: " + level.getName();
-        int levelWidth = g2d.getFontMetrics().stringWidth(levelInfo);
-        g2d.drawString(levelInfo, (getWidth() - levelWidth) / 2, STATUS_BAR_HEIGHT/3 + 5);
 
-        // Draw elapsed time
-        long elapsed = System.currentTimeMillis() - startTime;
-        String timeStr = String.format("Time: %ds", elapsed/1000);
-        int timeWidth = g2d.getFontMetrics().stringWidth(timeStr);
-        g2d.drawString(timeStr, (getWidth() - timeWidth) / 2, STATUS_BAR_HEIGHT * 2/3 + 5);
+        // Draw the status bar from its cached images
+        long now = paused ? pausedAt : System.currentTimeMillis();
+        statusBar.paint(g2d, getWidth(), now - startTime);
 
-        // Offset the game board drawing by STATUS_BAR_HEIGHT
-        g2d.translate(0, STATUS_BAR_HEIGHT);
+        // Draw the game board below the status bar
+        renderer.paint(g2d, 0, STATUS_BAR_HEIGHT, getWidth(), getHeight() - STATUS_BAR_HEIGHT, engine.getPlayers());
 
-        // Draw the game board background
-        g2d.setColor(Color.DARK_GRAY);
-        g2d.fillRect(0, 0, level.getWidth() * CELL_SIZE, level.getHeight() * CELL_SIZE);
-
-        // Draw walls
-        g2d.setColor(Color.GRAY);
-        for (Point wall : level.getWalls()) {
-            g2d.fillRect(wall.x * CELL_SIZE, wall.y * CELL_SIZE, CELL_SIZE, CELL_SIZE);
+        String banner = paused ? "PAUSED" : state == State.LOADING ? "LOADING..." : null;
+        if(banner != null) {
+            g2d.setFont(PAUSE_FONT);
+            g2d.setColor(Color.WHITE);
+            int textWidth = g2d.getFontMetrics().stringWidth(banner);
+            g2d.drawString(banner, (getWidth() - textWidth) / 2, STATUS_BAR_HEIGHT + (getHeight() - STATUS_BAR_HEIGHT) / 2);
         }
-
-        // Draw player trails with rectangular shapes
-        drawTrail(g2d, trailPlayer1, player1.getColor());
-        drawTrail(g2d, trailPlayer2, player2.getColor());
-
-        // Draw current positions with round shape
-        drawPlayer(g2d, player1);
-        drawPlayer(g2d, player2);
-
-        // Reset the translation
-        g2d.translate(0, -STATUS_BAR_HEIGHT);
+        if(showMetrics) {
+            drawMetricsOverlay(g2d);
+        }
+        latency.framePainted(System.nanoTime());
+        GameMetrics.stop(GameMetrics.PAINT, paintStart);
     }
 
-    private void drawTrail(Graphics2D g2d, Set<Point> trail, Color color) {
-        g2d.setColor(color);
-        for (Point p : trail) {
-            g2d.fillRect(p.x * CELL_SIZE, p.y * CELL_SIZE, CELL_SIZE, CELL_SIZE);
+    /**
+     * Draws the debug overlay with tick, paint, input and turn latencies
+     * in the bottom-left corner of the status bar. Toggled with F3
+     * when the game runs with {@code -Dtron.metrics=true}.
+     */
+    private void drawMetricsOverlay(Graphics2D g2d) {
+        g2d.setFont(METRICS_FONT);
+        g2d.setColor(Color.GREEN);
+        int y = STATUS_BAR_HEIGHT - 4;
+        int x = 10;
+        for(LatencyHistogram h : new LatencyHistogram[] {GameMetrics.TICK, GameMetrics.PAINT, GameMetrics.INPUT, GameMetrics.TURN}) {
+            String text = h.getName() + " p50 " + formatMicros(h.getP50Micros())
+                + " p99 " + formatMicros(h.getP99Micros());
+            g2d.drawString(text, x, y);
+            x += g2d.getFontMetrics().stringWidth(text) + 15;
         }
     }
 
-    private void drawPlayer(Graphics2D g2d, Player player) {
-        g2d.setColor(player.getColor());
-        int x = player.getPosition().x * CELL_SIZE;
-        int y = player.getPosition().y * CELL_SIZE;
-        g2d.fillOval(x, y, CELL_SIZE, CELL_SIZE);
+    private static String formatMicros(double micros) {
+        if(micros >= 1000) return (Math.round(micros / 100) / 10.0) + "ms";
+        return Math.round(micros) + "us";
     }
 }
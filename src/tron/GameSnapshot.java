@@ -0,0 +1,226 @@
+package tron;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Saves and restores the complete state of a {@link GameEngine} in a
+ * compact, versioned binary form.
+ *
+ * A snapshot holds a reference to the level (its file path and checksum,
+ * not the layout), the players, their trails as run-length segments, the
+ * tick count, the outcome so far, the engine's random number generator
+ * state and, for levels with {@link ArenaRules}, the rules' pending
+ * events. The trail grid is rebuilt from the trails on restore. Restoring
+ * a snapshot and stepping it gives exactly the same round as the original.
+ *
+ * Version 3 added teams: the team names, each player's team and whether
+ * it is out, with the outcome stored as the winning team's index.
+ * Older snapshots are one-on-one rounds and are read as such.
+ */
+public final class GameSnapshot {
+    /** Current version of the snapshot format. */
+    public static final int VERSION = 3;
+
+    private static final int MAGIC = 0x54524E53; // "TRNS"
+
+    private GameSnapshot() {
+    }
+
+    /**
+     * Captures the state of a round.
+     *
+     * @param engine The round to capture
+     * @return The encoded snapshot
+     */
+    public static byte[] capture(GameEngine engine) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try(DataOutputStream out = new DataOutputStream(bytes)) {
+            Level level = engine.getLevel();
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeUTF(level.getSourcePath() == null ? "" : level.getSourcePath());
+            out.writeLong(level.getChecksum());
+            out.writeLong(engine.getTickCount());
+            out.writeLong(engine.getRandomState());
+            out.writeByte(engine.getResultCode());
+            out.writeByte(engine.getTeamCount());
+            for(int team = 0; team < engine.getTeamCount(); team++) {
+                out.writeUTF(engine.getTeamName(team));
+            }
+            out.writeByte(engine.getPlayerCount());
+            for(int i = 0; i < engine.getPlayerCount(); i++) {
+                Player p = engine.getPlayer(i);
+                out.writeUTF(p.getName());
+                out.writeInt(p.getColor().getRGB());
+                out.writeByte(p.getTeam());
+                out.writeBoolean(engine.isEliminated(i));
+                out.writeShort(p.getPosition().x);
+                out.writeShort(p.getPosition().y);
+                out.writeShort(p.getPreviousPosition().x);
+                out.writeShort(p.getPreviousPosition().y);
+                out.writeByte(p.getDirection().ordinal());
+                engine.getTrail(i).writeTo(out);
+            }
+            ArenaRules rules = engine.getRules();
+            out.writeBoolean(rules != null);
+            if(rules != null) {
+                rules.writeTo(out);
+            }
+        } catch(IOException e) {
+            // Writing to memory cannot fail
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Restores a round, loading its level from the path stored in the snapshot.
+     *
+     * @param data A snapshot produced by {@link #capture(GameEngine)}
+     * @return The restored round
+     * @throws IOException if the snapshot is invalid or the level cannot be loaded
+     */
+    public static GameEngine restore(byte[] data) throws IOException {
+        SnapshotInput in = open(data);
+        String levelPath = in.readUTF();
+        if(levelPath.isEmpty()) {
+            throw new IOException("Snapshot does not reference a level file");
+        }
+        return restore(in, LevelLoader.loadLevel(levelPath));
+    }
+
+    /**
+     * Restores a round on an already loaded level.
+     *
+     * @param data A snapshot produced by {@link #capture(GameEngine)}
+     * @param level The level the snapshot was taken on
+     * @return The restored round
+     * @throws IOException if the snapshot is invalid or was taken on a different level
+     */
+    public static GameEngine restore(byte[] data, Level level) throws IOException {
+        SnapshotInput in = open(data);
+        in.readUTF();
+        return restore(in, level);
+    }
+
+    /**
+     * Writes a snapshot of a round to a file.
+     *
+     * @param engine The round to save
+     * @param file The file to write
+     * @throws IOException if the file cannot be written
+     */
+    public static void save(GameEngine engine, Path file) throws IOException {
+        if(file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        Files.write(file, capture(engine));
+    }
+
+    /**
+     * Reads a round from a snapshot file.
+     *
+     * @param file The file to read
+     * @return The restored round
+     * @throws IOException if the file cannot be read or is invalid
+     */
+    public static GameEngine load(Path file) throws IOException {
+        return restore(Files.readAllBytes(file));
+    }
+
+    private static SnapshotInput open(byte[] data) throws IOException {
+        SnapshotInput in = new SnapshotInput(data);
+        if(in.readInt() != MAGIC) {
+            throw new IOException("Not a game snapshot");
+        }
+        in.version = in.readUnsignedShort();
+        if(in.version < 1 || in.version > VERSION) {
+            throw new IOException("Unsupported snapshot version " + in.version);
+        }
+        return in;
+    }
+
+    private static GameEngine restore(SnapshotInput in, Level level) throws IOException {
+        if(in.readLong() != level.getChecksum()) {
+            throw new IOException("Snapshot was taken on a different version of " + level.getName());
+        }
+        long tickCount = in.readLong();
+        long rngState = in.readLong();
+        int result;
+        String winner = null;
+        String[] teamNames;
+        if(in.version >= 3) {
+            result = in.readByte();
+            teamNames = new String[in.readUnsignedByte()];
+            for(int team = 0; team < teamNames.length; team++) {
+                teamNames[team] = in.readUTF();
+            }
+        } else {
+            // One-on-one rounds with the winner stored by name
+            result = in.readBoolean() ? MatchResult.NO_TEAM : GameEngine.RUNNING;
+            winner = in.readUTF();
+            teamNames = new String[MatchFormat.TEAMS];
+        }
+        if(teamNames.length != MatchFormat.TEAMS || result >= teamNames.length || result < GameEngine.RUNNING) {
+            throw new IOException("Corrupt teams or result");
+        }
+        int playerCount = in.readUnsignedByte();
+        if(playerCount % teamNames.length != 0
+           || MatchFormat.forTeamSize(playerCount / teamNames.length) == null
+           || (in.version < 3 && playerCount != MatchFormat.TEAMS)) {
+            throw new IOException("Unsupported player count " + playerCount);
+        }
+
+        Direction[] directions = Direction.values();
+        Player[] players = new Player[playerCount];
+        boolean[] eliminated = new boolean[playerCount];
+        TrailHistory[] trails = new TrailHistory[playerCount];
+        for(int i = 0; i < playerCount; i++) {
+            String name = in.readUTF();
+            Color color = new Color(in.readInt(), true);
+            int team = i;
+            if(in.version >= 3) {
+                team = in.readUnsignedByte();
+                eliminated[i] = in.readBoolean();
+                if(team >= teamNames.length) throw new IOException("Corrupt team " + team);
+            } else {
+                teamNames[i] = name;
+                if(name.equals(winner)) result = i;
+            }
+            Point position = new Point(in.readShort(), in.readShort());
+            Point previous = new Point(in.readShort(), in.readShort());
+            int direction = in.readUnsignedByte();
+            if(direction >= directions.length) {
+                throw new IOException("Corrupt direction " + direction);
+            }
+            players[i] = new Player(name, color, previous, directions[direction], team);
+            players[i].setPosition(position);
+            trails[i] = new TrailHistory();
+            trails[i].readFrom(in);
+        }
+        GameEngine engine = new GameEngine(level, players, teamNames, eliminated, trails, tickCount,
+            result, rngState);
+
+        // Version 1 predates level rules
+        boolean hasRules = in.version >= 2 && in.readBoolean();
+        if(hasRules != (engine.getRules() != null)) {
+            throw new IOException("Snapshot rules do not match " + level.getName());
+        }
+        if(hasRules) {
+            engine.getRules().readFrom(in);
+        }
+        return engine;
+    }
+
+    private static final class SnapshotInput extends DataInputStream {
+        int version;
+
+        SnapshotInput(byte[] data) {
+            super(new ByteArrayInputStream(data));
+        }
+    }
+}
@@ -3,81 +3,157 @@ package tron;
 import javax.swing.*;
 import javax.swing.border.*;
 import java.awt.*;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
- * Dialog that displays the high scores table.
- * Shows player names and their win counts in descending order.
+ * Dialog that displays the ranked leaderboard.
+ * Shows players by rating with their win, loss and draw record, one page
+ * at a time. Each page is fetched from the last row of the page before it,
+ * so paging stays fast however many players there are. The team standings
+ * of each team size can be shown instead, top teams only.
  */
 public class HighScoreDialog extends JDialog {
+    private static final int PAGE_SIZE = 10;
+    private static final Font HEADER_FONT = new Font("Arial", Font.BOLD, 14);
+
+    private final DatabaseManager db;
+    private final JPanel scoresPanel;
+    private final JButton previousButton = new JButton("< Previous");
+    private final JButton nextButton = new JButton("Next >");
+    private final JComboBox<String> viewBox = new JComboBox<>();
+    // Last row of every page before the current one; null stands for the start
+    private final List<DatabaseManager.PlayerRating> pageStarts = new ArrayList<>();
+    private List<DatabaseManager.PlayerRating> page = new ArrayList<>();
+
     /**
-     * Creates a new high score dialog displaying the top players.
+     * Creates a new high score dialog displaying the first page of the leaderboard.
      *
      * @param owner The parent frame (game window)
-     * @param db Database manager to retrieve scores from
+     * @param db Database manager to retrieve ratings from
      */
     public HighScoreDialog(Frame owner, DatabaseManager db) {
         super(owner, "High Scores", true);
-        setSize(300, 400);
+        this.db = db;
+        setSize(420, 460);
         setLocationRelativeTo(owner);
 
-        // Get top 10 scores
-        List<DatabaseManager.PlayerScore> scores = db.getTopScores(10);
-
         // Main panel with padding
         JPanel mainPanel = new JPanel(new BorderLayout(10, 10));
         mainPanel.setBorder(new EmptyBorder(10, 10, 10, 10));
 
-        // Title at the top
-        JLabel titleLabel = new JLabel("Top 10 Players", SwingConstants.CENTER);
+        // Title at the top, with the choice of players or teams
+        JPanel topPanel = new JPanel(new BorderLayout(5, 5));
+        JLabel titleLabel = new JLabel("Leaderboard", SwingConstants.CENTER);
         titleLabel.setFont(new Font("Arial", Font.BOLD, 20));
-        mainPanel.add(titleLabel, BorderLayout.NORTH);
+        topPanel.add(titleLabel, BorderLayout.CENTER);
+        viewBox.addItem("Players");
+        for(MatchFormat format : MatchFormat.values()) {
+            if(format.isTeamGame()) viewBox.addItem(format + " Teams");
+        }
+        viewBox.addActionListener(e -> {
+            pageStarts.clear();
+            showPage();
+        });
+        topPanel.add(viewBox, BorderLayout.EAST);
+        mainPanel.add(topPanel, BorderLayout.NORTH);
 
         // Scores panel
-        JPanel scoresPanel = new JPanel(new GridLayout(0, 2, 5, 5));
+        scoresPanel = new JPanel(new GridLayout(0, 4, 5, 5));
         scoresPanel.setBorder(new CompoundBorder(
             new EmptyBorder(10, 0, 10, 0),
             new EtchedBorder()
         ));
+        mainPanel.add(scoresPanel, BorderLayout.CENTER);
 
-        // Header row
-        JLabel rankHeader = new JLabel("Player", SwingConstants.CENTER);
-        JLabel scoreHeader = new JLabel("Wins", SwingConstants.CENTER);
-        rankHeader.setFont(new Font("Arial", Font.BOLD, 14));
-        scoreHeader.setFont(new Font("Arial", Font.BOLD, 14));
-        scoresPanel.add(rankHeader);
-        scoresPanel.add(scoreHeader);
-
-        // Add scores
-        for(DatabaseManager.PlayerScore sc : scores) {
-            JLabel nameLabel = new JLabel(sc.name, SwingConstants.CENTER);
-            JLabel winsLabel = new JLabel(String.valueOf(sc.wins), SwingConstants.CENTER);
-            
-            nameLabel.setBorder(new EmptyBorder(5, 5, 5, 5));
-            winsLabel.setBorder(new EmptyBorder(5, 5, 5, 5));
-            
-            scoresPanel.add(nameLabel);
-            scoresPanel.add(winsLabel);
-        }
-
-        // If less than 10 scores, fill with empty rows
-        for(int i = scores.size(); i < 10; i++) {
-            scoresPanel.add(new JLabel("-", SwingConstants.CENTER));
-            scoresPanel.add(new JLabel("-", SwingConstants.CENTER));
-        }
-
-        JScrollPane scrollPane = new JScrollPane(scoresPanel);
-        scrollPane.setBorder(null);
-        mainPanel.add(scrollPane, BorderLayout.CENTER);
-
-        // Bottom panel with close button
+        // Bottom panel with paging and close buttons
         JPanel bottomPanel = new JPanel();
+        previousButton.addActionListener(e -> {
+            pageStarts.remove(pageStarts.size() - 1);
+            showPage();
+        });
+        nextButton.addActionListener(e -> {
+            pageStarts.add(page.get(page.size() - 1));
+            showPage();
+        });
         JButton closeButton = new JButton("Close");
         closeButton.addActionListener(e -> dispose());
+        bottomPanel.add(previousButton);
+        bottomPanel.add(nextButton);
         bottomPanel.add(closeButton);
         mainPanel.add(bottomPanel, BorderLayout.SOUTH);
 
         add(mainPanel);
         setResizable(false);
+        showPage();
+    }
+
+    private void showPage() {
+        if(viewBox.getSelectedIndex() > 0) {
+            showTeams(MatchFormat.values()[viewBox.getSelectedIndex()].getTeamSize());
+            return;
+        }
+        DatabaseManager.PlayerRating after = pageStarts.isEmpty() ? null : pageStarts.get(pageStarts.size() - 1);
+        // One extra row tells whether there is a next page
+        List<DatabaseManager.PlayerRating> rows = db.getLeaderboardPage(after, PAGE_SIZE + 1);
+        boolean hasNext = rows.size() > PAGE_SIZE;
+        page = hasNext ? rows.subList(0, PAGE_SIZE) : rows;
+
+        scoresPanel.removeAll();
+        for(String header : new String[] {"Rank", "Player", "Rating", "W / L / D"}) {
+            JLabel label = new JLabel(header, SwingConstants.CENTER);
+            label.setFont(HEADER_FONT);
+            scoresPanel.add(label);
+        }
+
+        int firstRank = pageStarts.size() * PAGE_SIZE + 1;
+        for(int i = 0; i < PAGE_SIZE; i++) {
+            if(i < page.size()) {
+                DatabaseManager.PlayerRating r = page.get(i);
+                addCell(String.valueOf(firstRank + i));
+                addCell(r.name);
+                addCell(String.valueOf(Math.round(r.rating)));
+                addCell(r.wins + " / " + r.losses + " / " + r.draws);
+            } else {
+                // Fill the rest of the page with empty rows
+                for(int c = 0; c < 4; c++) addCell("-");
+            }
+        }
+
+        previousButton.setEnabled(!pageStarts.isEmpty());
+        nextButton.setEnabled(hasNext);
+        scoresPanel.revalidate();
+        scoresPanel.repaint();
+    }
+
+    private void showTeams(int teamSize) {
+        List<DatabaseManager.TeamStanding> teams = db.getTeamStandings(teamSize, PAGE_SIZE);
+        scoresPanel.removeAll();
+        for(String header : new String[] {"Rank", "Team", "Played", "W / L / D"}) {
+            JLabel label = new JLabel(header, SwingConstants.CENTER);
+            label.setFont(HEADER_FONT);
+            scoresPanel.add(label);
+        }
+        for(int i = 0; i < PAGE_SIZE; i++) {
+            if(i < teams.size()) {
+                DatabaseManager.TeamStanding t = teams.get(i);
+                addCell(String.valueOf(i + 1));
+                addCell(t.name);
+                addCell(String.valueOf(t.games));
+                addCell(t.wins + " / " + t.losses + " / " + t.draws);
+            } else {
+                for(int c = 0; c < 4; c++) addCell("-");
+            }
+        }
+        previousButton.setEnabled(false);
+        nextButton.setEnabled(false);
+        scoresPanel.revalidate();
+        scoresPanel.repaint();
+    }
+
+    private void addCell(String text) {
+        JLabel label = new JLabel(text, SwingConstants.CENTER);
+        label.setBorder(new EmptyBorder(5, 5, 5, 5));
+        scoresPanel.add(label);
     }
 }
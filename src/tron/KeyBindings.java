@@ -0,0 +1,217 @@
+package tron;
+
+import java.awt.event.KeyEvent;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Maps keys to steering and game commands.
+ *
+ * Bindings are read from {@code keys.properties} in the working directory
+ * when it exists; anything it leaves out keeps its default. Each property
+ * lists one or more key names from {@link KeyEvent} without the
+ * {@code VK_} prefix, separated by commas:
+ * <pre>
+ * player1.up=W
+ * player2.left=LEFT
+ * zoom-in=EQUALS,PLUS,ADD
+ * </pre>
+ * Steering properties are {@code player<n>.<direction>} for up to
+ * {@link #MAX_PLAYERS} players; the command properties are the
+ * {@link Command} names. Lookups go through a table indexed by key code,
+ * so finding the binding of a key costs one array read.
+ */
+public class KeyBindings {
+    /** Default location of the bindings file. */
+    public static final Path DEFAULT_FILE = Paths.get("keys.properties");
+    /** Number of players that can have steering keys. */
+    public static final int MAX_PLAYERS = 4;
+    /** Binding of keys that do nothing. */
+    public static final int NONE = 0;
+
+    /**
+     * Game commands that can be bound to keys.
+     */
+    public enum Command {
+        PAUSE("pause"),
+        QUICK_SAVE("quick-save"),
+        QUICK_LOAD("quick-load"),
+        ZOOM_IN("zoom-in"),
+        ZOOM_OUT("zoom-out"),
+        ZOOM_RESET("zoom-reset"),
+        METRICS("metrics");
+
+        private final String property;
+
+        Command(String property) {
+            this.property = property;
+        }
+
+        /**
+         * @return The name of the command in the bindings file
+         */
+        public String getProperty() { return property; }
+    }
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final Command[] COMMANDS = Command.values();
+    private static final int STEER_BINDINGS = MAX_PLAYERS * DIRECTIONS.length;
+
+    // Binding of every key code: NONE, 1 + player * 4 + direction, or past that a command
+    private short[] table = new short[256];
+
+    /**
+     * Creates the default bindings: WASD for player 1 and the arrow keys for player 2.
+     */
+    public KeyBindings() {
+        bind(steer(0, Direction.UP), KeyEvent.VK_W);
+        bind(steer(0, Direction.DOWN), KeyEvent.VK_S);
+        bind(steer(0, Direction.LEFT), KeyEvent.VK_A);
+        bind(steer(0, Direction.RIGHT), KeyEvent.VK_D);
+        bind(steer(1, Direction.UP), KeyEvent.VK_UP);
+        bind(steer(1, Direction.DOWN), KeyEvent.VK_DOWN);
+        bind(steer(1, Direction.LEFT), KeyEvent.VK_LEFT);
+        bind(steer(1, Direction.RIGHT), KeyEvent.VK_RIGHT);
+        bind(command(Command.PAUSE), KeyEvent.VK_P, KeyEvent.VK_PAUSE);
+        bind(command(Command.QUICK_SAVE), KeyEvent.VK_F5);
+        bind(command(Command.QUICK_LOAD), KeyEvent.VK_F9);
+        bind(command(Command.ZOOM_IN), KeyEvent.VK_EQUALS, KeyEvent.VK_PLUS, KeyEvent.VK_ADD);
+        bind(command(Command.ZOOM_OUT), KeyEvent.VK_MINUS, KeyEvent.VK_SUBTRACT);
+        bind(command(Command.ZOOM_RESET), KeyEvent.VK_0, KeyEvent.VK_NUMPAD0);
+        bind(command(Command.METRICS), KeyEvent.VK_F3);
+    }
+
+    /**
+     * Loads bindings from a file on top of the defaults. A missing file
+     * gives the defaults; unknown key names and keys already taken by
+     * another action are reported and skipped.
+     *
+     * @param file The bindings file
+     * @return The bindings
+     */
+    public static KeyBindings load(Path file) {
+        KeyBindings bindings = new KeyBindings();
+        if(!Files.isRegularFile(file)) return bindings;
+        Properties properties = new Properties();
+        try(Reader in = Files.newBufferedReader(file)) {
+            properties.load(in);
+        } catch(IOException e) {
+            e.printStackTrace();
+            return bindings;
+        }
+        // Everything the file remaps is cleared first, so that two actions can swap keys
+        int last = STEER_BINDINGS + COMMANDS.length;
+        for(int binding = 1; binding <= last; binding++) {
+            if(properties.getProperty(propertyOf(binding)) != null) bindings.unbind(binding);
+        }
+        for(int binding = 1; binding <= last; binding++) {
+            bindings.rebind(binding, properties.getProperty(propertyOf(binding)));
+        }
+        return bindings;
+    }
+
+    /**
+     * Looks up the binding of a key.
+     *
+     * @param keyCode A {@link KeyEvent} key code
+     * @return The binding, {@link #NONE} if the key is not bound
+     */
+    public int get(int keyCode) {
+        return keyCode >= 0 && keyCode < table.length ? table[keyCode] : NONE;
+    }
+
+    /**
+     * @param binding A binding returned by {@link #get(int)}
+     * @return true if the binding steers a player
+     */
+    public static boolean isSteer(int binding) {
+        return binding > NONE && binding <= STEER_BINDINGS;
+    }
+
+    /**
+     * @param binding A steering binding
+     * @return The 0-based index of the player it steers
+     */
+    public static int getPlayer(int binding) {
+        return (binding - 1) / DIRECTIONS.length;
+    }
+
+    /**
+     * @param binding A steering binding
+     * @return The direction it steers in
+     */
+    public static Direction getDirection(int binding) {
+        return DIRECTIONS[(binding - 1) % DIRECTIONS.length];
+    }
+
+    /**
+     * @param binding A binding returned by {@link #get(int)}
+     * @return The command it triggers, or null if it is not a command
+     */
+    public static Command getCommand(int binding) {
+        return binding > STEER_BINDINGS ? COMMANDS[binding - STEER_BINDINGS - 1] : null;
+    }
+
+    private static int steer(int player, Direction d) {
+        return 1 + player * DIRECTIONS.length + d.ordinal();
+    }
+
+    private static int command(Command c) {
+        return STEER_BINDINGS + 1 + c.ordinal();
+    }
+
+    /**
+     * Gives a binding the keys listed for it in the bindings file. Keys
+     * that already belong to another binding keep it, and the clash is
+     * reported.
+     */
+    private void rebind(int binding, String keys) {
+        if(keys == null) return;
+        for(String name : keys.split(",")) {
+            name = name.trim().toUpperCase(Locale.ROOT);
+            if(name.isEmpty()) continue;
+            int keyCode;
+            try {
+                keyCode = KeyEvent.class.getField("VK_" + name).getInt(null);
+            } catch(ReflectiveOperationException e) {
+                System.err.println("Unknown key " + name + " for " + propertyOf(binding));
+                continue;
+            }
+            int current = get(keyCode);
+            if(current != NONE && current != binding) {
+                System.err.println("Key " + name + " for " + propertyOf(binding) + " is already used by "
+                    + propertyOf(current));
+                continue;
+            }
+            bind(binding, keyCode);
+        }
+    }
+
+    private void unbind(int binding) {
+        for(int i = 0; i < table.length; i++) {
+            if(table[i] == binding) table[i] = NONE;
+        }
+    }
+
+    private static String propertyOf(int binding) {
+        if(isSteer(binding)) {
+            return "player" + (getPlayer(binding) + 1) + "." + getDirection(binding).name().toLowerCase(Locale.ROOT);
+        }
+        return getCommand(binding).getProperty();
+    }
+
+    private void bind(int binding, int... keyCodes) {
+        for(int keyCode : keyCodes) {
+            if(keyCode >= table.length) {
+                table = Arrays.copyOf(table, Math.max(keyCode + 1, table.length * 2));
+            }
+            table[keyCode] = (short)binding;
+        }
+    }
+}
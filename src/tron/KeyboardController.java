@@ -0,0 +1,117 @@
+package tron;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Steers players from the keyboard, sampled once per tick.
+ *
+ * Key presses are queued per player as they arrive and the engine takes at
+ * most one of them on each tick, so two quick turns between ticks both
+ * happen, on consecutive ticks, instead of the second replacing the
+ * first. Presses that would reverse the player or keep its current
+ * direction are skipped. When the queue is empty the player's most
+ * recently pressed key that is still held down is used, so holding a key
+ * works without relying on the operating system's key repeat, whose
+ * repeats are ignored.
+ *
+ * The press time of each queued turn is kept, so the caller can measure
+ * how long the turn took to take effect, see {@link #getPressTime(int)}.
+ */
+public class KeyboardController implements Controller {
+    private static final int QUEUE_SIZE = 4;
+
+    private final KeyBindings bindings;
+    private final Direction[][] queued = new Direction[KeyBindings.MAX_PLAYERS][QUEUE_SIZE];
+    private final long[][] queuedAt = new long[KeyBindings.MAX_PLAYERS][QUEUE_SIZE];
+    private final int[] queueStart = new int[KeyBindings.MAX_PLAYERS];
+    private final int[] queueLength = new int[KeyBindings.MAX_PLAYERS];
+    private final int[] heldKey = new int[KeyBindings.MAX_PLAYERS];
+    private final long[] pressTime = new long[KeyBindings.MAX_PLAYERS];
+    private final BitSet down = new BitSet();
+
+    /**
+     * Creates a controller for all players with steering keys.
+     *
+     * @param bindings The key bindings to steer by
+     */
+    public KeyboardController(KeyBindings bindings) {
+        this.bindings = bindings;
+        Arrays.fill(heldKey, -1);
+    }
+
+    /**
+     * Records a key being pressed. Keys that are not steering keys and
+     * repeats of keys already held are ignored.
+     *
+     * @param keyCode The {@link java.awt.event.KeyEvent} key code
+     * @param nanos The {@link System#nanoTime()} of the press
+     * @return true if the key is a steering key
+     */
+    public boolean keyPressed(int keyCode, long nanos) {
+        int binding = bindings.get(keyCode);
+        if(!KeyBindings.isSteer(binding)) return false;
+        if(down.get(keyCode)) return true;
+        down.set(keyCode);
+        int player = KeyBindings.getPlayer(binding);
+        heldKey[player] = keyCode;
+        if(queueLength[player] < QUEUE_SIZE) {
+            int slot = (queueStart[player] + queueLength[player]) % QUEUE_SIZE;
+            queued[player][slot] = KeyBindings.getDirection(binding);
+            queuedAt[player][slot] = nanos;
+            queueLength[player]++;
+        }
+        return true;
+    }
+
+    /**
+     * Records a key being released.
+     *
+     * @param keyCode The {@link java.awt.event.KeyEvent} key code
+     */
+    public void keyReleased(int keyCode) {
+        down.clear(keyCode);
+        for(int player = 0; player < heldKey.length; player++) {
+            if(heldKey[player] == keyCode) heldKey[player] = -1;
+        }
+    }
+
+    /**
+     * Forgets all pressed keys and queued turns, for example when the
+     * window loses focus and release events will not arrive.
+     */
+    public void reset() {
+        down.clear();
+        Arrays.fill(heldKey, -1);
+        Arrays.fill(queueLength, 0);
+    }
+
+    /**
+     * @param playerIndex 0-based index of the player
+     * @return The press time of the queued turn last returned for the
+     *         player, or 0 if the last direction came from a held key or none was returned
+     */
+    public long getPressTime(int playerIndex) {
+        return playerIndex < pressTime.length ? pressTime[playerIndex] : 0;
+    }
+
+    @Override
+    public Direction nextDirection(GameEngine engine, int playerIndex) {
+        if(playerIndex >= KeyBindings.MAX_PLAYERS) return null;
+        Direction current = engine.getPlayer(playerIndex).getDirection();
+        pressTime[playerIndex] = 0;
+        while(queueLength[playerIndex] > 0) {
+            int slot = queueStart[playerIndex];
+            queueStart[playerIndex] = (slot + 1) % QUEUE_SIZE;
+            queueLength[playerIndex]--;
+            Direction d = queued[playerIndex][slot];
+            if(d == current || d == current.opposite()) continue;
+            pressTime[playerIndex] = queuedAt[playerIndex][slot];
+            return d;
+        }
+        int held = heldKey[playerIndex];
+        if(held < 0) return null;
+        Direction d = KeyBindings.getDirection(bindings.get(held));
+        return d == current.opposite() ? null : d;
+    }
+}
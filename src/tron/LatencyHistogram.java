@@ -0,0 +1,129 @@
+package tron;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size, lock-free histogram of nanosecond durations.
+ * Values are grouped into log-linear buckets (16 sub-buckets per power of two),
+ * so recording is a couple of bit operations and one atomic increment, and
+ * percentiles are accurate to within roughly 6%.
+ */
+public class LatencyHistogram implements LatencyHistogramMXBean {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_HALF = 1 << (SUB_BUCKET_BITS - 1);
+    private static final int LINEAR_LIMIT = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKET_HALF + SUB_BUCKET_HALF;
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Creates an empty histogram.
+     *
+     * @param name The short name of the measured operation
+     */
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return The short name of the measured operation
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Records one duration.
+     *
+     * @param nanos The duration in nanoseconds; negative values are clamped to zero
+     */
+    public void record(long nanos) {
+        if(nanos < 0) nanos = 0;
+        counts.incrementAndGet(indexOf(nanos));
+        totalCount.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        long max = maxNanos.get();
+        while(nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+            max = maxNanos.get();
+        }
+    }
+
+    /**
+     * Returns the duration below which the given fraction of samples fall.
+     *
+     * @param percentile The percentile in the range 0-100
+     * @return The upper bound of the matching bucket in nanoseconds, or 0 when empty
+     */
+    public long valueAtPercentile(double percentile) {
+        long total = totalCount.get();
+        if(total == 0) return 0;
+        long target = Math.max(1, (long)Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for(int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if(seen >= target) {
+                return Math.min(upperBoundOf(i), maxNanos.get());
+            }
+        }
+        return maxNanos.get();
+    }
+
+    @Override
+    public long getCount() {
+        return totalCount.get();
+    }
+
+    @Override
+    public double getMeanMicros() {
+        long total = totalCount.get();
+        return total == 0 ? 0 : totalNanos.get() / (double)total / 1000.0;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return valueAtPercentile(50) / 1000.0;
+    }
+
+    @Override
+    public double getP99Micros() {
+        return valueAtPercentile(99) / 1000.0;
+    }
+
+    @Override
+    public double getP999Micros() {
+        return valueAtPercentile(99.9) / 1000.0;
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return maxNanos.get() / 1000.0;
+    }
+
+    @Override
+    public void reset() {
+        for(int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        totalCount.set(0);
+        totalNanos.set(0);
+        maxNanos.set(0);
+    }
+
+    private static int indexOf(long value) {
+        if(value < LINEAR_LIMIT) return (int)value;
+        int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKET_HALF + (int)(value >>> shift);
+    }
+
+    private static long upperBoundOf(int index) {
+        if(index < LINEAR_LIMIT) return index;
+        int shift = index / SUB_BUCKET_HALF - 1;
+        long sub = index % SUB_BUCKET_HALF + SUB_BUCKET_HALF;
+        return ((sub + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,42 @@
+package tron;
+
+/**
+ * JMX view of a single {@link LatencyHistogram}.
+ * All durations are reported in microseconds.
+ */
+public interface LatencyHistogramMXBean {
+    /**
+     * @return The number of recorded samples
+     */
+    long getCount();
+
+    /**
+     * @return The mean of all recorded samples in microseconds
+     */
+    double getMeanMicros();
+
+    /**
+     * @return The median sample in microseconds
+     */
+    double getP50Micros();
+
+    /**
+     * @return The 99th percentile sample in microseconds
+     */
+    double getP99Micros();
+
+    /**
+     * @return The 99.9th percentile sample in microseconds
+     */
+    double getP999Micros();
+
+    /**
+     * @return The largest recorded sample in microseconds
+     */
+    double getMaxMicros();
+
+    /**
+     * Clears all recorded samples.
+     */
+    void reset();
+}
@@ -0,0 +1,39 @@
+package tron;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Prints the input latency stored with played matches, one line per build,
+ * so that a build that made turns slower stands out.
+ */
+public class LatencyReport {
+    /**
+     * Prints the report from the command line.
+     * Usage: {@code LatencyReport [builds]}
+     *
+     * @param args Optional number of most recently played builds to show
+     */
+    public static void main(String[] args) {
+        int limit = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        DatabaseManager db = new DatabaseManager();
+        try {
+            List<DatabaseManager.BuildLatency> builds = db.getLatencyByBuild(limit);
+            if(builds.isEmpty()) {
+                System.out.println("No match latencies recorded yet");
+                return;
+            }
+            SimpleDateFormat date = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+            System.out.printf("%-20s %-16s %7s %7s %12s %12s %12s %12s%n", "build", "last played", "matches",
+                "turns", "applied p50", "applied p99", "painted p50", "painted p99");
+            for(DatabaseManager.BuildLatency b : builds) {
+                System.out.printf("%-20s %-16s %7d %7d %10.1fms %10.1fms %10.1fms %10.1fms%n", b.build,
+                    date.format(new Date(b.lastPlayed)), b.matches, b.turns, b.appliedP50 / 1000,
+                    b.appliedP99 / 1000, b.paintedP50 / 1000, b.paintedP99 / 1000);
+            }
+        } finally {
+            db.closeConnection();
+        }
+    }
+}
@@ -1,19 +1,42 @@
 package tron;
 import java.awt.Point;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
 
 /**
  * Represents a game level in the Tron light-cycle game.
  * Contains the level layout, wall positions, and starting positions for both players.
+ *
+ * For movement the layout is also kept as a flat array of cells with a one
+ * cell wide wall border around it, so that stepping off the level lands on
+ * a wall instead of needing bounds checks. Cells are addressed by index
+ * (see {@link #getCell(int, int)}) and moved between with a fixed offset
+ * per direction; wraparound levels redirect the border cells to the
+ * opposite edge instead.
  */
 public class Level {
+    /** Setting that joins opposite edges of the level when non-zero. */
+    public static final String WRAP = "wrap";
+
     private int width;
     private int height;
     private char[][] map; // '#' for wall, ' ' for empty
     private Point player1Start;
     private Point player2Start;
     private String name;
+    private String sourcePath;
+    private Map<String, Integer> settings = Collections.emptyMap();
+    private List<Point> pickupSpawns = Collections.emptyList();
+    private int stride;
+    private boolean[] solid;
+    private int[] offsets;
+    // Only for wraparound levels: where each border cell leads
+    private int[] wrapTargets;
 
     /**
      * Creates a new level with specified map and player starting positions.
@@ -29,6 +52,7 @@ public class Level {
         this.player1Start = p1Start;
         this.player2Start = p2Start;
         this.name = "Classic Arena"; 
+        buildCells();
     }
 
     /**
@@ -44,6 +68,64 @@ public class Level {
         this.name = name;
     }
 
+    /**
+     * Creates a new level loaded from a file.
+     *
+     * @param map 2D char array representing the level layout ('#' for walls)
+     * @param p1Start Starting position for player 1
+     * @param p2Start Starting position for player 2
+     * @param name The name of the level
+     * @param sourcePath The path of the file the level was loaded from
+     */
+    public Level(char[][] map, Point p1Start, Point p2Start, String name, String sourcePath) {
+        this(map, p1Start, p2Start, name);
+        this.sourcePath = sourcePath;
+    }
+
+    /**
+     * Creates a new level loaded from a file that defines extra rules.
+     *
+     * @param map 2D char array representing the level layout ('#' for walls)
+     * @param p1Start Starting position for player 1
+     * @param p2Start Starting position for player 2
+     * @param name The name of the level
+     * @param sourcePath The path of the file the level was loaded from
+     * @param settings Rule settings from the level's directives, see {@link ArenaRules}
+     * @param pickupSpawns Cells where pickups can appear
+     */
+    public Level(char[][] map, Point p1Start, Point p2Start, String name, String sourcePath,
+                 Map<String, Integer> settings, List<Point> pickupSpawns) {
+        this(map, p1Start, p2Start, name, sourcePath);
+        this.settings = Collections.unmodifiableMap(new TreeMap<>(settings));
+        this.pickupSpawns = Collections.unmodifiableList(new ArrayList<>(pickupSpawns));
+        if(getSetting(WRAP, 0) != 0) buildWrapTargets();
+    }
+
+    private void buildCells() {
+        stride = width + 2;
+        solid = new boolean[stride * (height + 2)];
+        Arrays.fill(solid, true);
+        for(int y = 0; y < height; y++) {
+            for(int x = 0; x < width; x++) {
+                solid[getCell(x, y)] = map[y][x] == '#';
+            }
+        }
+        offsets = new int[Direction.values().length];
+        offsets[Direction.UP.ordinal()] = -stride;
+        offsets[Direction.DOWN.ordinal()] = stride;
+        offsets[Direction.LEFT.ordinal()] = -1;
+        offsets[Direction.RIGHT.ordinal()] = 1;
+    }
+
+    private void buildWrapTargets() {
+        wrapTargets = new int[solid.length];
+        for(int y = -1; y <= height; y++) {
+            for(int x = -1; x <= width; x++) {
+                wrapTargets[getCell(x, y)] = getCell(Math.floorMod(x, width), Math.floorMod(y, height));
+            }
+        }
+    }
+
     /**
      * @return The width of the level in cells
      */
@@ -67,6 +149,65 @@ public class Level {
         return map[y][x] == '#';
     }
 
+    /**
+     * @return true if leaving the level on one side enters it on the opposite side
+     */
+    public boolean isWraparound() {
+        return wrapTargets != null;
+    }
+
+    /**
+     * Computes the index of a cell. Coordinates may be one cell outside the
+     * level, which gives the index of a border cell.
+     *
+     * @param x X-coordinate of the cell, from -1 to the width
+     * @param y Y-coordinate of the cell, from -1 to the height
+     * @return The cell index
+     */
+    public int getCell(int x, int y) {
+        return (y + 1) * stride + x + 1;
+    }
+
+    /**
+     * @param cell A cell index
+     * @return The X-coordinate of the cell
+     */
+    public int getCellX(int cell) {
+        return cell % stride - 1;
+    }
+
+    /**
+     * @param cell A cell index
+     * @return The Y-coordinate of the cell
+     */
+    public int getCellY(int cell) {
+        return cell / stride - 1;
+    }
+
+    /**
+     * Finds the cell a step away in a direction. From inside the level this
+     * is always a valid index: a border wall, or the cell on the opposite
+     * edge for wraparound levels.
+     *
+     * @param cell Index of a cell inside the level
+     * @param direction The direction to step in
+     * @return The index of the neighbouring cell
+     */
+    public int getNeighbour(int cell, Direction direction) {
+        int next = cell + offsets[direction.ordinal()];
+        return wrapTargets == null ? next : wrapTargets[next];
+    }
+
+    /**
+     * Checks a cell by index, without bounds checks.
+     *
+     * @param cell Index of a cell inside the level or on its border
+     * @return true if the cell is a wall or on the border
+     */
+    public boolean isWallCell(int cell) {
+        return solid[cell];
+    }
+
     /**
      * @return The starting position for player 1
      */
@@ -81,6 +222,41 @@ public class Level {
         return player2Start;
     }
 
+    /**
+     * Finds starting positions for the players of a team. The first player
+     * starts on the team's start marker, player 1's for the first team and
+     * player 2's for the second. The others line up in the same column,
+     * alternately above and below it, two rows apart so that a free row is
+     * left between their trails. Rows with a wall in that column are
+     * skipped; if the column is full, the remaining players take the free
+     * cells nearest the top left.
+     *
+     * @param team 0-based index of the team
+     * @param count The number of players on the team
+     * @return The starting positions, in player order
+     */
+    public Point[] getTeamStarts(int team, int count) {
+        Point base = team == 0 ? player1Start : player2Start;
+        Point[] starts = new Point[count];
+        starts[0] = new Point(base);
+        int found = 1;
+        for(int offset = 2; found < count && offset < height; offset += 2) {
+            for(int sign = -1; sign <= 1 && found < count; sign += 2) {
+                int y = base.y + sign * offset;
+                if(y >= 0 && y < height && !isWall(base.x, y)) {
+                    starts[found++] = new Point(base.x, y);
+                }
+            }
+        }
+        for(int y = 0; found < count && y < height; y++) {
+            for(int x = 0; found < count && x < width; x++) {
+                if(isWall(x, y) || x == base.x) continue;
+                starts[found++] = new Point(x, y);
+            }
+        }
+        return starts;
+    }
+
     /**
      * @return The name of the level
      */
@@ -88,6 +264,69 @@ public class Level {
         return name;
     }
 
+    /**
+     * @return The path of the file the level was loaded from, or null if it was built in code
+     */
+    public String getSourcePath() {
+        return sourcePath;
+    }
+
+    /**
+     * Looks up a rule setting defined by the level file.
+     *
+     * @param name The name of the setting
+     * @param defaultValue The value to use if the level does not define it
+     * @return The setting's value
+     */
+    public int getSetting(String name, int defaultValue) {
+        Integer value = settings.get(name);
+        return value == null ? defaultValue : value;
+    }
+
+    /**
+     * @return The cells where pickups can appear; the list cannot be modified
+     */
+    public List<Point> getPickupSpawns() {
+        return pickupSpawns;
+    }
+
+    /**
+     * Computes a checksum of the level layout, start positions and rules.
+     * Used to verify that a saved game is resumed on the same level.
+     *
+     * @return A CRC-32 of the layout
+     */
+    public long getChecksum() {
+        CRC32 crc = new CRC32();
+        updateInt(crc, width);
+        updateInt(crc, height);
+        for(char[] row : map) {
+            for(char c : row) {
+                crc.update(c);
+            }
+        }
+        updateInt(crc, player1Start.x);
+        updateInt(crc, player1Start.y);
+        updateInt(crc, player2Start.x);
+        updateInt(crc, player2Start.y);
+        for(Map.Entry<String, Integer> setting : settings.entrySet()) {
+            crc.update(setting.getKey().getBytes(java.nio.charset.StandardCharsets.UTF_8));
+            updateInt(crc, setting.getValue());
+        }
+        for(Point spawn : pickupSpawns) {
+            updateInt(crc, spawn.x);
+            updateInt(crc, spawn.y);
+        }
+        return crc.getValue();
+    }
+
+    private static void updateInt(CRC32 crc, int value) {
+        crc.update(value >>> 24);
+        crc.update(value >>> 16);
+        crc.update(value >>> 8);
+        crc.update(value);
+    }
+
     /**
      * Gets a list of all wall positions in the level.
      * @return List of Points representing wall positions
@@ -0,0 +1,77 @@
+package tron;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Loads levels on background threads and keeps the results, so the game
+ * thread never waits on disk. A level is read again only when its file has
+ * changed since it was cached. {@link Level} objects are never modified by
+ * the game, so one cached level can be shared by any number of rounds.
+ */
+public final class LevelCache {
+    private static final ExecutorService LOADER = Executors.newFixedThreadPool(
+        Math.max(1, Runtime.getRuntime().availableProcessors()), r -> {
+            Thread t = new Thread(r, "level-loader");
+            t.setDaemon(true);
+            return t;
+        });
+    private static final Map<String, Entry> CACHE = new ConcurrentHashMap<>();
+
+    private LevelCache() {
+    }
+
+    /**
+     * Returns a level, loading it in the background if it is not cached yet.
+     * Empty levels complete exceptionally, like unreadable ones, and stay
+     * failed until the file is modified.
+     *
+     * @param filePath Path to the level file
+     * @return A future that completes with the level
+     */
+    public static CompletableFuture<Level> get(String filePath) {
+        long modified = new File(filePath).lastModified();
+        Entry entry = CACHE.compute(filePath, (path, cached) -> {
+            // Failures are kept too, so a broken file is only read again once it changes
+            if(cached != null && cached.modified == modified) {
+                return cached;
+            }
+            return new Entry(modified, CompletableFuture.supplyAsync(() -> load(path), LOADER));
+        });
+        return entry.level;
+    }
+
+    /**
+     * Starts loading a level without waiting for it.
+     *
+     * @param filePath Path to the level file, ignored if null
+     */
+    public static void prefetch(String filePath) {
+        if(filePath != null) get(filePath);
+    }
+
+    private static Level load(String filePath) {
+        Level level;
+        try {
+            level = LevelLoader.loadLevel(filePath);
+        } catch(IOException | RuntimeException e) {
+            throw new CompletionException(e);
+        }
+        if(level.getWidth() == 0 || level.getHeight() == 0) {
+            throw new CompletionException(new IOException("Level file is empty: " + filePath));
+        }
+        return level;
+    }
+
+    private static final class Entry {
+        final long modified;
+        final CompletableFuture<Level> level;
+
+        Entry(long modified, CompletableFuture<Level> level) {
+            this.modified = modified;
+            this.level = level;
+        }
+    }
+}
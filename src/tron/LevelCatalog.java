@@ -0,0 +1,54 @@
+package tron;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Lists the level files in the {@code levels} directory on a background
+ * thread, so the start dialog can be shown before the directory has been
+ * read. The most recent listing is kept until {@link #refresh()} is called.
+ */
+public final class LevelCatalog {
+    private static final String LEVEL_DIR = "levels";
+    private static volatile CompletableFuture<List<String>> levels;
+
+    private LevelCatalog() {
+    }
+
+    /**
+     * Starts a new listing of the level directory. Once it is done, the
+     * first level is loaded into the {@link LevelCache} as well, since it
+     * is the one selected by default.
+     *
+     * @return A future that completes with the level file paths
+     */
+    public static CompletableFuture<List<String>> refresh() {
+        CompletableFuture<List<String>> scan = CompletableFuture.supplyAsync(LevelCatalog::scan);
+        scan.thenAccept(paths -> {
+            if(!paths.isEmpty()) LevelCache.prefetch(paths.get(0));
+        });
+        levels = scan;
+        return scan;
+    }
+
+    /**
+     * @return The most recent listing, starting one if there is none yet
+     */
+    public static CompletableFuture<List<String>> levels() {
+        CompletableFuture<List<String>> current = levels;
+        return current != null ? current : refresh();
+    }
+
+    private static List<String> scan() {
+        String[] files = new File(LEVEL_DIR).list((dir, name) -> name.endsWith(".txt"));
+        List<String> paths = new ArrayList<>();
+        if(files != null) {
+            for(String f : files) {
+                paths.add(LEVEL_DIR + "/" + f);
+            }
+        }
+        return paths;
+    }
+}
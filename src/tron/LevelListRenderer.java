@@ -0,0 +1,70 @@
+package tron;
+
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Draws a level in the level browser: its thumbnail, name, size and wall
+ * density. Previews come from {@link LevelThumbnails}; a row whose preview is
+ * not ready yet shows a placeholder and the list is repainted once it is.
+ */
+public class LevelListRenderer extends JPanel implements ListCellRenderer<String> {
+    private static final Icon PLACEHOLDER = new ImageIcon(
+        new BufferedImage(LevelThumbnails.MAX_WIDTH, LevelThumbnails.MAX_HEIGHT, BufferedImage.TYPE_INT_ARGB));
+
+    private final JLabel thumbnail = new JLabel();
+    private final JLabel nameLabel = new JLabel();
+    private final JLabel detailLabel = new JLabel();
+    private final Set<String> waiting = new HashSet<>();
+
+    /**
+     * Creates the renderer.
+     */
+    public LevelListRenderer() {
+        super(new BorderLayout(10, 0));
+        setBorder(new EmptyBorder(4, 4, 4, 4));
+        thumbnail.setPreferredSize(new Dimension(LevelThumbnails.MAX_WIDTH, LevelThumbnails.MAX_HEIGHT));
+        thumbnail.setHorizontalAlignment(SwingConstants.CENTER);
+        nameLabel.setFont(nameLabel.getFont().deriveFont(Font.BOLD));
+        JPanel text = new JPanel(new GridLayout(2, 1));
+        text.setOpaque(false);
+        text.add(nameLabel);
+        text.add(detailLabel);
+        add(thumbnail, BorderLayout.WEST);
+        add(text, BorderLayout.CENTER);
+    }
+
+    @Override
+    public Component getListCellRendererComponent(JList<? extends String> list, String path, int index,
+                                                  boolean isSelected, boolean cellHasFocus) {
+        nameLabel.setText(LevelLoader.getLevelNameFromPath(path));
+        CompletableFuture<LevelThumbnails.Preview> preview = LevelThumbnails.get(path);
+        if(preview.isDone() && !preview.isCompletedExceptionally()) {
+            LevelThumbnails.Preview p = preview.join();
+            thumbnail.setIcon(new ImageIcon(p.getImage()));
+            detailLabel.setText(String.format("%d \u00d7 %d, %d%% walls",
+                p.getWidth(), p.getHeight(), Math.round(p.getWallDensity() * 100)));
+        } else {
+            thumbnail.setIcon(PLACEHOLDER);
+            detailLabel.setText(preview.isCompletedExceptionally() ? "Cannot be loaded" : "Loading...");
+            if(!preview.isDone() && waiting.add(path)) {
+                preview.whenComplete((p, failure) -> SwingUtilities.invokeLater(() -> {
+                    waiting.remove(path);
+                    list.repaint();
+                }));
+            }
+        }
+
+        Color background = isSelected ? list.getSelectionBackground() : list.getBackground();
+        Color foreground = isSelected ? list.getSelectionForeground() : list.getForeground();
+        setBackground(background);
+        nameLabel.setForeground(foreground);
+        detailLabel.setForeground(foreground);
+        return this;
+    }
+}
@@ -0,0 +1,26 @@
+package tron;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event covering the reading and parsing of a level file.
+ */
+@Name("tron.LevelLoad")
+@Label("Level Load")
+@Category("Tron")
+public class LevelLoadEvent extends Event {
+    @Label("Path")
+    public String path;
+
+    @Label("Width")
+    public int width;
+
+    @Label("Height")
+    public int height;
+
+    @Label("Success")
+    public boolean success;
+}
@@ -19,26 +19,61 @@ public class LevelLoader {
      * '#' for walls
      * '1' for player 1 start position
      * '2' for player 2 start position
+     * '*' for a pickup spawn point
      * ' ' for empty spaces
      *
+     * The layout may be preceded by directive lines of the form
+     * {@code @name=value} that turn on extra rules, for example
+     * {@code @decay=60} or {@code @shrink=100}. See {@link ArenaRules}
+     * for the supported names.
+     *
      * @param filePath Path to the level file
      * @return A new Level object representing the loaded level
      * @throws IOException if there's an error reading the file
      */
     public static Level loadLevel(String filePath) throws IOException {
-        BufferedReader br = new BufferedReader(new FileReader(filePath));
+        long loadStart = GameMetrics.start();
+        LevelLoadEvent event = new LevelLoadEvent();
+        event.begin();
+        Level level = null;
+        try {
+            level = readLevel(filePath);
+            return level;
+        } finally {
+            GameMetrics.stop(GameMetrics.LEVEL_LOAD, loadStart);
+            event.end();
+            if(event.shouldCommit()) {
+                event.path = filePath;
+                event.success = level != null;
+                if(level != null) {
+                    event.width = level.getWidth();
+                    event.height = level.getHeight();
+                }
+                event.commit();
+            }
+        }
+    }
+
+    private static Level readLevel(String filePath) throws IOException {
         String line;
         java.util.List<String> lines = new java.util.ArrayList<>();
-        while((line = br.readLine()) != null) {
-            lines.add(line);
+        java.util.Map<String, Integer> settings = new java.util.HashMap<>();
+        try(BufferedReader br = new BufferedReader(new FileReader(filePath))) {
+            while((line = br.readLine()) != null) {
+                if(lines.isEmpty() && line.startsWith("@")) {
+                    parseDirective(line, settings, filePath);
+                } else {
+                    lines.add(line);
+                }
+            }
         }
-        br.close();
 
         int height = lines.size();
         int width = lines.get(0).length();
         char[][] map = new char[height][width];
         Point p1Start = null;
         Point p2Start = null;
+        java.util.List<Point> pickupSpawns = new java.util.ArrayList<>();
 
         for(int y=0; y<height; y++) {
             String row = lines.get(y);
@@ -53,6 +88,9 @@ public class LevelLoader {
                     p2Start = new Point(x, y);
                     // Replace '2' with ' ' since it's not a wall
                     map[y][x] = ' ';
+                } else if(c == '*') {
+                    pickupSpawns.add(new Point(x, y));
+                    map[y][x] = ' ';
                 }
             }
         }
@@ -63,7 +101,20 @@ public class LevelLoader {
 
         // Extract level name from file path
         String levelName = getLevelNameFromPath(filePath);
-        return new Level(map, p1Start, p2Start, levelName);
+        return new Level(map, p1Start, p2Start, levelName, filePath, settings, pickupSpawns);
+    }
+
+    private static void parseDirective(String line, java.util.Map<String, Integer> settings, String filePath) throws IOException {
+        int equals = line.indexOf('=');
+        if(equals < 2) {
+            throw new IOException("Malformed directive in " + filePath + ": " + line);
+        }
+        String name = line.substring(1, equals).trim();
+        try {
+            settings.put(name, Integer.parseInt(line.substring(equals + 1).trim()));
+        } catch(NumberFormatException e) {
+            throw new IOException("Directive " + name + " in " + filePath + " needs a whole number", e);
+        }
     }
 
     /**
@@ -73,7 +124,7 @@ public class LevelLoader {
      * @param filePath The file path to extract the name from
      * @return The extracted level name
      */
-    private static String getLevelNameFromPath(String filePath) {
+    static String getLevelNameFromPath(String filePath) {
         // Get the file name without extension and capitalize first letter of each word
         String fileName = Paths.get(filePath).getFileName().toString();
         fileName = fileName.substring(0, fileName.lastIndexOf('.'));
@@ -0,0 +1,240 @@
+package tron;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Renders small previews of levels for the level picker.
+ *
+ * Previews are generated in parallel on background threads from the levels
+ * in the {@link LevelCache} and stored on disk under {@code cache/thumbnails},
+ * keyed by the SHA-256 of the level file, so a level is only rendered again
+ * when its contents change. Previews are kept in memory as well, so asking
+ * for one again costs a map lookup.
+ */
+public final class LevelThumbnails {
+    /** Largest width of a thumbnail in pixels. */
+    public static final int MAX_WIDTH = 96;
+    /** Largest height of a thumbnail in pixels. */
+    public static final int MAX_HEIGHT = 72;
+
+    private static final Path CACHE_DIR = Paths.get("cache", "thumbnails");
+    private static final int MAGIC = 0x54525448; // "TRTH"
+    private static final int VERSION = 1;
+    private static final Color FLOOR_COLOR = new Color(20, 20, 20);
+    private static final Color WALL_COLOR = new Color(150, 150, 150);
+    private static final Color PICKUP_COLOR = Color.YELLOW;
+    private static final Color[] START_COLORS = {Color.BLUE, Color.RED};
+
+    private static final ExecutorService RENDERERS = Executors.newFixedThreadPool(
+        Math.max(1, Runtime.getRuntime().availableProcessors()), r -> {
+            Thread t = new Thread(r, "thumbnail-renderer");
+            t.setDaemon(true);
+            return t;
+        });
+    private static final Map<String, Entry> CACHE = new ConcurrentHashMap<>();
+
+    private LevelThumbnails() {
+    }
+
+    /**
+     * Returns the preview of a level, generating it in the background if needed.
+     * A level that cannot be loaded stays failed until its file is modified.
+     *
+     * @param filePath Path to the level file
+     * @return A future that completes with the preview
+     */
+    public static CompletableFuture<Preview> get(String filePath) {
+        long modified = new File(filePath).lastModified();
+        Entry entry = CACHE.compute(filePath, (path, cached) -> {
+            // A failed preview is kept as well, or the picker would reload it on every repaint
+            if(cached != null && cached.modified == modified) {
+                return cached;
+            }
+            return new Entry(modified, CompletableFuture.supplyAsync(() -> hash(path), RENDERERS)
+                .thenCompose(hash -> load(path, hash)));
+        });
+        return entry.preview;
+    }
+
+    private static CompletableFuture<Preview> load(String filePath, String hash) {
+        Path cached = CACHE_DIR.resolve(hash + ".thumb");
+        Preview preview = readCached(cached);
+        if(preview != null) {
+            return CompletableFuture.completedFuture(preview);
+        }
+        return LevelCache.get(filePath).thenApplyAsync(level -> {
+            Preview rendered = render(level);
+            writeCached(cached, rendered);
+            return rendered;
+        }, RENDERERS);
+    }
+
+    /**
+     * Renders the preview of a level.
+     *
+     * @param level The level to render
+     * @return The preview
+     */
+    public static Preview render(Level level) {
+        int width = level.getWidth();
+        int height = level.getHeight();
+        double scale = Math.min(1.0, Math.min((double)MAX_WIDTH / width, (double)MAX_HEIGHT / height));
+        int cell = Math.max(1, Math.min(MAX_WIDTH / width, MAX_HEIGHT / height));
+        int imageWidth;
+        int imageHeight;
+        if(scale < 1.0) {
+            imageWidth = Math.max(1, (int)(width * scale));
+            imageHeight = Math.max(1, (int)(height * scale));
+        } else {
+            imageWidth = width * cell;
+            imageHeight = height * cell;
+        }
+
+        // Downsampled levels show a pixel as wall if any cell it covers is a wall
+        BufferedImage image = new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = image.createGraphics();
+        g2d.setColor(FLOOR_COLOR);
+        g2d.fillRect(0, 0, imageWidth, imageHeight);
+        g2d.setColor(WALL_COLOR);
+        int walls = 0;
+        for(int y = 0; y < height; y++) {
+            for(int x = 0; x < width; x++) {
+                if(!level.isWall(x, y)) continue;
+                walls++;
+                if(scale < 1.0) {
+                    image.setRGB((int)(x * scale), (int)(y * scale), WALL_COLOR.getRGB());
+                } else {
+                    g2d.fillRect(x * cell, y * cell, cell, cell);
+                }
+            }
+        }
+        g2d.setColor(PICKUP_COLOR);
+        for(Point p : level.getPickupSpawns()) {
+            mark(g2d, p, scale, cell);
+        }
+        g2d.setColor(START_COLORS[0]);
+        mark(g2d, level.getPlayer1Start(), scale, cell);
+        g2d.setColor(START_COLORS[1]);
+        mark(g2d, level.getPlayer2Start(), scale, cell);
+        g2d.dispose();
+        return new Preview(width, height, (double)walls / ((long)width * height), image);
+    }
+
+    private static void mark(Graphics2D g2d, Point p, double scale, int cell) {
+        if(scale < 1.0) {
+            g2d.fillRect((int)(p.x * scale) - 1, (int)(p.y * scale) - 1, 3, 3);
+        } else {
+            g2d.fillRect(p.x * cell, p.y * cell, cell, cell);
+        }
+    }
+
+    private static Preview readCached(Path file) {
+        if(!Files.isRegularFile(file)) return null;
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if(in.readInt() != MAGIC || in.readInt() != VERSION) return null;
+            int width = in.readInt();
+            int height = in.readInt();
+            double wallDensity = in.readDouble();
+            BufferedImage image = ImageIO.read(in);
+            return image == null ? null : new Preview(width, height, wallDensity, image);
+        } catch(IOException e) {
+            // A damaged cache file is simply rendered again
+            return null;
+        }
+    }
+
+    private static void writeCached(Path file, Preview preview) {
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = Files.createTempFile(file.getParent(), "thumb", ".tmp");
+            try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(preview.getWidth());
+                out.writeInt(preview.getHeight());
+                out.writeDouble(preview.getWallDensity());
+                ImageIO.write(preview.getImage(), "png", out);
+            }
+            // Renderers working on identical files race to the same name; the rename keeps it whole
+            Files.move(temp, file, java.nio.file.StandardCopyOption.REPLACE_EXISTING,
+                       java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+        } catch(IOException e) {
+            // The preview still works without the disk cache
+            e.printStackTrace();
+        }
+    }
+
+    private static String hash(String filePath) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(Paths.get(filePath)));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for(byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch(IOException e) {
+            throw new CompletionException(e);
+        } catch(NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Thumbnail and statistics of one level.
+     */
+    public static class Preview {
+        private final int width;
+        private final int height;
+        private final double wallDensity;
+        private final BufferedImage image;
+
+        Preview(int width, int height, double wallDensity, BufferedImage image) {
+            this.width = width;
+            this.height = height;
+            this.wallDensity = wallDensity;
+            this.image = image;
+        }
+
+        /**
+         * @return The width of the level in cells
+         */
+        public int getWidth() { return width; }
+
+        /**
+         * @return The height of the level in cells
+         */
+        public int getHeight() { return height; }
+
+        /**
+         * @return The fraction of cells that are walls, from 0 to 1
+         */
+        public double getWallDensity() { return wallDensity; }
+
+        /**
+         * @return The thumbnail image, at most {@link #MAX_WIDTH} by {@link #MAX_HEIGHT} pixels
+         */
+        public BufferedImage getImage() { return image; }
+    }
+
+    private static final class Entry {
+        final long modified;
+        final CompletableFuture<Preview> preview;
+
+        Entry(long modified, CompletableFuture<Preview> preview) {
+            this.modified = modified;
+            this.preview = preview;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package tron;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event emitted when a round ends.
+ */
+@Name("tron.MatchEnd")
+@Label("Match End")
+@Category("Tron")
+public class MatchEndEvent extends Event {
+    @Label("Level")
+    public String level;
+
+    @Label("Winner")
+    public String winner;
+
+    @Label("Ticks")
+    public long ticks;
+
+    @Label("Match Duration")
+    @Timespan(Timespan.MILLISECONDS)
+    public long matchDuration;
+}
@@ -0,0 +1,75 @@
+package tron;
+
+/**
+ * How many players make up each of the two teams in a round.
+ *
+ * Players are numbered alternately by team, so players 1, 3, 5, ... play
+ * for team 1 and players 2, 4, 6, ... for team 2. A one-on-one round
+ * therefore numbers its players exactly as before teams existed, and in a
+ * 2v2 round keyboard players 1 and 3 play against 2 and 4.
+ */
+public enum MatchFormat {
+    ONE_V_ONE("1v1", 1),
+    TWO_V_TWO("2v2", 2),
+    FOUR_V_FOUR("4v4", 4);
+
+    /** Number of teams in every format. */
+    public static final int TEAMS = 2;
+
+    private final String label;
+    private final int teamSize;
+
+    MatchFormat(String label, int teamSize) {
+        this.label = label;
+        this.teamSize = teamSize;
+    }
+
+    /**
+     * @return The number of players on each team
+     */
+    public int getTeamSize() { return teamSize; }
+
+    /**
+     * @return The number of players in a round
+     */
+    public int getPlayerCount() { return teamSize * TEAMS; }
+
+    /**
+     * @return true if the teams have more than one player
+     */
+    public boolean isTeamGame() { return teamSize > 1; }
+
+    /**
+     * @param playerIndex 0-based index of a player
+     * @return 0-based index of the player's team
+     */
+    public static int teamOf(int playerIndex) {
+        return playerIndex % TEAMS;
+    }
+
+    /**
+     * @param playerIndex 0-based index of a player
+     * @return 0-based position of the player within its team
+     */
+    public static int memberOf(int playerIndex) {
+        return playerIndex / TEAMS;
+    }
+
+    /**
+     * Finds the format with the given number of players per team.
+     *
+     * @param teamSize Players per team
+     * @return The format, or null if there is none of that size
+     */
+    public static MatchFormat forTeamSize(int teamSize) {
+        for(MatchFormat format : values()) {
+            if(format.teamSize == teamSize) return format;
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
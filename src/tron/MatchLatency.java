@@ -0,0 +1,93 @@
+package tron;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.security.CodeSource;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * End-to-end input latency of one match: for every steering key press that
+ * turned a player, the time until the tick that applied the turn and the
+ * time until the first frame painted after it.
+ *
+ * Press times are taken from the key event, so the delay before the event
+ * reached the game is included. Samples are recorded on the event dispatch
+ * thread; the percentiles are stored with the match by
+ * {@link DatabaseManager}, labelled with {@link #BUILD} so that builds can
+ * be compared.
+ */
+public class MatchLatency {
+    /** Label of the running build, stored with every match's latencies. */
+    public static final String BUILD = detectBuild();
+
+    private final LatencyHistogram applied = new LatencyHistogram("applied");
+    private final LatencyHistogram painted = new LatencyHistogram("painted");
+    // Press times of applied turns whose frame has not been painted yet
+    private long[] awaitingPaint = new long[8];
+    private int awaitingCount;
+
+    /**
+     * Records that a key press turned a player on the tick that just ran.
+     *
+     * @param pressNanos The {@link System#nanoTime()} of the key press
+     * @param nowNanos The {@link System#nanoTime()} after the tick
+     */
+    public void turnApplied(long pressNanos, long nowNanos) {
+        applied.record(nowNanos - pressNanos);
+        if(awaitingCount == awaitingPaint.length) {
+            awaitingPaint = Arrays.copyOf(awaitingPaint, awaitingCount * 2);
+        }
+        awaitingPaint[awaitingCount++] = pressNanos;
+    }
+
+    /**
+     * Records that a frame has been painted, which shows every turn applied since the last one.
+     *
+     * @param nowNanos The {@link System#nanoTime()} after painting
+     */
+    public void framePainted(long nowNanos) {
+        for(int i = 0; i < awaitingCount; i++) {
+            painted.record(nowNanos - awaitingPaint[i]);
+        }
+        awaitingCount = 0;
+    }
+
+    /**
+     * @return The number of turns recorded
+     */
+    public long getTurnCount() { return applied.getCount(); }
+
+    /**
+     * @return Delays from key press to the tick that applied the turn
+     */
+    public LatencyHistogram getApplied() { return applied; }
+
+    /**
+     * @return Delays from key press to the first frame showing the turn
+     */
+    public LatencyHistogram getPainted() { return painted; }
+
+    /**
+     * Names the build from the {@code tron.build} system property, the
+     * jar's implementation version or, failing those, the time the jar or
+     * class directory was last modified.
+     */
+    private static String detectBuild() {
+        String build = System.getProperty("tron.build");
+        if(build != null) return build;
+        build = MatchLatency.class.getPackage().getImplementationVersion();
+        if(build != null) return build;
+        try {
+            CodeSource source = MatchLatency.class.getProtectionDomain().getCodeSource();
+            if(source != null) {
+                File location = new File(source.getLocation().toURI());
+                return new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date(location.lastModified()));
+            }
+        } catch(URISyntaxException | SecurityException e) {
+            e.printStackTrace();
+        }
+        return "dev";
+    }
+}
@@ -0,0 +1,174 @@
+package tron;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A recorded round that can be played back tick by tick.
+ *
+ * The engine is deterministic, so a recording only needs the state the
+ * round started from, as a {@link GameSnapshot}, the game mode it was
+ * played under and the direction each player was heading in before every
+ * tick: one byte per player and tick. A five minute round takes a few
+ * kilobytes.
+ *
+ * Playing a recording back restores the snapshot and, for each recorded
+ * tick, calls {@link #steer(GameEngine, int)} and then
+ * {@link GameEngine#tick()}.
+ */
+public class MatchRecording {
+    /** File name extension of saved recordings. */
+    public static final String FILE_EXTENSION = ".trec";
+
+    private static final int MAGIC = 0x54524D52; // "TRMR"
+    private static final int VERSION = 1;
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final byte[] start;
+    private final String modeName;
+    private final int tickMillis;
+    private final int playerCount;
+    private byte[] moves;
+    private int tickCount;
+
+    /**
+     * Starts recording a round from its current state.
+     *
+     * @param engine The round to record
+     * @param modeName The round's game mode, or null for the classic rules
+     * @param tickMillis Time between ticks when the round was played
+     */
+    public MatchRecording(GameEngine engine, String modeName, int tickMillis) {
+        this(GameSnapshot.capture(engine), modeName, tickMillis, engine.getPlayerCount(),
+            new byte[engine.getPlayerCount() * 1024], 0);
+    }
+
+    private MatchRecording(byte[] start, String modeName, int tickMillis, int playerCount, byte[] moves, int tickCount) {
+        this.start = start;
+        this.modeName = modeName;
+        this.tickMillis = tickMillis;
+        this.playerCount = playerCount;
+        this.moves = moves;
+        this.tickCount = tickCount;
+    }
+
+    /**
+     * Records the players' directions for the next tick. Called after the
+     * players have steered and before {@link GameEngine#tick()}.
+     *
+     * @param engine The round being recorded
+     */
+    public void recordTick(GameEngine engine) {
+        int offset = tickCount * playerCount;
+        if(offset + playerCount > moves.length) {
+            byte[] grown = new byte[Math.max(moves.length * 2, playerCount * 1024)];
+            System.arraycopy(moves, 0, grown, 0, offset);
+            moves = grown;
+        }
+        for(int i = 0; i < playerCount; i++) {
+            moves[offset + i] = (byte)engine.getPlayer(i).getDirection().ordinal();
+        }
+        tickCount++;
+    }
+
+    /**
+     * Restores the round as it was when recording started, with a fresh
+     * instance of its game mode.
+     *
+     * @return The round, ready for the first recorded tick
+     * @throws IOException if the level cannot be loaded or has changed since
+     */
+    public GameEngine replay() throws IOException {
+        GameEngine engine = GameSnapshot.restore(start);
+        engine.setMode(Plugins.createMode(modeName));
+        return engine;
+    }
+
+    /**
+     * Steers the players of a replayed round as recorded for a tick.
+     *
+     * @param engine The round returned by {@link #replay()}
+     * @param tick 0-based index of the recorded tick
+     */
+    public void steer(GameEngine engine, int tick) {
+        int offset = tick * playerCount;
+        for(int i = 0; i < playerCount; i++) {
+            engine.steer(i, DIRECTIONS[moves[offset + i]]);
+        }
+    }
+
+    /**
+     * @return The number of recorded ticks
+     */
+    public int getTickCount() { return tickCount; }
+
+    /**
+     * @return Time between ticks when the round was played, in milliseconds
+     */
+    public int getTickMillis() { return tickMillis; }
+
+    /**
+     * @return The round's game mode, or null for the classic rules
+     */
+    public String getModeName() { return modeName; }
+
+    /**
+     * Writes the recording to a file.
+     *
+     * @param file The file to write
+     * @throws IOException if the file cannot be written
+     */
+    public void save(Path file) throws IOException {
+        if(file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeUTF(modeName == null ? "" : modeName);
+            out.writeShort(tickMillis);
+            out.writeInt(start.length);
+            out.write(start);
+            out.writeByte(playerCount);
+            out.writeInt(tickCount);
+            out.write(moves, 0, tickCount * playerCount);
+        }
+    }
+
+    /**
+     * Reads a recording from a file.
+     *
+     * @param file The file to read
+     * @return The recording
+     * @throws IOException if the file cannot be read or is not a recording
+     */
+    public static MatchRecording load(Path file) throws IOException {
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if(in.readInt() != MAGIC) {
+                throw new IOException("Not a match recording");
+            }
+            int version = in.readUnsignedShort();
+            if(version != VERSION) {
+                throw new IOException("Unsupported recording version " + version);
+            }
+            String modeName = in.readUTF();
+            int tickMillis = in.readUnsignedShort();
+            byte[] start = new byte[in.readInt()];
+            in.readFully(start);
+            int playerCount = in.readUnsignedByte();
+            int tickCount = in.readInt();
+            byte[] moves = new byte[tickCount * playerCount];
+            in.readFully(moves);
+            for(byte move : moves) {
+                if(move < 0 || move >= DIRECTIONS.length) {
+                    throw new IOException("Invalid direction in recording");
+                }
+            }
+            return new MatchRecording(start, modeName.isEmpty() ? null : modeName, tickMillis, playerCount,
+                moves, tickCount);
+        } catch(EOFException e) {
+            throw new IOException("Recording is truncated", e);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package tron;
+
+/**
+ * The outcome of a finished round: either a draw or a win for one team.
+ * In a one-on-one round every player is a team of its own, so the winning
+ * team is the winning player's index.
+ *
+ * The engine creates the possible results when a round starts, so ending a
+ * round does not allocate.
+ */
+public final class MatchResult {
+    /** Team index reported by {@link #getWinningTeam()} for a draw. */
+    public static final int NO_TEAM = -1;
+
+    /** Result of a round in which the last teams crashed on the same tick. */
+    public static final MatchResult DRAW = new MatchResult(NO_TEAM, null);
+
+    private final int winningTeam;
+    private final String winner;
+
+    /**
+     * Creates the result of a round won by a team.
+     *
+     * @param winningTeam 0-based index of the winning team
+     * @param winner The winning team's name
+     */
+    public MatchResult(int winningTeam, String winner) {
+        this.winningTeam = winningTeam;
+        this.winner = winner;
+    }
+
+    /**
+     * @return true if no team won
+     */
+    public boolean isDraw() { return winningTeam == NO_TEAM; }
+
+    /**
+     * @return 0-based index of the winning team, or {@link #NO_TEAM} for a draw
+     */
+    public int getWinningTeam() { return winningTeam; }
+
+    /**
+     * @return The winning team's name, or null for a draw
+     */
+    public String getWinner() { return winner; }
+
+    @Override
+    public String toString() {
+        return isDraw() ? "Draw" : winner;
+    }
+}
@@ -0,0 +1,109 @@
+package tron;
+
+import java.util.function.Consumer;
+
+/**
+ * One headless match hosted by a {@link MatchScheduler}.
+ * Owns its own {@link GameEngine} and controllers, so rooms share no game
+ * state. A room is only ever stepped by one scheduler thread at a time;
+ * an exception thrown while stepping fails that room alone.
+ */
+public class MatchRoom {
+    /**
+     * Lifecycle of a room.
+     */
+    public enum State {
+        /** The match is in progress and will be stepped. */
+        RUNNING,
+        /** The match ended with a collision. */
+        FINISHED,
+        /** Stepping the match threw an exception. */
+        FAILED,
+        /** The match was torn down before it ended. */
+        CLOSED
+    }
+
+    private final int id;
+    private final GameEngine engine;
+    private final Controller[] controllers;
+    private final int tickInterval;
+    private final Consumer<MatchRoom> onFinished;
+    private volatile State state = State.RUNNING;
+    private volatile Throwable failure;
+    long nextDueTick;
+
+    MatchRoom(int id, GameEngine engine, Controller[] controllers, int tickInterval, Consumer<MatchRoom> onFinished) {
+        this.id = id;
+        this.engine = engine;
+        this.controllers = controllers;
+        this.tickInterval = tickInterval;
+        this.onFinished = onFinished;
+    }
+
+    /**
+     * Asks every controller for its move and advances the engine by one tick.
+     * Called by the scheduler only.
+     */
+    void step() {
+        if(state != State.RUNNING) return;
+        try {
+            for(int i = 0; i < controllers.length; i++) {
+                if(controllers[i] != null) {
+                    engine.steer(i, controllers[i].nextDirection(engine, i));
+                }
+            }
+            engine.tick();
+            if(engine.isGameOver()) {
+                finish(State.FINISHED);
+            }
+        } catch(RuntimeException e) {
+            failure = e;
+            finish(State.FAILED);
+        }
+    }
+
+    /**
+     * Tears the room down. The scheduler drops it on its next due tick.
+     */
+    public void close() {
+        if(state == State.RUNNING) {
+            state = State.CLOSED;
+        }
+    }
+
+    private void finish(State end) {
+        state = end;
+        if(onFinished != null) {
+            try {
+                onFinished.accept(this);
+            } catch(RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * @return The room's id, unique within its scheduler
+     */
+    public int getId() { return id; }
+
+    /**
+     * @return The room's engine; only safe to inspect once the room is no longer running
+     */
+    public GameEngine getEngine() { return engine; }
+
+    /**
+     * @return The number of scheduler ticks between two steps of this room
+     */
+    public int getTickInterval() { return tickInterval; }
+
+    /**
+     * @return The current lifecycle state
+     */
+    public State getState() { return state; }
+
+    /**
+     * @return The exception that failed the room, or null
+     */
+    public Throwable getFailure() { return failure; }
+}
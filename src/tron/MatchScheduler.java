@@ -0,0 +1,226 @@
+package tron;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Hosts many independent headless matches in one JVM.
+ *
+ * A single clock thread ticks at a fixed base period. Rooms are kept in a
+ * timing wheel indexed by the tick they are next due on, so finding the due
+ * rooms only touches one wheel slot. All rooms due on the same tick are split
+ * into one batch per worker thread and stepped in parallel; the clock waits
+ * for the batches before moving on, so a room is never stepped concurrently
+ * with itself and a slow tick delays the next one instead of overlapping it.
+ */
+public class MatchScheduler {
+    private static final int WHEEL_SIZE = 512;
+
+    private final int tickMillis;
+    private final int parallelism;
+    private final ExecutorService workers;
+    private final ScheduledExecutorService clock;
+    private final Queue<MatchRoom> incoming = new ConcurrentLinkedQueue<>();
+    private final Map<Integer, MatchRoom> rooms = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger(1);
+    @SuppressWarnings("unchecked")
+    private final List<List<MatchRoom>> wheel = new ArrayList<>(WHEEL_SIZE);
+    private long currentTick;
+    private volatile boolean running;
+
+    /**
+     * Creates a scheduler; call {@link #start()} to begin ticking.
+     *
+     * @param tickMillis The base tick period in milliseconds
+     * @param threads The number of worker threads stepping rooms
+     */
+    public MatchScheduler(int tickMillis, int threads) {
+        this.tickMillis = tickMillis;
+        this.parallelism = Math.max(1, threads);
+        this.workers = Executors.newFixedThreadPool(parallelism, daemonThreads("match-worker"));
+        this.clock = Executors.newSingleThreadScheduledExecutor(daemonThreads("match-clock"));
+        for(int i = 0; i < WHEEL_SIZE; i++) {
+            wheel.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Starts the clock thread.
+     */
+    public synchronized void start() {
+        if(running) return;
+        running = true;
+        clock.scheduleAtFixedRate(this::onClockTick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Hosts a new match between two controllers.
+     *
+     * @param level The level to play on
+     * @param p1Name Player 1's name
+     * @param p1 Controller for player 1
+     * @param p2Name Player 2's name
+     * @param p2 Controller for player 2
+     * @param roomTickMillis How often the match is stepped; rounded to a multiple of the base tick
+     * @param onFinished Called on a worker thread when the match ends or fails, may be null
+     * @return The new room
+     */
+    public MatchRoom host(Level level, String p1Name, Controller p1, String p2Name, Controller p2,
+                          int roomTickMillis, Consumer<MatchRoom> onFinished) {
+        if(!running) throw new IllegalStateException("Scheduler is not running");
+        GameEngine engine = new GameEngine(level, p1Name, Color.BLUE, p2Name, Color.RED);
+        int interval = Math.max(1, Math.round(roomTickMillis / (float)tickMillis));
+        MatchRoom room = new MatchRoom(nextId.getAndIncrement(), engine, new Controller[] {p1, p2}, interval,
+            finished -> {
+                rooms.remove(finished.getId());
+                if(onFinished != null) onFinished.accept(finished);
+            });
+        rooms.put(room.getId(), room);
+        incoming.add(room);
+        return room;
+    }
+
+    /**
+     * @return The number of rooms that have not finished, failed or been closed
+     */
+    public int getActiveRoomCount() {
+        return rooms.size();
+    }
+
+    /**
+     * Stops ticking, closes every remaining room and waits for the worker threads to finish.
+     *
+     * @param timeoutMillis How long to wait for an in-progress tick to complete
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void shutdown(long timeoutMillis) throws InterruptedException {
+        running = false;
+        clock.shutdown();
+        clock.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+        for(MatchRoom room : rooms.values()) {
+            room.close();
+        }
+        rooms.clear();
+        incoming.clear();
+        workers.shutdown();
+        workers.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void onClockTick() {
+        try {
+            currentTick++;
+            MatchRoom added;
+            while((added = incoming.poll()) != null) {
+                schedule(added, currentTick + added.getTickInterval());
+            }
+
+            List<MatchRoom> slot = wheel.get((int)(currentTick % WHEEL_SIZE));
+            List<MatchRoom> due = new ArrayList<>();
+            for(int i = slot.size() - 1; i >= 0; i--) {
+                MatchRoom room = slot.get(i);
+                if(room.getState() != MatchRoom.State.RUNNING) {
+                    removeAt(slot, i);
+                    rooms.remove(room.getId());
+                } else if(room.nextDueTick == currentTick) {
+                    removeAt(slot, i);
+                    due.add(room);
+                }
+            }
+            if(due.isEmpty()) return;
+
+            stepAll(due);
+            for(MatchRoom room : due) {
+                if(room.getState() == MatchRoom.State.RUNNING) {
+                    schedule(room, currentTick + room.getTickInterval());
+                } else {
+                    rooms.remove(room.getId());
+                }
+            }
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch(RuntimeException e) {
+            // Never let an exception cancel the periodic clock task
+            e.printStackTrace();
+        }
+    }
+
+    private void stepAll(List<MatchRoom> due) throws InterruptedException {
+        int batches = Math.min(parallelism, due.size());
+        if(batches == 1) {
+            for(MatchRoom room : due) room.step();
+            return;
+        }
+        List<Callable<Void>> tasks = new ArrayList<>(batches);
+        int size = (due.size() + batches - 1) / batches;
+        for(int start = 0; start < due.size(); start += size) {
+            List<MatchRoom> batch = due.subList(start, Math.min(due.size(), start + size));
+            tasks.add(() -> {
+                for(MatchRoom room : batch) room.step();
+                return null;
+            });
+        }
+        workers.invokeAll(tasks);
+    }
+
+    private void schedule(MatchRoom room, long tick) {
+        room.nextDueTick = tick;
+        wheel.get((int)(tick % WHEEL_SIZE)).add(room);
+    }
+
+    private static void removeAt(List<MatchRoom> list, int index) {
+        // Order within a slot does not matter, so swap with the last element
+        int last = list.size() - 1;
+        list.set(index, list.get(last));
+        list.remove(last);
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + "-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /**
+     * Runs a batch of bot-only matches headlessly and prints the results.
+     * Usage: {@code MatchScheduler [level] [rooms] [tickMillis]}
+     *
+     * @param args Optional level path, number of rooms and base tick period
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String levelPath = args.length > 0 ? args[0] : "levels/level1.txt";
+        int roomCount = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        int tickMillis = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        Level level = LevelLoader.loadLevel(levelPath);
+        MatchScheduler scheduler = new MatchScheduler(tickMillis, Runtime.getRuntime().availableProcessors());
+        scheduler.start();
+
+        CountDownLatch done = new CountDownLatch(roomCount);
+        Map<String, AtomicInteger> results = new ConcurrentHashMap<>();
+        long started = System.nanoTime();
+        for(int i = 0; i < roomCount; i++) {
+            scheduler.host(level, "BotA", new SurvivalBot(i * 2L), "BotB", new SurvivalBot(i * 2L + 1), tickMillis,
+                room -> {
+                    String key = room.getState() == MatchRoom.State.FAILED ? "Failed" : String.valueOf(room.getEngine().getResult());
+                    results.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+                    done.countDown();
+                });
+        }
+        done.await();
+        long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+        scheduler.shutdown(1000);
+
+        System.out.println(roomCount + " matches on " + level.getName() + " in " + elapsedMillis + " ms");
+        results.forEach((name, count) -> System.out.println("  " + name + ": " + count.get()));
+    }
+}
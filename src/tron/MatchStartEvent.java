@@ -0,0 +1,23 @@
+package tron;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event emitted when a new round starts.
+ */
+@Name("tron.MatchStart")
+@Label("Match Start")
+@Category("Tron")
+public class MatchStartEvent extends Event {
+    @Label("Level")
+    public String level;
+
+    @Label("Player 1")
+    public String player1;
+
+    @Label("Player 2")
+    public String player2;
+}
@@ -0,0 +1,515 @@
+package tron;
+
+import org.w3c.dom.Node;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Renders a {@link MatchRecording} offscreen into an animated GIF or a
+ * sequence of PNG images, without a display.
+ *
+ * Frames are drawn the way {@link GamePanel} draws them, with a
+ * {@link StatusBar} above an {@link ArenaRenderer} showing the whole board.
+ * Rendering and encoding run on two threads joined by bounded queues: the
+ * render thread replays the round and draws each frame into an image taken
+ * from a small pool, and the encode thread writes it out and hands the
+ * image back. The images are reused for the whole video, and a slow
+ * encoder holds the renderer back instead of letting frames pile up.
+ *
+ * GIF frames are reduced to one fixed palette through a lookup table, and
+ * only the rectangle around what changed since the previous frame is
+ * stored, so a frame costs about as much to encode as the players' moves
+ * cover rather than the whole board.
+ */
+public class MatchVideo {
+    private static final int STATUS_BAR_HEIGHT = 50;
+    private static final int PLAYER_CIRCLE_SIZE = 20;
+    private static final int DEFAULT_CELL_SIZE = 10;
+    private static final int MIN_CELL_SIZE = 6;
+    private static final int POOL_SIZE = 8;
+    // The final frame stays up for a while before the animation loops
+    private static final int END_HOLD_CENTIS = 300;
+
+    private final MatchRecording recording;
+    private final int cellSize;
+    private final int frameStep;
+
+    /**
+     * Creates a renderer for a recording.
+     *
+     * @param recording The round to render
+     * @param cellSize Size of a board cell in pixels, at least 6
+     * @param frameStep Number of ticks per frame; the last tick is always drawn
+     */
+    public MatchVideo(MatchRecording recording, int cellSize, int frameStep) {
+        this.recording = recording;
+        this.cellSize = Math.max(MIN_CELL_SIZE, cellSize);
+        this.frameStep = Math.max(1, frameStep);
+    }
+
+    /**
+     * Writes the round as an animated GIF that plays at the speed the round was played at.
+     *
+     * @param file The GIF file to write
+     * @return The number of frames written
+     * @throws IOException if the recording cannot be replayed or the file cannot be written
+     */
+    public int writeGif(Path file) throws IOException {
+        if(file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        return run(new GifSink(file));
+    }
+
+    /**
+     * Writes every frame of the round as a numbered PNG image.
+     *
+     * @param directory The directory to write the images to
+     * @return The number of frames written
+     * @throws IOException if the recording cannot be replayed or a file cannot be written
+     */
+    public int writePngs(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        return run(new PngSink(directory));
+    }
+
+    /**
+     * Runs the render and encode stages until the last frame is written.
+     * If either stage fails the other one is interrupted.
+     */
+    private int run(FrameSink sink) throws IOException {
+        GameEngine engine = recording.replay();
+        Level level = engine.getLevel();
+        int width = level.getWidth() * cellSize;
+        int height = STATUS_BAR_HEIGHT + level.getHeight() * cellSize;
+
+        BlockingQueue<Frame> free = new ArrayBlockingQueue<>(POOL_SIZE);
+        BlockingQueue<Frame> rendered = new ArrayBlockingQueue<>(POOL_SIZE);
+        for(int i = 0; i < POOL_SIZE; i++) {
+            free.add(new Frame(width, height));
+        }
+
+        ExecutorService stages = Executors.newFixedThreadPool(2, r -> {
+            Thread t = new Thread(r, "match-video");
+            t.setDaemon(true);
+            return t;
+        });
+        CompletionService<Integer> stopped = new ExecutorCompletionService<>(stages);
+        try {
+            Future<Integer> render = stopped.submit(() -> {
+                render(engine, free, rendered);
+                return 0;
+            });
+            Future<Integer> encode = stopped.submit(() -> encode(sink, rendered, free));
+            try {
+                // Whichever stage stops first is checked first, so a failure never waits on the other
+                stopped.take().get();
+                stopped.take().get();
+                return encode.get();
+            } catch(ExecutionException e) {
+                render.cancel(true);
+                encode.cancel(true);
+                Throwable cause = e.getCause();
+                if(cause instanceof IOException) throw (IOException)cause;
+                throw new IOException("Rendering the recording failed", cause);
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while rendering the recording", e);
+            }
+        } finally {
+            stages.shutdownNow();
+            for(Frame frame : free) {
+                frame.graphics.dispose();
+            }
+        }
+    }
+
+    /**
+     * Replays the round, drawing every {@code frameStep}th tick and the last one.
+     */
+    private void render(GameEngine engine, BlockingQueue<Frame> free, BlockingQueue<Frame> rendered)
+            throws InterruptedException {
+        Player p1 = engine.getPlayer(0);
+        Player p2 = engine.getPlayer(1);
+        ArenaRenderer renderer = new ArenaRenderer(engine.getLevel(), engine.getTrailGrid(), p1.getColor(), p2.getColor());
+        renderer.setRules(engine.getRules());
+        StatusBar statusBar = new StatusBar(STATUS_BAR_HEIGHT, PLAYER_CIRCLE_SIZE);
+        statusBar.setRound(engine.getTeamName(0), p1.getColor(), engine.getTeamName(1), p2.getColor(),
+            engine.getLevel().getName());
+
+        for(int tick = 0; ; tick++) {
+            boolean last = engine.isGameOver() || tick == recording.getTickCount();
+            if(last || tick % frameStep == 0) {
+                Frame frame = free.take();
+                Graphics2D g2d = frame.graphics;
+                g2d.setColor(Color.BLACK);
+                g2d.fillRect(0, 0, frame.width, frame.height);
+                statusBar.paint(g2d, frame.width, engine.getTickCount() * recording.getTickMillis());
+                renderer.paint(g2d, 0, STATUS_BAR_HEIGHT, frame.width, frame.height - STATUS_BAR_HEIGHT,
+                    engine.getPlayers());
+                frame.last = last;
+                rendered.put(frame);
+            }
+            if(last) return;
+            recording.steer(engine, tick);
+            engine.tick();
+        }
+    }
+
+    private int encode(FrameSink sink, BlockingQueue<Frame> rendered, BlockingQueue<Frame> free)
+            throws IOException, InterruptedException {
+        int count = 0;
+        try {
+            while(true) {
+                Frame frame = rendered.take();
+                sink.write(frame, frame.last ? END_HOLD_CENTIS : recording.getTickMillis() * frameStep / 10);
+                count++;
+                boolean last = frame.last;
+                free.put(frame);
+                if(last) return count;
+            }
+        } finally {
+            sink.close();
+        }
+    }
+
+    /**
+     * An image in the frame pool, with its pixels and a graphics context
+     * that are kept for the whole video.
+     */
+    private static final class Frame {
+        final int width;
+        final int height;
+        final BufferedImage image;
+        final int[] pixels;
+        final Graphics2D graphics;
+        boolean last;
+
+        Frame(int width, int height) {
+            this.width = width;
+            this.height = height;
+            this.image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            this.pixels = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+            this.graphics = image.createGraphics();
+        }
+    }
+
+    /**
+     * The encode stage's output. Called on the encode thread only.
+     */
+    private interface FrameSink {
+        void write(Frame frame, int delayCentis) throws IOException;
+
+        void close() throws IOException;
+    }
+
+    /**
+     * Writes numbered PNG images.
+     */
+    private static final class PngSink implements FrameSink {
+        private final Path directory;
+        private int index;
+
+        PngSink(Path directory) {
+            this.directory = directory;
+        }
+
+        @Override
+        public void write(Frame frame, int delayCentis) throws IOException {
+            Path file = directory.resolve(String.format("frame-%05d.png", index++));
+            if(!ImageIO.write(frame.image, "png", file.toFile())) {
+                throw new IOException("No PNG writer available");
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Writes an animated GIF. Frames are mapped onto a palette made of the
+     * first frame's most common colors and an even spread of the rest, then
+     * compared with the previous frame; only the changed rectangle is
+     * written, drawn over what is already shown, with the pixels in it
+     * that did not change left transparent.
+     */
+    private static final class GifSink implements FrameSink {
+        private static final String STREAM_FORMAT = "javax_imageio_gif_stream_1.0";
+        private static final String FORMAT = "javax_imageio_gif_image_1.0";
+        // Colors are looked up by their top 6 bits per channel
+        private static final int LOOKUP_BITS = 6;
+        private static final int CUBE_LEVELS = 6;
+        // The last palette entry is kept free to mark pixels that stay as they were
+        private static final byte TRANSPARENT = (byte)255;
+        private static final int[] BAND_OFFSETS = {0};
+
+        private final Path file;
+        private ImageWriter writer;
+        private ImageOutputStream out;
+        private IndexColorModel palette;
+        private ImageTypeSpecifier imageType;
+        private byte[] lookup;
+        // The colors shown so far, and the palette indices of the region being written
+        private int[] shown;
+        private byte[] indices;
+        private boolean first = true;
+
+        GifSink(Path file) {
+            this.file = file;
+        }
+
+        @Override
+        public void write(Frame frame, int delayCentis) throws IOException {
+            if(first) open(frame);
+            int[] pixels = frame.pixels;
+            int width = frame.width;
+            int minX = 0;
+            int minY = 0;
+            int maxX = width - 1;
+            int maxY = frame.height - 1;
+            if(!first) {
+                // Most rows have not changed, and comparing them is far cheaper than mapping their colors
+                minX = width;
+                maxX = -1;
+                minY = -1;
+                for(int y = 0, row = 0; y < frame.height; y++, row += width) {
+                    int from = Arrays.mismatch(pixels, row, row + width, shown, row, row + width);
+                    if(from < 0) continue;
+                    int to = width - 1;
+                    while(pixels[row + to] == shown[row + to]) to--;
+                    if(from < minX) minX = from;
+                    if(to > maxX) maxX = to;
+                    if(minY < 0) minY = y;
+                    maxY = y;
+                }
+                if(maxX < 0) {
+                    // Nothing changed; a single pixel carries the frame's delay
+                    minX = maxX = 0;
+                    minY = maxY = 0;
+                }
+            }
+            int w = maxX - minX + 1;
+            int h = maxY - minY + 1;
+            int shift = 8 - LOOKUP_BITS;
+            int mask = (1 << LOOKUP_BITS) - 1;
+            // Pixels that have not changed are left transparent, which LZW packs into long runs
+            for(int y = minY, row = minY * width, j = 0; y <= maxY; y++, row += width) {
+                for(int i = row + minX; i <= row + maxX; i++, j++) {
+                    int rgb = pixels[i];
+                    indices[j] = rgb == shown[i] && !first ? TRANSPARENT
+                        : lookup[((rgb >> (16 + shift) & mask) << 2 * LOOKUP_BITS)
+                            | ((rgb >> (8 + shift) & mask) << LOOKUP_BITS) | (rgb >> shift & mask)];
+                }
+                System.arraycopy(pixels, row + minX, shown, row + minX, w);
+            }
+            WritableRaster raster = Raster.createInterleavedRaster(new DataBufferByte(indices, w * h), w, h, w, 1,
+                BAND_OFFSETS, null);
+            BufferedImage region = new BufferedImage(palette, raster, false, null);
+            writer.writeToSequence(new IIOImage(region, null, metadata(minX, minY, w, h, delayCentis)), null);
+            first = false;
+        }
+
+        private void open(Frame frame) throws IOException {
+            palette = palette(frame);
+            // Built from the palette itself: the specifier for a plain indexed image has a default palette
+            imageType = new ImageTypeSpecifier(palette, palette.createCompatibleSampleModel(1, 1));
+            indices = new byte[frame.pixels.length];
+            shown = new int[frame.pixels.length];
+            writer = ImageIO.getImageWritersByFormatName("gif").next();
+            Files.deleteIfExists(file);
+            out = ImageIO.createImageOutputStream(file.toFile());
+            writer.setOutput(out);
+            writer.prepareWriteSequence(streamMetadata(frame));
+        }
+
+        /**
+         * Describes the whole animation, with the palette as the global
+         * color table so that frames do not each carry a copy of it.
+         */
+        private IIOMetadata streamMetadata(Frame frame) throws IOException {
+            IIOMetadata metadata = writer.getDefaultStreamMetadata(null);
+            IIOMetadataNode root = new IIOMetadataNode(STREAM_FORMAT);
+
+            IIOMetadataNode screen = new IIOMetadataNode("LogicalScreenDescriptor");
+            screen.setAttribute("logicalScreenWidth", Integer.toString(frame.width));
+            screen.setAttribute("logicalScreenHeight", Integer.toString(frame.height));
+            screen.setAttribute("colorResolution", "8");
+            screen.setAttribute("pixelAspectRatio", "0");
+            root.appendChild(screen);
+
+            IIOMetadataNode table = new IIOMetadataNode("GlobalColorTable");
+            table.setAttribute("sizeOfGlobalColorTable", Integer.toString(palette.getMapSize()));
+            table.setAttribute("backgroundColorIndex", "0");
+            table.setAttribute("sortFlag", "FALSE");
+            for(int i = 0; i < palette.getMapSize(); i++) {
+                IIOMetadataNode entry = new IIOMetadataNode("ColorTableEntry");
+                entry.setAttribute("index", Integer.toString(i));
+                entry.setAttribute("red", Integer.toString(palette.getRed(i)));
+                entry.setAttribute("green", Integer.toString(palette.getGreen(i)));
+                entry.setAttribute("blue", Integer.toString(palette.getBlue(i)));
+                table.appendChild(entry);
+            }
+            root.appendChild(table);
+            metadata.mergeTree(STREAM_FORMAT, (Node)root);
+            return metadata;
+        }
+
+        private IIOMetadata metadata(int x, int y, int w, int h, int delayCentis)
+                throws IOException {
+            IIOMetadata metadata = writer.getDefaultImageMetadata(imageType, null);
+            IIOMetadataNode root = new IIOMetadataNode(FORMAT);
+
+            IIOMetadataNode descriptor = new IIOMetadataNode("ImageDescriptor");
+            descriptor.setAttribute("imageLeftPosition", Integer.toString(x));
+            descriptor.setAttribute("imageTopPosition", Integer.toString(y));
+            descriptor.setAttribute("imageWidth", Integer.toString(w));
+            descriptor.setAttribute("imageHeight", Integer.toString(h));
+            descriptor.setAttribute("interlaceFlag", "FALSE");
+            root.appendChild(descriptor);
+
+            IIOMetadataNode control = new IIOMetadataNode("GraphicControlExtension");
+            control.setAttribute("disposalMethod", "doNotDispose");
+            control.setAttribute("userInputFlag", "FALSE");
+            control.setAttribute("transparentColorFlag", "TRUE");
+            control.setAttribute("delayTime", Integer.toString(Math.max(2, delayCentis)));
+            control.setAttribute("transparentColorIndex", Integer.toString(TRANSPARENT & 0xFF));
+            root.appendChild(control);
+
+            if(first) {
+                // Loop forever
+                IIOMetadataNode extensions = new IIOMetadataNode("ApplicationExtensions");
+                IIOMetadataNode loop = new IIOMetadataNode("ApplicationExtension");
+                loop.setAttribute("applicationID", "NETSCAPE");
+                loop.setAttribute("authenticationCode", "2.0");
+                loop.setUserObject(new byte[] {1, 0, 0});
+                extensions.appendChild(loop);
+                root.appendChild(extensions);
+            }
+            metadata.mergeTree(FORMAT, (Node)root);
+            return metadata;
+        }
+
+        /**
+         * Builds the palette and the table that maps each color to its
+         * nearest palette entry. The cube of evenly spread colors covers
+         * anything drawn later, such as pickups and glows.
+         */
+        private IndexColorModel palette(Frame frame) {
+            int cubeSize = CUBE_LEVELS * CUBE_LEVELS * CUBE_LEVELS;
+            int[] colors = new int[256];
+            for(int i = 0; i < cubeSize; i++) {
+                int r = i / (CUBE_LEVELS * CUBE_LEVELS) * 255 / (CUBE_LEVELS - 1);
+                int g = i / CUBE_LEVELS % CUBE_LEVELS * 255 / (CUBE_LEVELS - 1);
+                int b = i % CUBE_LEVELS * 255 / (CUBE_LEVELS - 1);
+                colors[i] = r << 16 | g << 8 | b;
+            }
+            Map<Integer, int[]> counts = new HashMap<>();
+            for(int rgb : frame.pixels) {
+                counts.computeIfAbsent(rgb & 0xFFFFFF, k -> new int[1])[0]++;
+            }
+            int size = cubeSize;
+            while(size < (TRANSPARENT & 0xFF) && !counts.isEmpty()) {
+                Map.Entry<Integer, int[]> common = null;
+                for(Map.Entry<Integer, int[]> entry : counts.entrySet()) {
+                    if(common == null || entry.getValue()[0] > common.getValue()[0]) common = entry;
+                }
+                counts.remove(common.getKey());
+                colors[size++] = common.getKey();
+            }
+
+            int levels = 1 << LOOKUP_BITS;
+            lookup = new byte[levels * levels * levels];
+            for(int i = 0; i < lookup.length; i++) {
+                int r = scaleUp(i >> 2 * LOOKUP_BITS);
+                int g = scaleUp(i >> LOOKUP_BITS & (levels - 1));
+                int b = scaleUp(i & (levels - 1));
+                int best = 0;
+                int bestDistance = Integer.MAX_VALUE;
+                for(int c = 0; c < size; c++) {
+                    int dr = (colors[c] >> 16 & 0xFF) - r;
+                    int dg = (colors[c] >> 8 & 0xFF) - g;
+                    int db = (colors[c] & 0xFF) - b;
+                    int distance = dr * dr * 3 + dg * dg * 4 + db * db * 2;
+                    if(distance < bestDistance) {
+                        bestDistance = distance;
+                        best = c;
+                    }
+                }
+                lookup[i] = (byte)best;
+            }
+            return new IndexColorModel(8, 256, colors, 0, false, -1, DataBuffer.TYPE_BYTE);
+        }
+
+        private static int scaleUp(int value) {
+            return value << (8 - LOOKUP_BITS) | value >> (2 * LOOKUP_BITS - 8);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if(writer == null) return;
+            try {
+                writer.endWriteSequence();
+            } finally {
+                writer.dispose();
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Renders a recording from the command line.
+     * Usage: {@code MatchVideo <recording> <out.gif|directory> [cellSize] [frameStep]}
+     *
+     * @param args Recording file, output GIF file or PNG directory, cell size in pixels and ticks per frame
+     */
+    public static void main(String[] args) throws IOException {
+        if(args.length < 2) {
+            System.err.println("Usage: MatchVideo <recording> <out.gif|directory> [cellSize] [frameStep]");
+            System.exit(2);
+        }
+        System.setProperty("java.awt.headless", "true");
+        MatchRecording recording = MatchRecording.load(Paths.get(args[0]));
+        Path output = Paths.get(args[1]);
+        int cellSize = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_CELL_SIZE;
+        int frameStep = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+
+        MatchVideo video = new MatchVideo(recording, cellSize, frameStep);
+        long start = System.nanoTime();
+        boolean gif = output.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".gif");
+        int frames = gif ? video.writeGif(output) : video.writePngs(output);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d ticks, %d frames written to %s in %.2f s (%.0f frames/s)%n",
+            recording.getTickCount(), frames, output, seconds, frames / seconds);
+    }
+}
@@ -0,0 +1,465 @@
+package tron;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Pairs queued players, humans or bots behind a {@link Controller}, by
+ * {@link EloRating} and preferred level, and hosts their matches on a
+ * {@link MatchScheduler}.
+ *
+ * Each level has its own pool of waiting players, kept in a
+ * {@link TreeMap} of rating buckets {@value #BUCKET_WIDTH} points wide
+ * with the players in each bucket in the order they joined. An opponent
+ * is searched for in the nearest buckets first, stopping at the first
+ * bucket that cannot hold anyone nearer than the best match found and
+ * never going further than the widest rating window, so a search only
+ * looks at the players in a bounded rating range rather than the whole
+ * queue.
+ *
+ * A player is first offered opponents within {@value #INITIAL_WINDOW}
+ * points. The window widens the longer they wait, up to
+ * {@value #MAX_WINDOW} points; two players are paired when either one's
+ * window covers the other. A new player is paired as soon as they join if
+ * someone suitable is waiting, and the queue is swept periodically for
+ * players whose windows have widened enough. Anyone still waiting after
+ * {@value #BOT_AFTER_SECONDS} seconds is given a {@link SurvivalBot}.
+ */
+public class Matchmaker {
+    /** Width of a rating bucket in rating points. */
+    public static final int BUCKET_WIDTH = 25;
+    /** Rating difference a player accepts when they join. */
+    public static final int INITIAL_WINDOW = 50;
+    /** Largest rating difference a player accepts, however long they have waited. */
+    public static final int MAX_WINDOW = 400;
+    /** Rating points the window widens by per second of waiting. */
+    public static final int WINDOW_GROWTH_PER_SECOND = 10;
+    /** Seconds after which a waiting player is matched against a bot. */
+    public static final int BOT_AFTER_SECONDS = 60;
+
+    private static final String BOT_NAME = "Survival Bot";
+    private static final int SWEEP_MILLIS = 500;
+
+    private final MatchScheduler scheduler;
+    private final int roomTickMillis;
+    private final ScheduledExecutorService sweeper;
+    private final Map<String, TreeMap<Integer, LinkedHashSet<Ticket>>> pools = new HashMap<>();
+    private int queued;
+    private volatile boolean closed;
+
+    /**
+     * Creates a matchmaker; call {@link #start()} to begin sweeping the queue.
+     *
+     * @param scheduler The running scheduler that hosts the matches
+     * @param roomTickMillis How often each match is stepped
+     */
+    public Matchmaker(MatchScheduler scheduler, int roomTickMillis) {
+        this.scheduler = scheduler;
+        this.roomTickMillis = roomTickMillis;
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "matchmaker");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Starts sweeping the queue for players whose rating windows have widened.
+     */
+    public void start() {
+        sweeper.scheduleWithFixedDelay(this::sweep, SWEEP_MILLIS, SWEEP_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops sweeping the queue and starting matches. Players still waiting
+     * are not matched, and players paired from now on are told their match
+     * could not be started.
+     */
+    public void shutdown() {
+        closed = true;
+        sweeper.shutdownNow();
+    }
+
+    /**
+     * Queues a player, pairing them at once if a suitable opponent is waiting.
+     *
+     * @param name The player's name
+     * @param controller Steers the player once matched
+     * @param rating The player's rating
+     * @param levelPath Path to the level file the player wants to play
+     * @param onFinished Called on a scheduler thread when the player's match ends or could not be started
+     * @return The player's place in the queue
+     */
+    public Ticket enqueue(String name, Controller controller, double rating, String levelPath,
+                          Consumer<Ticket> onFinished) {
+        Ticket ticket = new Ticket(name, controller, rating, levelPath, onFinished, System.nanoTime());
+        Ticket opponent;
+        synchronized(this) {
+            TreeMap<Integer, LinkedHashSet<Ticket>> pool = pools.get(levelPath);
+            if(pool == null) {
+                pool = new TreeMap<>();
+                pools.put(levelPath, pool);
+                LevelCache.prefetch(levelPath);
+            }
+            opponent = findOpponent(pool, ticket, ticket.joinedNanos);
+            if(opponent != null) {
+                remove(pool, opponent);
+            } else {
+                add(pool, ticket);
+            }
+        }
+        if(opponent != null) startMatch(opponent, ticket);
+        return ticket;
+    }
+
+    /**
+     * Takes a player out of the queue.
+     *
+     * @param ticket The player's place in the queue
+     * @return true if the player was still waiting
+     */
+    public synchronized boolean cancel(Ticket ticket) {
+        TreeMap<Integer, LinkedHashSet<Ticket>> pool = pools.get(ticket.levelPath);
+        LinkedHashSet<Ticket> bucket = pool == null ? null : pool.get(ticket.bucket);
+        if(bucket == null || !bucket.contains(ticket)) return false;
+        remove(pool, ticket);
+        return true;
+    }
+
+    /**
+     * @return The number of players waiting for an opponent
+     */
+    public synchronized int getQueuedCount() {
+        return queued;
+    }
+
+    /**
+     * Finds the waiting player nearest in rating whose window or the
+     * given player's covers the difference. Every player of a visited
+     * bucket is considered, since an older player further away may accept
+     * a gap that a newer one nearby does not; among equally near players
+     * the one who joined first wins.
+     */
+    private Ticket findOpponent(TreeMap<Integer, LinkedHashSet<Ticket>> pool, Ticket ticket, long now) {
+        Ticket best = null;
+        double bestGap = MAX_WINDOW;
+        double window = ticket.window(now);
+        Integer below = pool.floorKey(ticket.bucket);
+        Integer above = pool.higherKey(ticket.bucket);
+        while(below != null || above != null) {
+            double belowGap = below == null ? Double.MAX_VALUE
+                : Math.max(0, ticket.rating - (below + 1) * (double)BUCKET_WIDTH);
+            double aboveGap = above == null ? Double.MAX_VALUE : above * (double)BUCKET_WIDTH - ticket.rating;
+            boolean down = belowGap <= aboveGap;
+            // Buckets are visited nearest first, so once one is too far all the rest are
+            if((down ? belowGap : aboveGap) > bestGap) break;
+            for(Ticket candidate : pool.get(down ? below : above)) {
+                double gap = Math.abs(candidate.rating - ticket.rating);
+                if(candidate != ticket && (best == null ? gap <= bestGap : gap < bestGap)
+                        && gap <= Math.max(candidate.window(now), window)) {
+                    best = candidate;
+                    bestGap = gap;
+                }
+            }
+            if(down) {
+                below = pool.lowerKey(below);
+            } else {
+                above = pool.higherKey(above);
+            }
+        }
+        return best;
+    }
+
+    private void add(TreeMap<Integer, LinkedHashSet<Ticket>> pool, Ticket ticket) {
+        pool.computeIfAbsent(ticket.bucket, k -> new LinkedHashSet<>()).add(ticket);
+        queued++;
+    }
+
+    private void remove(TreeMap<Integer, LinkedHashSet<Ticket>> pool, Ticket ticket) {
+        LinkedHashSet<Ticket> bucket = pool.get(ticket.bucket);
+        bucket.remove(ticket);
+        // Empty buckets are dropped so that searches only step through occupied ones
+        if(bucket.isEmpty()) pool.remove(ticket.bucket);
+        queued--;
+    }
+
+    /**
+     * Pairs the longest waiting player of every bucket whose window now
+     * reaches an opponent, and gives a bot to those who have waited too long.
+     * Each bucket's search only looks at the players within the widest
+     * window of it.
+     */
+    private void sweep() {
+        try {
+            List<Ticket> pairs = new ArrayList<>();
+            long now = System.nanoTime();
+            long botAfter = TimeUnit.SECONDS.toNanos(BOT_AFTER_SECONDS);
+            synchronized(this) {
+                for(TreeMap<Integer, LinkedHashSet<Ticket>> pool : pools.values()) {
+                    Integer key = pool.isEmpty() ? null : pool.firstKey();
+                    while(key != null) {
+                        LinkedHashSet<Ticket> bucket;
+                        while((bucket = pool.get(key)) != null) {
+                            Ticket oldest = bucket.iterator().next();
+                            Ticket opponent = findOpponent(pool, oldest, now);
+                            if(opponent == null && now - oldest.joinedNanos < botAfter) break;
+                            remove(pool, oldest);
+                            if(opponent != null) remove(pool, opponent);
+                            pairs.add(oldest);
+                            pairs.add(opponent);
+                        }
+                        key = pool.higherKey(key);
+                    }
+                }
+            }
+            for(int i = 0; i < pairs.size(); i += 2) {
+                startMatch(pairs.get(i), pairs.get(i + 1));
+            }
+        } catch(RuntimeException e) {
+            // Never let an exception cancel the periodic sweep
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Hosts a match once its level is loaded.
+     *
+     * @param first The player who waited longer, playing as player 1
+     * @param second The opponent, or null for a bot
+     */
+    private void startMatch(Ticket first, Ticket second) {
+        long now = System.nanoTime();
+        first.matched(second == null ? first.rating : second.rating, now);
+        if(second != null) second.matched(first.rating, now);
+        Controller opponent = second == null ? new SurvivalBot() : second.controller;
+        String opponentName = second == null ? BOT_NAME : second.name;
+        LevelCache.get(first.levelPath).whenComplete((level, error) -> {
+            if(closed) {
+                first.finish(null, 0);
+                if(second != null) second.finish(null, 1);
+                return;
+            }
+            if(error == null) {
+                try {
+                    scheduler.host(level, first.name, first.controller, opponentName, opponent, roomTickMillis,
+                        room -> {
+                            first.finish(room, 0);
+                            if(second != null) second.finish(room, 1);
+                        });
+                    return;
+                } catch(RuntimeException e) {
+                    error = e;
+                }
+            }
+            error.printStackTrace();
+            first.finish(null, 0);
+            if(second != null) second.finish(null, 1);
+        });
+    }
+
+    /**
+     * A player's place in the queue and, once matched, their match.
+     */
+    public static final class Ticket {
+        /** The player's name. */
+        public final String name;
+        /** The player's rating when they joined the queue. */
+        public final double rating;
+        /** Path to the level file the player wants to play. */
+        public final String levelPath;
+        private final Controller controller;
+        private final Consumer<Ticket> onFinished;
+        private final long joinedNanos;
+        private final int bucket;
+        private volatile double opponentRating;
+        private volatile long matchedNanos;
+        private volatile MatchRoom room;
+        private volatile int playerIndex;
+
+        Ticket(String name, Controller controller, double rating, String levelPath, Consumer<Ticket> onFinished,
+               long joinedNanos) {
+            this.name = name;
+            this.controller = controller;
+            this.rating = rating;
+            this.levelPath = levelPath;
+            this.onFinished = onFinished;
+            this.joinedNanos = joinedNanos;
+            this.bucket = (int)Math.floor(rating / BUCKET_WIDTH);
+        }
+
+        private double window(long now) {
+            double waited = (now - joinedNanos) / 1e9;
+            return Math.min(MAX_WINDOW, INITIAL_WINDOW + waited * WINDOW_GROWTH_PER_SECOND);
+        }
+
+        private void matched(double opponentRating, long now) {
+            this.opponentRating = opponentRating;
+            this.matchedNanos = now;
+        }
+
+        private void finish(MatchRoom room, int playerIndex) {
+            this.room = room;
+            this.playerIndex = playerIndex;
+            if(onFinished != null) onFinished.accept(this);
+        }
+
+        /**
+         * @return The opponent's rating, or the player's own against a bot; 0 until matched
+         */
+        public double getOpponentRating() { return opponentRating; }
+
+        /**
+         * @return Time spent in the queue in nanoseconds, or 0 until matched
+         */
+        public long getWaitNanos() { return matchedNanos == 0 ? 0 : matchedNanos - joinedNanos; }
+
+        /**
+         * @return The finished match, or null if it could not be started
+         */
+        public MatchRoom getRoom() { return room; }
+
+        /**
+         * @return The player's 0-based index in the match
+         */
+        public int getPlayerIndex() { return playerIndex; }
+
+        /**
+         * @return 1 for a win, 0.5 for a draw, 0 for a loss, or -1 if the match did not finish
+         */
+        public double getScore() {
+            MatchRoom finished = room;
+            if(finished == null || finished.getState() != MatchRoom.State.FINISHED) return -1;
+            MatchResult result = finished.getEngine().getResult();
+            if(result.isDraw()) return 0.5;
+            return result.getWinningTeam() == playerIndex ? 1 : 0;
+        }
+    }
+
+    /**
+     * Simulates a population of bot players queueing for matches and
+     * prints how the matchmaker coped. Every player joins at once with a
+     * random rating and preferred level; after each match their rating is
+     * updated and they join again.
+     * Usage: {@code Matchmaker [players] [seconds] [tickMillis]}
+     *
+     * @param args Optional number of players, seconds to run for and the matches' tick period
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int playerCount = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        int tickMillis = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+        List<String> levels = LevelCatalog.levels().join();
+        if(levels.isEmpty()) {
+            System.err.println("No levels found");
+            System.exit(1);
+        }
+        MatchScheduler scheduler = new MatchScheduler(tickMillis, Runtime.getRuntime().availableProcessors());
+        scheduler.start();
+        Matchmaker matchmaker = new Matchmaker(scheduler, tickMillis);
+        matchmaker.start();
+        LoadGenerator load = new LoadGenerator(matchmaker);
+
+        SplittableRandom random = new SplittableRandom(42);
+        List<SimulatedPlayer> players = new ArrayList<>(playerCount);
+        for(int i = 0; i < playerCount; i++) {
+            // Box-Muller, for ratings spread like a real population's
+            double gaussian = Math.sqrt(-2 * Math.log(1 - random.nextDouble())) * Math.cos(2 * Math.PI * random.nextDouble());
+            players.add(new SimulatedPlayer("Sim" + i, EloRating.INITIAL_RATING + gaussian * 300,
+                levels.get(random.nextInt(levels.size()))));
+        }
+        long started = System.nanoTime();
+        for(SimulatedPlayer player : players) {
+            load.join(player);
+        }
+        System.out.printf("%d players joined in %d ms, %d left waiting%n", playerCount,
+            (System.nanoTime() - started) / 1_000_000, matchmaker.getQueuedCount());
+
+        Thread.sleep(seconds * 1000L);
+        load.running = false;
+        matchmaker.shutdown();
+        scheduler.shutdown(1000);
+
+        long made = load.matches.get();
+        System.out.printf("%d matches on %d levels in %d s (%d against bots), %d players waiting%n",
+            made, levels.size(), seconds, load.botMatches.get(), matchmaker.getQueuedCount());
+        System.out.printf("enqueue p50 %.1f us, p99 %.1f us, max %.1f us%n",
+            load.joins.getP50Micros(), load.joins.getP99Micros(), load.joins.getMaxMicros());
+        System.out.printf("wait p50 %.1f ms, p99 %.1f ms, mean rating gap %.1f%n", load.waits.getP50Micros() / 1000,
+            load.waits.getP99Micros() / 1000, made == 0 ? 0.0 : (double)load.ratingGap.get() / made);
+    }
+
+    /**
+     * A player of the load generator, steered by a {@link SurvivalBot}.
+     */
+    private static final class SimulatedPlayer {
+        final String name;
+        final String level;
+        double rating;
+        int games;
+
+        SimulatedPlayer(String name, double rating, String level) {
+            this.name = name;
+            this.rating = rating;
+            this.level = level;
+        }
+    }
+
+    /**
+     * Queues simulated players, requeues them after each match and counts
+     * what happened. Matches end on scheduler threads, so the counters are atomic.
+     */
+    private static final class LoadGenerator {
+        final Matchmaker matchmaker;
+        final LatencyHistogram joins = new LatencyHistogram("enqueue");
+        final LatencyHistogram waits = new LatencyHistogram("wait");
+        final AtomicLong matches = new AtomicLong();
+        final AtomicLong botMatches = new AtomicLong();
+        final AtomicLong ratingGap = new AtomicLong();
+        volatile boolean running = true;
+
+        LoadGenerator(Matchmaker matchmaker) {
+            this.matchmaker = matchmaker;
+        }
+
+        void join(SimulatedPlayer player) {
+            double rating;
+            synchronized(player) {
+                rating = player.rating;
+            }
+            long start = System.nanoTime();
+            matchmaker.enqueue(player.name, new SurvivalBot(start), rating, player.level,
+                ticket -> finished(player, ticket));
+            joins.record(System.nanoTime() - start);
+        }
+
+        void finished(SimulatedPlayer player, Ticket ticket) {
+            double score = ticket.getScore();
+            synchronized(player) {
+                if(score >= 0) {
+                    player.rating = EloRating.update(player.rating, player.games, ticket.getOpponentRating(), score);
+                    player.games++;
+                }
+            }
+            if(!running) return;
+            waits.record(ticket.getWaitNanos());
+            if(ticket.getPlayerIndex() == 0) {
+                matches.incrementAndGet();
+                ratingGap.addAndGet(Math.round(Math.abs(ticket.rating - ticket.getOpponentRating())));
+                MatchRoom room = ticket.getRoom();
+                if(room != null && BOT_NAME.equals(room.getEngine().getPlayer(1).getName())) botMatches.incrementAndGet();
+            }
+            join(player);
+        }
+    }
+}
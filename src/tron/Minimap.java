@@ -0,0 +1,129 @@
+package tron;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * Downsampled overview of the whole arena.
+ * Each minimap pixel covers a square block of cells. The image is built
+ * from the level walls once per round and then patched one pixel at a time
+ * as trail cells change, so keeping it current costs nothing per frame.
+ */
+public class Minimap {
+    private static final int MAX_SIZE = 160;
+    private static final Color FLOOR = new Color(40, 40, 40);
+    private static final Color WALL = Color.GRAY;
+
+    private final Level level;
+    private final TrailGrid grid;
+    private final int[] ownerRgb;
+    private final int scale;
+    private final BufferedImage image;
+
+    /**
+     * Builds the minimap for a round.
+     *
+     * @param level The level being played
+     * @param grid The trail grid to mirror
+     * @param colors The player colors; player {@code n} uses {@code colors[n - 1]}
+     */
+    public Minimap(Level level, TrailGrid grid, Color... colors) {
+        this.level = level;
+        this.grid = grid;
+        this.ownerRgb = new int[colors.length + 1];
+        for(int i = 0; i < colors.length; i++) {
+            ownerRgb[i + 1] = colors[i].getRGB();
+        }
+        int largest = Math.max(level.getWidth(), level.getHeight());
+        this.scale = Math.max(1, (largest + MAX_SIZE - 1) / MAX_SIZE);
+        this.image = new BufferedImage(
+            (level.getWidth() + scale - 1) / scale,
+            (level.getHeight() + scale - 1) / scale,
+            BufferedImage.TYPE_INT_RGB
+        );
+        refreshAll();
+    }
+
+    /**
+     * @return The number of cells covered by one minimap pixel along each axis
+     */
+    public int getScale() {
+        return scale;
+    }
+
+    /**
+     * @return The width of the minimap in pixels
+     */
+    public int getWidth() {
+        return image.getWidth();
+    }
+
+    /**
+     * @return The height of the minimap in pixels
+     */
+    public int getHeight() {
+        return image.getHeight();
+    }
+
+    /**
+     * Updates the pixel covering a changed cell.
+     *
+     * @param x X-coordinate of the changed cell
+     * @param y Y-coordinate of the changed cell
+     */
+    public void cellChanged(int x, int y) {
+        int owner = grid.getOwner(x, y);
+        if(owner != TrailGrid.EMPTY) {
+            image.setRGB(x / scale, y / scale, ownerRgb[owner]);
+        } else {
+            refreshPixel(x / scale, y / scale);
+        }
+    }
+
+    /**
+     * Recomputes every pixel from the level and the trail grid.
+     */
+    public void refreshAll() {
+        for(int my = 0; my < image.getHeight(); my++) {
+            for(int mx = 0; mx < image.getWidth(); mx++) {
+                refreshPixel(mx, my);
+            }
+        }
+    }
+
+    /**
+     * Draws the minimap with an outline of the visible part of the arena.
+     *
+     * @param g2d The graphics context to draw on
+     * @param x Left edge of the minimap
+     * @param y Top edge of the minimap
+     * @param visible The visible cells, in cell coordinates
+     */
+    public void paint(Graphics2D g2d, int x, int y, Rectangle visible) {
+        g2d.drawImage(image, x, y, null);
+        g2d.setColor(Color.WHITE);
+        g2d.drawRect(x - 1, y - 1, image.getWidth() + 1, image.getHeight() + 1);
+        g2d.setColor(Color.YELLOW);
+        g2d.drawRect(x + visible.x / scale, y + visible.y / scale,
+            Math.max(1, visible.width / scale), Math.max(1, visible.height / scale));
+    }
+
+    private void refreshPixel(int mx, int my) {
+        int rgb = FLOOR.getRGB();
+        int endX = Math.min(level.getWidth(), (mx + 1) * scale);
+        int endY = Math.min(level.getHeight(), (my + 1) * scale);
+        for(int cy = my * scale; cy < endY; cy++) {
+            for(int cx = mx * scale; cx < endX; cx++) {
+                int owner = grid.getOwner(cx, cy);
+                if(owner != TrailGrid.EMPTY) {
+                    image.setRGB(mx, my, ownerRgb[owner]);
+                    return;
+                }
+                if(level.isWall(cx, cy)) {
+                    rgb = WALL.getRGB();
+                }
+            }
+        }
+        image.setRGB(mx, my, rgb);
+    }
+}
@@ -5,7 +5,7 @@ import java.awt.Point;
 
 /**
  * Represents a player in the Tron light-cycle game.
- * Maintains the player's state including position, direction, color, and name.
+ * Maintains the player's state including position, direction, color, name and team.
  */
 public class Player {
     private String name;
@@ -13,6 +13,7 @@ public class Player {
     private Point position;
     private Point previousPosition;
     private Direction direction;
+    private final int team;
 
     /**
      * Creates a new player with specified attributes.
@@ -21,13 +22,15 @@ public class Player {
      * @param color The color of the player's light-cycle and trail
      * @param start The initial position on the game board
      * @param dir The initial direction of movement
+     * @param team 0-based index of the player's team
      */
-    public Player(String name, Color color, Point start, Direction dir) {
+    public Player(String name, Color color, Point start, Direction dir, int team) {
         this.name = name;
         this.color = color;
         this.position = start;
         this.previousPosition = new Point(start);
         this.direction = dir;
+        this.team = team;
     }
 
     /**
@@ -40,6 +43,11 @@ public class Player {
      */
     public Color getColor() { return color; }
 
+    /**
+     * @return 0-based index of the player's team, which also owns the player's trail
+     */
+    public int getTeam() { return team; }
+
     /**
      * @return The current position on the game board
      */
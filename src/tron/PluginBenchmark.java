@@ -0,0 +1,212 @@
+package tron;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Checks the installed {@link Plugins} against the contract of
+ * {@link GameMode} and {@link Controller}: the calls a plugin gets on each
+ * tick must stay within a time budget and must not allocate objects.
+ *
+ * Every plugin plays headless rounds against {@link SurvivalBot}s, first
+ * unmeasured to let the JIT compile it, then measured. Each tick's plugin
+ * calls are timed and the bytes the thread allocates during them are
+ * counted. A plugin is rejected if its 99th percentile tick takes longer
+ * than the budget or if it allocated anything at all.
+ */
+public class PluginBenchmark {
+    /** Default time a plugin may take per tick, in microseconds. */
+    public static final long DEFAULT_BUDGET_MICROS = 200;
+
+    private static final int MAX_TICKS = 5000;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+        (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+    private final Level level;
+    private final int rounds;
+    private final long budgetNanos;
+    private final LatencyHistogram ticks = new LatencyHistogram("plugin");
+    private long allocated;
+    private long measureOverhead;
+    private boolean measuring;
+    // Time and bytes of the current tick's calls so far
+    private long tickNanos;
+    private long tickBytes;
+
+    /**
+     * Creates a benchmark.
+     *
+     * @param level The level rounds are played on
+     * @param rounds Number of measured rounds per plugin, played after as many warm-up rounds
+     * @param budgetMicros Time a plugin may take per tick, in microseconds
+     */
+    public PluginBenchmark(Level level, int rounds, long budgetMicros) {
+        this.level = level;
+        this.rounds = rounds;
+        this.budgetNanos = budgetMicros * 1000;
+        THREADS.setThreadAllocatedMemoryEnabled(true);
+        calibrate();
+    }
+
+    /**
+     * Plays rounds under a game mode and checks its tick calls.
+     *
+     * @param name The mode's name in {@link Plugins}
+     * @return true if the mode is within the budget and does not allocate
+     */
+    public boolean checkMode(String name) {
+        reset(false);
+        for(int round = 0; round < rounds * 2; round++) {
+            if(round == rounds) reset(true);
+            GameEngine engine = newRound(round);
+            engine.setMode(new MeasuredMode(Plugins.createMode(name)));
+            Controller[] bots = {new SurvivalBot(round), new SurvivalBot(-round - 1)};
+            while(!engine.isGameOver() && engine.getTickCount() < MAX_TICKS) {
+                for(int i = 0; i < bots.length; i++) {
+                    engine.steer(i, bots[i].nextDirection(engine, i));
+                }
+                engine.tick();
+                endTick();
+            }
+        }
+        return report(name);
+    }
+
+    /**
+     * Plays rounds with a controller steering player 1 and checks its calls.
+     *
+     * @param name The controller's name in {@link Plugins}
+     * @return true if the controller is within the budget and does not allocate
+     */
+    public boolean checkController(String name) {
+        reset(false);
+        for(int round = 0; round < rounds * 2; round++) {
+            if(round == rounds) reset(true);
+            GameEngine engine = newRound(round);
+            Controller plugin = Plugins.createController(name);
+            Controller opponent = new SurvivalBot(round);
+            while(!engine.isGameOver() && engine.getTickCount() < MAX_TICKS) {
+                long start = begin();
+                Direction d = plugin.nextDirection(engine, 0);
+                end(start);
+                engine.steer(0, d);
+                engine.steer(1, opponent.nextDirection(engine, 1));
+                engine.tick();
+                endTick();
+            }
+        }
+        return report(name);
+    }
+
+    private GameEngine newRound(int round) {
+        return new GameEngine(level, "Player1", Color.BLUE, "Player2", Color.RED, round);
+    }
+
+    private void reset(boolean measure) {
+        ticks.reset();
+        allocated = 0;
+        tickNanos = 0;
+        tickBytes = 0;
+        measuring = measure;
+    }
+
+    /**
+     * Finds how many bytes reading the allocation counter itself reports,
+     * so that it is not blamed on the plugins.
+     */
+    private void calibrate() {
+        long least = Long.MAX_VALUE;
+        for(int i = 0; i < 100_000; i++) {
+            long before = THREADS.getCurrentThreadAllocatedBytes();
+            long after = THREADS.getCurrentThreadAllocatedBytes();
+            least = Math.min(least, after - before);
+        }
+        measureOverhead = least;
+    }
+
+    private long begin() {
+        tickBytes -= THREADS.getCurrentThreadAllocatedBytes();
+        return System.nanoTime();
+    }
+
+    private void end(long start) {
+        tickNanos += System.nanoTime() - start;
+        tickBytes += THREADS.getCurrentThreadAllocatedBytes() - measureOverhead;
+    }
+
+    private void endTick() {
+        if(measuring) {
+            ticks.record(tickNanos);
+            allocated += tickBytes;
+        }
+        tickNanos = 0;
+        tickBytes = 0;
+    }
+
+    private boolean report(String name) {
+        long count = ticks.getCount();
+        boolean fast = ticks.valueAtPercentile(99) <= budgetNanos;
+        boolean quiet = allocated <= 0;
+        System.out.printf("%-24s %9d %9.1f %9.1f %9.1f %12.2f  %s%n", name, count, ticks.getP50Micros(),
+            ticks.getP99Micros(), ticks.getMaxMicros(), count == 0 ? 0.0 : (double)allocated / count,
+            fast && quiet ? "PASS" : "FAIL" + (fast ? "" : " (too slow)") + (quiet ? "" : " (allocates)"));
+        return fast && quiet;
+    }
+
+    /**
+     * Forwards the engine's calls to a game mode, timing them.
+     */
+    private class MeasuredMode implements GameMode {
+        private final GameMode mode;
+
+        MeasuredMode(GameMode mode) {
+            this.mode = mode;
+        }
+
+        @Override
+        public void start(GameEngine engine) {
+            mode.start(engine);
+        }
+
+        @Override
+        public void beforeMove(GameEngine engine) {
+            long start = begin();
+            mode.beforeMove(engine);
+            end(start);
+        }
+
+        @Override
+        public void afterMove(GameEngine engine) {
+            long start = begin();
+            mode.afterMove(engine);
+            end(start);
+        }
+    }
+
+    /**
+     * Checks every installed plugin from the command line and exits with
+     * status 1 if any of them is rejected.
+     * Usage: {@code PluginBenchmark [level] [rounds] [budgetMicros]}
+     *
+     * @param args Optional level path, measured rounds per plugin and per-tick budget in microseconds
+     */
+    public static void main(String[] args) throws IOException {
+        String levelPath = args.length > 0 ? args[0] : "levels/level1.txt";
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        long budget = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_BUDGET_MICROS;
+
+        PluginBenchmark benchmark = new PluginBenchmark(LevelLoader.loadLevel(levelPath), rounds, budget);
+        System.out.printf("Budget %d us per tick at p99, no allocation%n", budget);
+        System.out.printf("%-24s %9s %9s %9s %9s %12s%n", "plugin", "ticks", "p50 us", "p99 us", "max us", "bytes/tick");
+        boolean passed = true;
+        for(String mode : Plugins.getModeNames()) {
+            passed &= benchmark.checkMode(mode);
+        }
+        for(String controller : Plugins.getControllerNames()) {
+            passed &= benchmark.checkController(controller);
+        }
+        if(!passed) System.exit(1);
+    }
+}
@@ -0,0 +1,85 @@
+package tron;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * The game modes and controllers available as plugins. They are found with
+ * {@link ServiceLoader} once, when this class is first used, from the
+ * {@code META-INF/services/tron.GameMode} and
+ * {@code META-INF/services/tron.Controller} files of the game jar and of
+ * any other jar on the classpath.
+ *
+ * Plugins are chosen by name. A plugin that fails to load is reported and
+ * left out; when two plugins share a name the first one found is kept.
+ */
+public final class Plugins {
+    private static final Map<String, ServiceLoader.Provider<GameMode>> MODES = find(GameMode.class);
+    private static final Map<String, ServiceLoader.Provider<Controller>> CONTROLLERS = find(Controller.class);
+
+    private Plugins() {
+    }
+
+    /**
+     * @return The names of the available game modes
+     */
+    public static List<String> getModeNames() {
+        return Collections.unmodifiableList(new ArrayList<>(MODES.keySet()));
+    }
+
+    /**
+     * @return The names of the available controllers
+     */
+    public static List<String> getControllerNames() {
+        return Collections.unmodifiableList(new ArrayList<>(CONTROLLERS.keySet()));
+    }
+
+    /**
+     * Creates a new instance of a game mode, for one round.
+     *
+     * @param name The mode's name, or null for the classic rules
+     * @return The mode, or null for the classic rules or an unknown name
+     */
+    public static GameMode createMode(String name) {
+        ServiceLoader.Provider<GameMode> provider = name == null ? null : MODES.get(name);
+        return provider == null ? null : provider.get();
+    }
+
+    /**
+     * Creates a new instance of a controller, for one round.
+     *
+     * @param name The controller's name, or null for the keyboard
+     * @return The controller, or null for the keyboard or an unknown name
+     */
+    public static Controller createController(String name) {
+        ServiceLoader.Provider<Controller> provider = name == null ? null : CONTROLLERS.get(name);
+        return provider == null ? null : provider.get();
+    }
+
+    private static <S> Map<String, ServiceLoader.Provider<S>> find(Class<S> service) {
+        Map<String, ServiceLoader.Provider<S>> found = new LinkedHashMap<>();
+        try {
+            ServiceLoader.load(service).stream().forEach(provider -> {
+                try {
+                    String name = nameOf(provider.get());
+                    found.putIfAbsent(name, provider);
+                } catch(ServiceConfigurationError | RuntimeException e) {
+                    e.printStackTrace();
+                }
+            });
+        } catch(ServiceConfigurationError e) {
+            e.printStackTrace();
+        }
+        return found;
+    }
+
+    private static String nameOf(Object plugin) {
+        if(plugin instanceof GameMode) return ((GameMode)plugin).getName();
+        return ((Controller)plugin).getName();
+    }
+}
@@ -0,0 +1,20 @@
+package tron;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event covering a score write to the database.
+ */
+@Name("tron.ScorePersist")
+@Label("Score Persist")
+@Category("Tron")
+public class ScorePersistEvent extends Event {
+    @Label("Player")
+    public String player;
+
+    @Label("Success")
+    public boolean success;
+}
@@ -0,0 +1,407 @@
+package tron;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Exports and imports scores, ratings and match history as CSV or NDJSON,
+ * for moving {@code game.db} data between machines.
+ *
+ * Both directions stream: exports write each row as the database cursor
+ * reaches it and imports parse one row at a time into batched transactions,
+ * so memory use stays the same however many rows there are.
+ *
+ * CSV files start with a header row naming the columns; NDJSON files have
+ * one JSON object per line keyed by column name. On import, columns are
+ * matched by name, so they may come in any order and missing ones are
+ * stored as null.
+ */
+public class ScoreTransfer {
+    /** Rows written per import transaction. */
+    public static final int BATCH_SIZE = 50_000;
+
+    /**
+     * File formats.
+     */
+    public enum Format {
+        CSV, NDJSON;
+
+        /**
+         * Picks the format from a file name: {@code .csv} is CSV, anything else NDJSON.
+         *
+         * @param file The file
+         * @return The format
+         */
+        public static Format of(Path file) {
+            return file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv") ? CSV : NDJSON;
+        }
+    }
+
+    private final DatabaseManager db;
+
+    /**
+     * Creates a transfer for a database.
+     *
+     * @param db The database to read from or write to
+     */
+    public ScoreTransfer(DatabaseManager db) {
+        this.db = db;
+    }
+
+    /**
+     * Writes every row of a table to a file.
+     *
+     * @param table The table to export
+     * @param file The file to write
+     * @param format The file format
+     * @return The number of rows written
+     * @throws IOException if the file cannot be written
+     * @throws SQLException if the table cannot be read
+     */
+    public long export(DatabaseManager.Table table, Path file, Format format) throws IOException, SQLException {
+        try(Writer out = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file), StandardCharsets.UTF_8), 1 << 16)) {
+            StringBuilder line = new StringBuilder(256);
+            if(format == Format.CSV) {
+                for(int i = 0; i < table.getColumnCount(); i++) {
+                    if(i > 0) line.append(',');
+                    appendCsv(line, table.getColumnName(i));
+                }
+                out.append(line).append('\n');
+            }
+            return db.exportRows(table, row -> {
+                line.setLength(0);
+                if(format == Format.CSV) {
+                    for(int i = 0; i < row.length; i++) {
+                        if(i > 0) line.append(',');
+                        if(row[i] instanceof String) appendCsv(line, (String)row[i]);
+                        else if(row[i] != null) line.append(row[i]);
+                    }
+                } else {
+                    line.append('{');
+                    for(int i = 0; i < row.length; i++) {
+                        if(i > 0) line.append(',');
+                        appendJsonString(line, table.getColumnName(i));
+                        line.append(':');
+                        if(row[i] instanceof String) appendJsonString(line, (String)row[i]);
+                        else line.append(row[i]);
+                    }
+                    line.append('}');
+                }
+                out.append(line).append('\n');
+            });
+        }
+    }
+
+    /**
+     * Reads rows from a file into a table.
+     *
+     * @param table The table to import into
+     * @param file The file to read
+     * @param format The file format
+     * @return The number of rows imported
+     * @throws IOException if the file cannot be read or is malformed
+     * @throws SQLException if the rows cannot be written
+     */
+    public long importFile(DatabaseManager.Table table, Path file, Format format) throws IOException, SQLException {
+        try(Reader in = new BufferedReader(new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8), 1 << 16)) {
+            DatabaseManager.RowSource source = format == Format.CSV ? new CsvSource(table, in) : new JsonSource(table, in);
+            return db.importRows(table, source, BATCH_SIZE);
+        }
+    }
+
+    private static void appendCsv(StringBuilder line, String value) {
+        boolean quote = false;
+        for(int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        // An empty quoted string is kept apart from an empty field, which means null
+        if(!quote && !value.isEmpty()) {
+            line.append(value);
+            return;
+        }
+        line.append('"');
+        for(int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if(c == '"') line.append('"');
+            line.append(c);
+        }
+        line.append('"');
+    }
+
+    private static void appendJsonString(StringBuilder line, String value) {
+        line.append('"');
+        for(int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch(c) {
+                case '"': line.append("\\\""); break;
+                case '\\': line.append("\\\\"); break;
+                case '\n': line.append("\\n"); break;
+                case '\r': line.append("\\r"); break;
+                case '\t': line.append("\\t"); break;
+                default:
+                    if(c < 0x20) line.append(String.format("\\u%04x", (int)c));
+                    else line.append(c);
+            }
+        }
+        line.append('"');
+    }
+
+    private static Object convert(DatabaseManager.Table table, int column, String text, long lineNumber) throws IOException {
+        if(text == null) return null;
+        try {
+            switch(table.getColumnType(column)) {
+                case DatabaseManager.Table.INTEGER: return Long.parseLong(text.trim());
+                case DatabaseManager.Table.REAL: return Double.parseDouble(text.trim());
+                default: return text;
+            }
+        } catch(NumberFormatException e) {
+            throw new IOException("Line " + lineNumber + ": " + table.getColumnName(column) + " is not a number: " + text);
+        }
+    }
+
+    private static int columnIndex(DatabaseManager.Table table, String name) {
+        for(int i = 0; i < table.getColumnCount(); i++) {
+            if(table.getColumnName(i).equals(name)) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Reads CSV records, including quoted fields that span lines.
+     */
+    private static final class CsvSource implements DatabaseManager.RowSource {
+        private final DatabaseManager.Table table;
+        private final Reader in;
+        private final StringBuilder field = new StringBuilder();
+        private final String[] fields = new String[64];
+        private final Object[] row;
+        private int[] mapping;
+        private long line = 1;
+        private boolean eof;
+
+        CsvSource(DatabaseManager.Table table, Reader in) {
+            this.table = table;
+            this.in = in;
+            this.row = new Object[table.getColumnCount()];
+        }
+
+        @Override
+        public Object[] next() throws IOException {
+            if(mapping == null) {
+                int count = readRecord();
+                if(count < 0) return null;
+                mapping = new int[count];
+                for(int i = 0; i < count; i++) {
+                    mapping[i] = columnIndex(table, fields[i] == null ? "" : fields[i].trim());
+                }
+            }
+            long recordLine = line;
+            int count = readRecord();
+            if(count < 0) return null;
+            Arrays.fill(row, null);
+            for(int i = 0; i < count && i < mapping.length; i++) {
+                if(mapping[i] >= 0) row[mapping[i]] = convert(table, mapping[i], fields[i], recordLine);
+            }
+            return row;
+        }
+
+        /**
+         * Reads one record into {@code fields}; an empty unquoted field is null.
+         *
+         * @return The number of fields, or -1 at the end of the input
+         */
+        private int readRecord() throws IOException {
+            if(eof) return -1;
+            int count = 0;
+            field.setLength(0);
+            boolean quoted = false;
+            boolean wasQuoted = false;
+            while(true) {
+                int c = in.read();
+                if(c < 0) {
+                    eof = true;
+                    if(count == 0 && field.length() == 0 && !wasQuoted) return -1;
+                    fields[count++] = wasQuoted || field.length() > 0 ? field.toString() : null;
+                    return count;
+                }
+                if(quoted) {
+                    if(c == '"') {
+                        in.mark(1);
+                        int following = in.read();
+                        if(following == '"') {
+                            field.append('"');
+                        } else {
+                            quoted = false;
+                            if(following >= 0) in.reset();
+                        }
+                    } else {
+                        if(c == '\n') line++;
+                        field.append((char)c);
+                    }
+                } else if(c == '"') {
+                    quoted = true;
+                    wasQuoted = true;
+                } else if(c == ',' || c == '\n') {
+                    if(count == fields.length) throw new IOException("Line " + line + ": too many fields");
+                    fields[count++] = wasQuoted || field.length() > 0 ? field.toString() : null;
+                    field.setLength(0);
+                    wasQuoted = false;
+                    if(c == '\n') {
+                        line++;
+                        // Skip blank lines
+                        if(count == 1 && fields[0] == null) {
+                            count = 0;
+                            continue;
+                        }
+                        return count;
+                    }
+                } else if(c != '\r') {
+                    field.append((char)c);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads one flat JSON object per line.
+     */
+    private static final class JsonSource implements DatabaseManager.RowSource {
+        private final DatabaseManager.Table table;
+        private final BufferedReader in;
+        private final Object[] row;
+        private final StringBuilder text = new StringBuilder();
+        private String current;
+        private int pos;
+        private long line;
+
+        JsonSource(DatabaseManager.Table table, Reader in) {
+            this.table = table;
+            this.in = in instanceof BufferedReader ? (BufferedReader)in : new BufferedReader(in);
+            this.row = new Object[table.getColumnCount()];
+        }
+
+        @Override
+        public Object[] next() throws IOException {
+            do {
+                current = in.readLine();
+                line++;
+                if(current == null) return null;
+            } while(current.trim().isEmpty());
+
+            Arrays.fill(row, null);
+            pos = 0;
+            expect('{');
+            skipSpace();
+            if(peek() == '}') return row;
+            while(true) {
+                String key = readString();
+                expect(':');
+                skipSpace();
+                int column = columnIndex(table, key);
+                String value;
+                if(peek() == '"') {
+                    value = readString();
+                } else {
+                    int start = pos;
+                    while(pos < current.length() && ",} \t".indexOf(current.charAt(pos)) < 0) pos++;
+                    value = current.substring(start, pos);
+                    if(value.equals("null")) value = null;
+                }
+                if(column >= 0) row[column] = convert(table, column, value, line);
+                skipSpace();
+                char c = read();
+                if(c == '}') return row;
+                if(c != ',') throw error("expected , or }");
+                skipSpace();
+            }
+        }
+
+        private String readString() throws IOException {
+            expect('"');
+            text.setLength(0);
+            while(true) {
+                char c = read();
+                if(c == '"') return text.toString();
+                if(c != '\\') {
+                    text.append(c);
+                    continue;
+                }
+                char escaped = read();
+                switch(escaped) {
+                    case 'n': text.append('\n'); break;
+                    case 'r': text.append('\r'); break;
+                    case 't': text.append('\t'); break;
+                    case 'b': text.append('\b'); break;
+                    case 'f': text.append('\f'); break;
+                    case 'u':
+                        if(pos + 4 > current.length()) throw error("bad escape");
+                        text.append((char)Integer.parseInt(current.substring(pos, pos + 4), 16));
+                        pos += 4;
+                        break;
+                    default: text.append(escaped);
+                }
+            }
+        }
+
+        private void expect(char expected) throws IOException {
+            skipSpace();
+            if(read() != expected) throw error("expected " + expected);
+        }
+
+        private void skipSpace() {
+            while(pos < current.length() && Character.isWhitespace(current.charAt(pos))) pos++;
+        }
+
+        private char peek() throws IOException {
+            if(pos >= current.length()) throw error("unexpected end of line");
+            return current.charAt(pos);
+        }
+
+        private char read() throws IOException {
+            char c = peek();
+            pos++;
+            return c;
+        }
+
+        private IOException error(String message) {
+            return new IOException("Line " + line + ", column " + (pos + 1) + ": " + message);
+        }
+    }
+
+    /**
+     * Exports or imports from the command line.
+     * Usage: {@code ScoreTransfer export|import scores|ratings|matches|team_standings <file.csv|file.ndjson>}
+     *
+     * @param args The direction, the table and the file
+     */
+    public static void main(String[] args) throws Exception {
+        if(args.length != 3 || !(args[0].equals("export") || args[0].equals("import"))) {
+            System.err.println("Usage: ScoreTransfer export|import scores|ratings|matches|team_standings <file.csv|file.ndjson>");
+            System.exit(2);
+        }
+        DatabaseManager.Table table = DatabaseManager.Table.valueOf(args[1].toUpperCase(Locale.ROOT));
+        Path file = Paths.get(args[2]);
+        Format format = Format.of(file);
+
+        DatabaseManager db = new DatabaseManager();
+        try {
+            ScoreTransfer transfer = new ScoreTransfer(db);
+            long started = System.nanoTime();
+            long rows = args[0].equals("export")
+                ? transfer.export(table, file, format)
+                : transfer.importFile(table, file, format);
+            double seconds = (System.nanoTime() - started) / 1e9;
+            System.out.printf("%sed %d %s rows in %.1f s (%.0f rows/s)%n", args[0], rows,
+                args[1], seconds, rows / Math.max(seconds, 1e-9));
+        } finally {
+            db.closeConnection();
+        }
+    }
+}
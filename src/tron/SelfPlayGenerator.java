@@ -0,0 +1,252 @@
+package tron;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+
+/**
+ * Headless self-play data generator for training bots offline.
+ *
+ * Every worker thread plays games between two {@link Controller} policies
+ * on its own engine and streams one (state, action, outcome) sample per
+ * player and tick into its own file, {@code selfplay-<worker>.bin}.
+ *
+ * File layout (big-endian): the magic {@code "TRSP"} and a format version
+ * int, then a sequence of chunks. Each chunk is
+ * {@code int rawLength, int compressedLength, int gameCount} followed by the
+ * DEFLATE-compressed game records. A game record is
+ * {@code int width, int height, int players}, the wall plane,
+ * {@code int sampleCount, byte outcome} (0 for a draw, otherwise the
+ * winner's 1-based index) and then for each tick the trail planes followed
+ * by {@code short x, short y, byte direction, byte action} per player.
+ * Planes are {@link BoardEncoder} bit planes; directions are
+ * {@link Direction} ordinals.
+ *
+ * Levels with a shrinking border are not supported, since the wall plane
+ * is written once per game. Pickups are not part of the samples.
+ */
+public class SelfPlayGenerator {
+    /** Version of the file layout described above. */
+    public static final int FORMAT_VERSION = 1;
+
+    private static final int MAGIC = 0x54525350; // "TRSP"
+    private static final int CHUNK_BYTES = 4 << 20;
+    private static final int PLAYERS = 2;
+
+    private final Level level;
+    private final Path outputDir;
+    private final AtomicLong samples = new AtomicLong();
+    private final AtomicLong games = new AtomicLong();
+
+    /**
+     * Creates a generator.
+     *
+     * @param level The level all games are played on
+     * @param outputDir Directory the sample files are written to
+     * @throws IllegalArgumentException if the level's border shrinks
+     */
+    public SelfPlayGenerator(Level level, Path outputDir) {
+        if(level.getSetting(ArenaRules.SHRINK, 0) > 0) {
+            throw new IllegalArgumentException("Levels with a shrinking border cannot be encoded: " + level.getName());
+        }
+        this.level = level;
+        this.outputDir = outputDir;
+    }
+
+    /**
+     * Plays the given number of games spread over worker threads and waits for them.
+     *
+     * @param gameCount Total number of games to play
+     * @param threads Number of worker threads
+     * @throws IOException if a sample file cannot be written
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void run(int gameCount, int threads) throws IOException, InterruptedException {
+        Files.createDirectories(outputDir);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<Void>> futures = new ArrayList<>();
+        for(int w = 0; w < threads; w++) {
+            int worker = w;
+            int share = gameCount / threads + (w < gameCount % threads ? 1 : 0);
+            futures.add(pool.submit(() -> {
+                runWorker(worker, share);
+                return null;
+            }));
+        }
+        pool.shutdown();
+        try {
+            for(Future<Void> f : futures) {
+                f.get();
+            }
+        } catch(ExecutionException e) {
+            if(e.getCause() instanceof IOException) throw (IOException)e.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * @return The number of samples written so far
+     */
+    public long getSampleCount() {
+        return samples.get();
+    }
+
+    /**
+     * @return The number of games played so far
+     */
+    public long getGameCount() {
+        return games.get();
+    }
+
+    private void runWorker(int worker, int gameCount) throws IOException {
+        Path file = outputDir.resolve("selfplay-" + worker + ".bin");
+        BoardEncoder encoder = new BoardEncoder(level, PLAYERS);
+        int planeBytes = encoder.getWordsPerPlane() * Long.BYTES;
+        int sampleBytes = PLAYERS * planeBytes + PLAYERS * 6;
+        long maxTicks = 2L * level.getWidth() * level.getHeight();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        // Room for the game header, the wall plane and the first sample
+        ByteBuffer game = ByteBuffer.allocate(Math.max(1 << 16, 3 * Integer.BYTES + planeBytes + 5 + sampleBytes));
+        ByteBuffer chunk = ByteBuffer.allocate(CHUNK_BYTES);
+        byte[] compressed = new byte[CHUNK_BYTES + CHUNK_BYTES / 1000 + 64];
+        ByteBuffer header = ByteBuffer.allocate(12);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        int gamesInChunk = 0;
+
+        try(FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer fileHeader = ByteBuffer.allocate(8);
+            fileHeader.putInt(MAGIC).putInt(FORMAT_VERSION).flip();
+            writeFully(out, fileHeader);
+
+            for(int g = 0; g < gameCount; g++) {
+                Controller[] policies = {
+                    new SurvivalBot(random.nextLong(), random.nextDouble(0.2)),
+                    new SurvivalBot(random.nextLong(), random.nextDouble(0.2))
+                };
+                GameEngine engine = new GameEngine(level, "P1", Color.BLUE, "P2", Color.RED);
+                encoder.reset();
+                encoder.update(engine.getTrailGrid());
+
+                game.clear();
+                game.putInt(level.getWidth()).putInt(level.getHeight()).putInt(PLAYERS);
+                encoder.writeWalls(game);
+                int countPosition = game.position();
+                game.putInt(0).put((byte)0);
+
+                int sampleCount = 0;
+                while(!engine.isGameOver() && engine.getTickCount() < maxTicks) {
+                    if(game.remaining() < sampleBytes) {
+                        game = grow(game, sampleBytes);
+                    }
+                    encoder.writeTrails(game);
+                    for(int p = 0; p < PLAYERS; p++) {
+                        Player player = engine.getPlayer(p);
+                        Direction action = policies[p].nextDirection(engine, p);
+                        game.putShort((short)player.getPosition().x);
+                        game.putShort((short)player.getPosition().y);
+                        game.put((byte)player.getDirection().ordinal());
+                        engine.steer(p, action);
+                        game.put((byte)engine.getPlayer(p).getDirection().ordinal());
+                    }
+                    engine.tick();
+                    // Boosts, decay and erased trails all show up in the grid
+                    encoder.update(engine.getTrailGrid());
+                    sampleCount++;
+                }
+                game.putInt(countPosition, sampleCount);
+                game.put(countPosition + Integer.BYTES, outcomeOf(engine));
+                game.flip();
+
+                if(chunk.remaining() < game.remaining() && chunk.position() > 0) {
+                    flushChunk(out, chunk, compressed, header, deflater, gamesInChunk);
+                    gamesInChunk = 0;
+                }
+                if(chunk.remaining() < game.remaining()) {
+                    // A single game larger than a chunk gets a chunk of its own
+                    ByteBuffer big = ByteBuffer.allocate(game.remaining());
+                    big.put(game);
+                    flushChunk(out, big, new byte[big.capacity() + big.capacity() / 1000 + 64], header, deflater, 1);
+                } else {
+                    chunk.put(game);
+                    gamesInChunk++;
+                }
+                samples.addAndGet((long)sampleCount * PLAYERS);
+                games.incrementAndGet();
+            }
+            if(chunk.position() > 0) {
+                flushChunk(out, chunk, compressed, header, deflater, gamesInChunk);
+            }
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte outcomeOf(GameEngine engine) {
+        // One-on-one rounds, so the winning team is the winning player
+        MatchResult result = engine.getResult();
+        return result == null || result.isDraw() ? 0 : (byte)(result.getWinningTeam() + 1);
+    }
+
+    private static void flushChunk(FileChannel out, ByteBuffer chunk, byte[] compressed, ByteBuffer header,
+                                   Deflater deflater, int gameCount) throws IOException {
+        int rawLength = chunk.position();
+        deflater.reset();
+        deflater.setInput(chunk.array(), 0, rawLength);
+        deflater.finish();
+        int compressedLength = 0;
+        while(!deflater.finished()) {
+            compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+        }
+        header.clear();
+        header.putInt(rawLength).putInt(compressedLength).putInt(gameCount).flip();
+        writeFully(out, header);
+        writeFully(out, ByteBuffer.wrap(compressed, 0, compressedLength));
+        chunk.clear();
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer, int needed) {
+        ByteBuffer bigger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + needed));
+        buffer.flip();
+        bigger.put(buffer);
+        return bigger;
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+        while(buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    /**
+     * Generates self-play data from the command line.
+     * Usage: {@code SelfPlayGenerator [level] [outputDir] [games] [threads]}
+     *
+     * @param args Optional level path, output directory, game count and thread count
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String levelPath = args.length > 0 ? args[0] : "levels/level1.txt";
+        Path outputDir = Paths.get(args.length > 1 ? args[1] : "selfplay");
+        int gameCount = args.length > 2 ? Integer.parseInt(args[2]) : 10000;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+        SelfPlayGenerator generator = new SelfPlayGenerator(LevelLoader.loadLevel(levelPath), outputDir);
+        long started = System.nanoTime();
+        generator.run(gameCount, threads);
+        double minutes = (System.nanoTime() - started) / 60e9;
+        System.out.printf("%d games, %d samples in %.1f s (%.0f samples/min)%n",
+            generator.getGameCount(), generator.getSampleCount(), minutes * 60,
+            generator.getSampleCount() / minutes);
+    }
+}
@@ -0,0 +1,156 @@
+package tron;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * Pre-rendered tiles for the game board at a fixed cell size.
+ * For every player color the atlas holds one trail tile per combination of
+ * connected neighbours (straight segments, corners, ends) plus the round
+ * head sprite, all drawn once with anti-aliasing and a glow. Drawing the
+ * board then only needs plain image blits.
+ */
+public class SpriteAtlas {
+    private static final int TRAIL_TILES = 16;
+    private static final int HEAD_TILE = TRAIL_TILES;
+    private static final int TILES_PER_ROW = TRAIL_TILES + 1;
+    private static final int FLOOR_TILE = 0;
+    private static final int WALL_TILE = 1;
+
+    private final int cellSize;
+    private final BufferedImage atlas;
+
+    /**
+     * Renders the atlas for the given cell size and player colors.
+     *
+     * @param cellSize The size of one cell in pixels
+     * @param colors The player colors; player {@code n} uses {@code colors[n - 1]}
+     */
+    public SpriteAtlas(int cellSize, Color... colors) {
+        this.cellSize = cellSize;
+        this.atlas = createImage(TILES_PER_ROW * cellSize, (colors.length + 1) * cellSize, Transparency.TRANSLUCENT);
+
+        Graphics2D g2d = atlas.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.setColor(Color.DARK_GRAY);
+        g2d.fillRect(FLOOR_TILE * cellSize, 0, cellSize, cellSize);
+        g2d.setColor(Color.GRAY);
+        g2d.fillRect(WALL_TILE * cellSize, 0, cellSize, cellSize);
+
+        for(int i = 0; i < colors.length; i++) {
+            int row = (i + 1) * cellSize;
+            for(int mask = 0; mask < TRAIL_TILES; mask++) {
+                drawTrailTile(g2d, mask * cellSize, row, mask, colors[i]);
+            }
+            drawHeadTile(g2d, HEAD_TILE * cellSize, row, colors[i]);
+        }
+        g2d.dispose();
+    }
+
+    /**
+     * @return The size of one cell in pixels
+     */
+    public int getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * Draws an empty floor cell.
+     */
+    public void drawFloor(Graphics g, int x, int y) {
+        drawTile(g, FLOOR_TILE, 0, x, y);
+    }
+
+    /**
+     * Draws a wall cell.
+     */
+    public void drawWall(Graphics g, int x, int y) {
+        drawTile(g, WALL_TILE, 0, x, y);
+    }
+
+    /**
+     * Draws a trail cell.
+     *
+     * @param g The graphics context to draw on
+     * @param owner The owning player (1-based)
+     * @param linkMask The {@link TrailGrid} link bits of the cell
+     * @param x Left pixel coordinate
+     * @param y Top pixel coordinate
+     */
+    public void drawTrail(Graphics g, int owner, int linkMask, int x, int y) {
+        drawTile(g, linkMask & (TRAIL_TILES - 1), owner, x, y);
+    }
+
+    /**
+     * Draws a player's head.
+     *
+     * @param g The graphics context to draw on
+     * @param owner The player (1-based)
+     * @param x Left pixel coordinate
+     * @param y Top pixel coordinate
+     */
+    public void drawHead(Graphics g, int owner, int x, int y) {
+        drawTile(g, HEAD_TILE, owner, x, y);
+    }
+
+    private void drawTile(Graphics g, int column, int row, int x, int y) {
+        int sx = column * cellSize;
+        int sy = row * cellSize;
+        g.drawImage(atlas, x, y, x + cellSize, y + cellSize, sx, sy, sx + cellSize, sy + cellSize, null);
+    }
+
+    private void drawTrailTile(Graphics2D g2d, int x, int y, int mask, Color color) {
+        g2d.setColor(color);
+        g2d.fillRect(x, y, cellSize, cellSize);
+
+        // Bright core running from the center towards every connected side
+        int core = Math.max(1, cellSize / 4);
+        int center = (cellSize - core) / 2;
+        if(cellSize >= 4) {
+            g2d.setColor(blend(color, Color.WHITE, 0.35f));
+            g2d.fillRect(x + center - 1, y + center - 1, core + 2, core + 2);
+        }
+        g2d.setColor(blend(color, Color.WHITE, 0.6f));
+        g2d.fillRect(x + center, y + center, core, core);
+        if((mask & TrailGrid.LINK_UP) != 0) g2d.fillRect(x + center, y, core, center + core);
+        if((mask & TrailGrid.LINK_DOWN) != 0) g2d.fillRect(x + center, y + center, core, cellSize - center);
+        if((mask & TrailGrid.LINK_LEFT) != 0) g2d.fillRect(x, y + center, center + core, core);
+        if((mask & TrailGrid.LINK_RIGHT) != 0) g2d.fillRect(x + center, y + center, cellSize - center, core);
+    }
+
+    private void drawHeadTile(Graphics2D g2d, int x, int y, Color color) {
+        // Outer glow
+        g2d.setPaint(new RadialGradientPaint(
+            x + cellSize / 2f, y + cellSize / 2f, cellSize / 2f,
+            new float[] {0.5f, 1f},
+            new Color[] {blend(color, Color.WHITE, 0.4f), new Color(color.getRed(), color.getGreen(), color.getBlue(), 0)}
+        ));
+        g2d.fillOval(x, y, cellSize, cellSize);
+        g2d.setColor(color);
+        int inset = Math.max(1, cellSize / 8);
+        g2d.fillOval(x + inset, y + inset, cellSize - 2 * inset, cellSize - 2 * inset);
+    }
+
+    private static Color blend(Color a, Color b, float amount) {
+        float keep = 1f - amount;
+        return new Color(
+            Math.round(a.getRed() * keep + b.getRed() * amount),
+            Math.round(a.getGreen() * keep + b.getGreen() * amount),
+            Math.round(a.getBlue() * keep + b.getBlue() * amount)
+        );
+    }
+
+    /**
+     * Creates an image in the screen's native pixel format when a screen is
+     * available, so blits from it can be accelerated.
+     */
+    static BufferedImage createImage(int width, int height, int transparency) {
+        if(!GraphicsEnvironment.isHeadless()) {
+            GraphicsConfiguration gc = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                .getDefaultScreenDevice().getDefaultConfiguration();
+            return gc.createCompatibleImage(width, height, transparency);
+        }
+        return new BufferedImage(width, height,
+            transparency == Transparency.OPAQUE ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+    }
+}
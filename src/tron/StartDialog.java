@@ -3,34 +3,60 @@ package tron;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
-import java.io.File;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Initial dialog shown when starting the game.
- * Allows players to enter their names, choose colors, and select a level.
+ * Allows players to enter their names, choose colors, and select a level,
+ * a game mode, the team size and who controls each light-cycle. In team
+ * games the names and colors are the teams'.
  */
 public class StartDialog extends JDialog {
+    private static final String CLASSIC = "Classic";
+    private static final String KEYBOARD = "Keyboard";
+
     private JTextField player1NameField, player2NameField;
     private JButton player1ColorBtn, player2ColorBtn;
-    private JComboBox<String> levelCombo;
+    private JList<String> levelList;
+    private JComboBox<String> modeBox;
+    private JComboBox<MatchFormat> formatBox;
+    private JComboBox<String> teammatesBox;
+    private final JLabel[] nameLabels = new JLabel[2];
+    @SuppressWarnings("unchecked")
+    private final List<JComboBox<String>> controllerBoxes = new ArrayList<>();
+    private final DefaultListModel<String> levelModel = new DefaultListModel<>();
     private Color player1Color = Color.BLUE;
     private Color player2Color = Color.RED;
     private boolean confirmed = false;
+    private String preferredLevel;
 
     /**
-     * Creates a new start dialog for game configuration.
+     * Creates a new modal start dialog for game configuration.
      *
      * @param owner The parent frame (game window)
      */
     public StartDialog(Frame owner) {
-        super(owner, "Start Game", true);
-        setSize(400, 300);
+        this(owner, true);
+    }
+
+    /**
+     * Creates a new start dialog for game configuration.
+     *
+     * @param owner The parent frame (game window)
+     * @param modal false to return from {@code setVisible} immediately;
+     *              the result is then read once the dialog is closed
+     */
+    public StartDialog(Frame owner, boolean modal) {
+        super(owner, "Start Game", modal);
+        setSize(420, 660);
         setLocationRelativeTo(owner);
 
-        JPanel panel = new JPanel(new GridLayout(5, 2, 5, 5));
+        JPanel panel = new JPanel(new GridLayout(9, 2, 5, 5));
         
-        panel.add(new JLabel("Player 1 Name:"));
+        nameLabels[0] = new JLabel("Player 1 Name:");
+        panel.add(nameLabels[0]);
         player1NameField = new JTextField("Player1");
         panel.add(player1NameField);
 
@@ -42,7 +68,8 @@ public class StartDialog extends JDialog {
         });
         panel.add(player1ColorBtn);
 
-        panel.add(new JLabel("Player 2 Name:"));
+        nameLabels[1] = new JLabel("Player 2 Name:");
+        panel.add(nameLabels[1]);
         player2NameField = new JTextField("Player2");
         panel.add(player2NameField);
 
@@ -54,19 +81,54 @@ public class StartDialog extends JDialog {
         });
         panel.add(player2ColorBtn);
 
-        panel.add(new JLabel("Select Level:"));
-        File levelDir = new File("levels");
-        String[] files = levelDir.list((dir, name) -> name.endsWith(".txt"));
-        if (files == null) files = new String[0];
-        ArrayList<String> levels = new ArrayList<>();
-        for(String f : files) {
-            levels.add("levels/" + f);
+        panel.add(new JLabel("Teams:"));
+        formatBox = new JComboBox<>(MatchFormat.values());
+        formatBox.addActionListener(e -> formatChanged());
+        panel.add(formatBox);
+
+        panel.add(new JLabel("Game Mode:"));
+        modeBox = new JComboBox<>();
+        modeBox.addItem(CLASSIC);
+        for(String mode : Plugins.getModeNames()) modeBox.addItem(mode);
+        panel.add(modeBox);
+
+        for(int i = 0; i < MatchFormat.TEAMS; i++) {
+            panel.add(new JLabel("Player " + (i + 1) + " Control:"));
+            JComboBox<String> box = new JComboBox<>();
+            box.addItem(KEYBOARD);
+            for(String controller : Plugins.getControllerNames()) box.addItem(controller);
+            controllerBoxes.add(box);
+            panel.add(box);
         }
-        levelCombo = new JComboBox<>(levels.toArray(new String[0]));
-        if(levels.size() > 0) levelCombo.setSelectedIndex(0);
-        panel.add(levelCombo);
 
-        add(panel, BorderLayout.CENTER);
+        // Keyboard players 3 and 4 steer the second players of a 2v2 game;
+        // teammates without keys of their own are always bots
+        panel.add(new JLabel("Teammates Control:"));
+        teammatesBox = new JComboBox<>();
+        teammatesBox.addItem(KEYBOARD);
+        for(String controller : Plugins.getControllerNames()) teammatesBox.addItem(controller);
+        panel.add(teammatesBox);
+        formatChanged();
+
+        add(panel, BorderLayout.NORTH);
+
+        // Level browser with previews; only the visible rows are rendered.
+        // The level list is read in the background and filled in when ready
+        levelList = new JList<>(levelModel);
+        levelList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        levelList.setCellRenderer(new LevelListRenderer());
+        levelList.setFixedCellHeight(LevelThumbnails.MAX_HEIGHT + 8);
+        JPanel levelPanel = new JPanel(new BorderLayout(5, 5));
+        levelPanel.setBorder(BorderFactory.createEmptyBorder(10, 0, 0, 0));
+        levelPanel.add(new JLabel("Select Level:"), BorderLayout.NORTH);
+        levelPanel.add(new JScrollPane(levelList), BorderLayout.CENTER);
+        add(levelPanel, BorderLayout.CENTER);
+        CompletableFuture<List<String>> scan = LevelCatalog.levels();
+        if(scan.isDone()) {
+            setLevels(scan.join());
+        } else {
+            scan.thenAccept(levels -> SwingUtilities.invokeLater(() -> setLevels(levels)));
+        }
 
         JPanel bottom = new JPanel();
         JButton okBtn = new JButton("OK");
@@ -88,6 +150,81 @@ public class StartDialog extends JDialog {
         add(bottom, BorderLayout.SOUTH);
     }
 
+    /**
+     * Fills the dialog with the settings of a previous game.
+     *
+     * @param p1Name Player 1's name
+     * @param p1Color Player 1's color
+     * @param p2Name Player 2's name
+     * @param p2Color Player 2's color
+     * @param levelPath Path to the level file to select
+     */
+    public void setDefaults(String p1Name, Color p1Color, String p2Name, Color p2Color, String levelPath) {
+        player1NameField.setText(p1Name);
+        player2NameField.setText(p2Name);
+        player1Color = p1Color;
+        player2Color = p2Color;
+        preferredLevel = levelPath;
+        levelList.setSelectedValue(levelPath, true);
+    }
+
+    /**
+     * Selects the game mode and controllers of a previous game.
+     *
+     * @param modeName The game mode's name, or null for the classic rules
+     * @param controllerNames The controller name for each player, or null for the keyboard
+     */
+    public void setPlugins(String modeName, String[] controllerNames) {
+        modeBox.setSelectedItem(modeName == null ? CLASSIC : modeName);
+        for(int i = 0; i < controllerBoxes.size() && i < controllerNames.length; i++) {
+            controllerBoxes.get(i).setSelectedItem(controllerNames[i] == null ? KEYBOARD : controllerNames[i]);
+        }
+        if(controllerNames.length > controllerBoxes.size()) {
+            String teammates = controllerNames[controllerBoxes.size()];
+            teammatesBox.setSelectedItem(teammates == null ? KEYBOARD : teammates);
+        }
+    }
+
+    /**
+     * Selects the team size of a previous game.
+     *
+     * @param format The number of players per team
+     */
+    public void setFormat(MatchFormat format) {
+        formatBox.setSelectedItem(format);
+    }
+
+    private void formatChanged() {
+        boolean teams = getFormat().isTeamGame();
+        for(int i = 0; i < nameLabels.length; i++) {
+            nameLabels[i].setText((teams ? "Team " : "Player ") + (i + 1) + " Name:");
+        }
+        if(teammatesBox != null) teammatesBox.setEnabled(teams);
+    }
+
+    private void setLevels(List<String> levels) {
+        for(String level : levels) {
+            levelModel.addElement(level);
+            // Start every preview now so they are ready when scrolled into view
+            LevelThumbnails.get(level);
+        }
+        if(preferredLevel != null) levelList.setSelectedValue(preferredLevel, true);
+        if(levelList.isSelectionEmpty() && !levelModel.isEmpty()) levelList.setSelectedIndex(0);
+    }
+
+    /**
+     * Registers a listener that is notified whenever another level is selected.
+     *
+     * @param listener The listener to add
+     */
+    public void addLevelSelectionListener(ActionListener listener) {
+        levelList.addListSelectionListener(e -> {
+            if(!e.getValueIsAdjusting()) {
+                listener.actionPerformed(new ActionEvent(levelList, ActionEvent.ACTION_PERFORMED, getSelectedLevel()));
+            }
+        });
+    }
+
     /**
      * @return true if the player confirmed the settings, false if cancelled
      */
@@ -123,10 +260,39 @@ public class StartDialog extends JDialog {
         return player2Color; 
     }
 
+    /**
+     * @return The name of the selected game mode, or null for the classic rules
+     */
+    public String getGameMode() {
+        Object mode = modeBox.getSelectedItem();
+        return CLASSIC.equals(mode) ? null : (String)mode;
+    }
+
+    /**
+     * @return The number of players per team
+     */
+    public MatchFormat getFormat() {
+        return (MatchFormat)formatBox.getSelectedItem();
+    }
+
+    /**
+     * @return The name of the controller chosen for each player of the
+     *         selected format, or null where the keyboard steers
+     */
+    public String[] getControllers() {
+        String[] names = new String[getFormat().getPlayerCount()];
+        for(int i = 0; i < names.length; i++) {
+            JComboBox<String> box = i < controllerBoxes.size() ? controllerBoxes.get(i) : teammatesBox;
+            Object controller = box.getSelectedItem();
+            names[i] = KEYBOARD.equals(controller) ? null : (String)controller;
+        }
+        return names;
+    }
+
     /**
      * @return The path to the selected level file
      */
     public String getSelectedLevel() {
-        return (String)levelCombo.getSelectedItem();
+        return levelList.getSelectedValue();
     }
 }
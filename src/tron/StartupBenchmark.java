@@ -0,0 +1,151 @@
+package tron;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.WindowEvent;
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Measures time-to-first-frame: the time from JVM launch until the start
+ * dialog has been shown.
+ *
+ * Each run is a fresh JVM, since startup is what is being measured. When a
+ * class-data sharing archive is given, the runs are repeated with it so the
+ * two can be compared. Without a display the first frame cannot be shown;
+ * the runs then time how long it takes until the level list, the default
+ * level and the database are ready instead.
+ *
+ * With {@code --training} a single run also plays a short headless round and
+ * renders it offscreen, so that the classes used during play are loaded.
+ * The build runs this with {@code -XX:ArchiveClassesAtExit} to produce the
+ * archive shipped next to {@code Tron.jar}.
+ */
+public class StartupBenchmark {
+    private static final String RESULT_PREFIX = "startup-ms=";
+    private static volatile boolean reported;
+
+    /**
+     * Runs the benchmark.
+     * Usage: {@code StartupBenchmark [runs] [archive.jsa]} or {@code StartupBenchmark --training}
+     *
+     * @param args Optional run count and archive path, or {@code --training}
+     */
+    public static void main(String[] args) throws Exception {
+        if(args.length > 0 && (args[0].equals("--child") || args[0].equals("--training"))) {
+            runChild(args[0].equals("--training"));
+            return;
+        }
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        String archive = args.length > 1 ? args[1] : null;
+
+        report("default", measure(runs, null));
+        if(archive != null) {
+            if(new File(archive).isFile()) {
+                report("with CDS", measure(runs, archive));
+            } else {
+                System.out.println("Archive " + archive + " not found, skipping CDS runs");
+            }
+        }
+    }
+
+    private static List<Long> measure(int runs, String archive) throws IOException, InterruptedException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        List<Long> results = new ArrayList<>();
+        for(int i = 0; i < runs; i++) {
+            List<String> command = new ArrayList<>();
+            command.add(java);
+            if(archive != null) command.add("-XX:SharedArchiveFile=" + archive);
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(StartupBenchmark.class.getName());
+            command.add("--child");
+            Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+            try(BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                String line;
+                while((line = out.readLine()) != null) {
+                    if(line.startsWith(RESULT_PREFIX)) {
+                        results.add(Long.parseLong(line.substring(RESULT_PREFIX.length())));
+                    }
+                }
+            }
+            process.waitFor();
+        }
+        return results;
+    }
+
+    private static void report(String label, List<Long> results) {
+        if(results.isEmpty()) {
+            System.out.println(label + ": no successful runs");
+            return;
+        }
+        Collections.sort(results);
+        System.out.printf("%s: median %d ms, best %d ms, worst %d ms over %d runs%n", label,
+            results.get(results.size() / 2), results.get(0), results.get(results.size() - 1), results.size());
+    }
+
+    private static void runChild(boolean training) throws Exception {
+        if(GraphicsEnvironment.isHeadless()) {
+            // No window can be shown, so time the background startup work instead
+            List<String> levels = LevelCatalog.levels().join();
+            if(!levels.isEmpty()) LevelCache.get(levels.get(0)).join();
+            new DatabaseManager().closeConnection();
+            printResult();
+        } else {
+            Toolkit.getDefaultToolkit().addAWTEventListener(event -> {
+                if(event.getID() == WindowEvent.WINDOW_OPENED && event.getSource() instanceof StartDialog) {
+                    // Report once the dialog's first paint has been processed
+                    SwingUtilities.invokeLater(StartupBenchmark::printResult);
+                }
+            }, AWTEvent.WINDOW_EVENT_MASK);
+            SwingUtilities.invokeAndWait(() -> new GameFrame().start());
+            waitForResult();
+        }
+        if(training) {
+            playTrainingRound();
+        }
+        System.exit(0);
+    }
+
+    private static void printResult() {
+        System.out.println(RESULT_PREFIX + ManagementFactory.getRuntimeMXBean().getUptime());
+        reported = true;
+    }
+
+    private static void waitForResult() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while(!reported && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static void playTrainingRound() throws IOException {
+        List<String> levels = LevelCatalog.levels().join();
+        if(levels.isEmpty()) return;
+        Level level = LevelLoader.loadLevel(levels.get(0));
+        GameEngine engine = new GameEngine(level, "Player1", Color.BLUE, "Player2", Color.RED, 1);
+        Controller[] bots = {new SurvivalBot(1), new SurvivalBot(2)};
+        ArenaRenderer renderer = new ArenaRenderer(level, engine.getTrailGrid(), Color.BLUE, Color.RED);
+        StatusBar statusBar = new StatusBar(50, 20);
+        statusBar.setRound("Player1", Color.BLUE, "Player2", Color.RED, level.getName());
+        BufferedImage frame = new BufferedImage(800, 650, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = frame.createGraphics();
+        while(!engine.isGameOver() && engine.getTickCount() < 1000) {
+            for(int p = 0; p < bots.length; p++) {
+                engine.steer(p, bots[p].nextDirection(engine, p));
+            }
+            engine.tick();
+            statusBar.paint(g2d, frame.getWidth(), engine.getTickCount() * 150);
+            renderer.paint(g2d, 0, 50, frame.getWidth(), frame.getHeight() - 50, engine.getPlayers());
+        }
+        g2d.dispose();
+        GameSnapshot.capture(engine);
+    }
+}
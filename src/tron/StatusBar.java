@@ -0,0 +1,143 @@
+package tron;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * Renders the status bar above the game board.
+ * Player names, color circles and the level name never change during a
+ * round, so they are drawn once into a cached image that is only rebuilt
+ * when the round is reset or the panel width changes. The elapsed time is
+ * kept in a second image that is redrawn only when the displayed second
+ * changes, so painting a frame does not allocate fonts or strings.
+ */
+public class StatusBar {
+    private static final Font STATUS_FONT = new Font("Arial", Font.BOLD, 14);
+    private static final char[] TIME_PREFIX = "Time: ".toCharArray();
+
+    private final int height;
+    private final int circleSize;
+    private String player1Name;
+    private Color player1Color;
+    private String player2Name;
+    private Color player2Color;
+    private String levelName;
+    private BufferedImage staticLayer;
+    private BufferedImage timeLayer;
+    private long shownSeconds = -1;
+    private final char[] timeChars = new char[TIME_PREFIX.length + 20];
+
+    /**
+     * Creates a status bar.
+     *
+     * @param height The height of the bar in pixels
+     * @param circleSize The diameter of the player color circles
+     */
+    public StatusBar(int height, int circleSize) {
+        this.height = height;
+        this.circleSize = circleSize;
+        System.arraycopy(TIME_PREFIX, 0, timeChars, 0, TIME_PREFIX.length);
+    }
+
+    /**
+     * Sets the round information shown in the bar and discards the cached images.
+     * Called whenever a new round starts.
+     *
+     * @param p1Name Player 1's name
+     * @param p1Color Player 1's color
+     * @param p2Name Player 2's name
+     * @param p2Color Player 2's color
+     * @param levelName The name of the current level
+     */
+    public void setRound(String p1Name, Color p1Color, String p2Name, Color p2Color, String levelName) {
+        this.player1Name = p1Name;
+        this.player1Color = p1Color;
+        this.player2Name = p2Name;
+        this.player2Color = p2Color;
+        this.levelName = levelName;
+        this.staticLayer = null;
+        this.timeLayer = null;
+        this.shownSeconds = -1;
+    }
+
+    /**
+     * Paints the bar at the top-left corner of the graphics context.
+     *
+     * @param g The graphics context to paint on
+     * @param width The width of the bar in pixels
+     * @param elapsedMillis Time since the round started
+     */
+    public void paint(Graphics g, int width, long elapsedMillis) {
+        if(staticLayer == null || staticLayer.getWidth() != width) {
+            staticLayer = SpriteAtlas.createImage(width, height, Transparency.OPAQUE);
+            timeLayer = SpriteAtlas.createImage(width, height, Transparency.TRANSLUCENT);
+            renderStatic();
+            shownSeconds = -1;
+        }
+        long seconds = elapsedMillis / 1000;
+        if(seconds != shownSeconds) {
+            renderTime(seconds);
+            shownSeconds = seconds;
+        }
+        g.drawImage(staticLayer, 0, 0, null);
+        g.drawImage(timeLayer, 0, 0, null);
+    }
+
+    private void renderStatic() {
+        int width = staticLayer.getWidth();
+        Graphics2D g2d = staticLayer.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.setColor(Color.BLACK);
+        g2d.fillRect(0, 0, width, height);
+        g2d.setFont(STATUS_FONT);
+        FontMetrics fm = g2d.getFontMetrics();
+
+        // Player 1 name and color circle
+        g2d.setColor(Color.WHITE);
+        g2d.drawString(player1Name, 10, height/3 + 5);
+        g2d.setColor(player1Color);
+        g2d.fillOval(10 + fm.stringWidth(player1Name) + 10, height/3 - circleSize/2, circleSize, circleSize);
+
+        // Player 2 name and color circle
+        g2d.setColor(Color.WHITE);
+        g2d.drawString(player2Name, width - fm.stringWidth(player2Name) - 40, height/3 + 5);
+        g2d.setColor(player2Color);
+        g2d.fillOval(width - 30, height/3 - circleSize/2, circleSize, circleSize);
+
+        // Current level
+        g2d.setColor(Color.WHITE);
+        String levelInfo = "Level: " + levelName;
+        g2d.drawString(levelInfo, (width - fm.stringWidth(levelInfo)) / 2, height/3 + 5);
+        g2d.dispose();
+    }
+
+    private void renderTime(long seconds) {
+        int length = TIME_PREFIX.length;
+        int digitsStart = length;
+        do {
+            timeChars[length++] = (char)('0' + seconds % 10);
+            seconds /= 10;
+        } while(seconds > 0);
+        reverse(timeChars, digitsStart, length - 1);
+        timeChars[length++] = 's';
+
+        Graphics2D g2d = timeLayer.createGraphics();
+        g2d.setComposite(AlphaComposite.Clear);
+        g2d.fillRect(0, 0, timeLayer.getWidth(), height);
+        g2d.setComposite(AlphaComposite.SrcOver);
+        g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g2d.setFont(STATUS_FONT);
+        g2d.setColor(Color.WHITE);
+        int textWidth = g2d.getFontMetrics().charsWidth(timeChars, 0, length);
+        g2d.drawChars(timeChars, 0, length, (timeLayer.getWidth() - textWidth) / 2, height * 2/3 + 5);
+        g2d.dispose();
+    }
+
+    private static void reverse(char[] chars, int from, int to) {
+        while(from < to) {
+            char tmp = chars[from];
+            chars[from++] = chars[to];
+            chars[to--] = tmp;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package tron;
+
+import java.awt.Point;
+import java.util.Random;
+
+/**
+ * Simple bot that keeps going straight while it can and otherwise turns
+ * towards the side with the longest free run. Occasionally turns at random
+ * so that bot-only matches do not all play out identically.
+ */
+public class SurvivalBot implements Controller {
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final int LOOKAHEAD = 16;
+
+    private final Random random;
+    private final double turnChance;
+
+    /**
+     * Creates a bot with a random seed and a small chance of random turns.
+     * Used when the bot is loaded as a plugin.
+     */
+    public SurvivalBot() {
+        this(System.nanoTime());
+    }
+
+    /**
+     * Creates a bot with a fixed seed and a small chance of random turns.
+     *
+     * @param seed Seed for the bot's random decisions
+     */
+    public SurvivalBot(long seed) {
+        this(seed, 0.05);
+    }
+
+    /**
+     * Creates a bot.
+     *
+     * @param seed Seed for the bot's random decisions
+     * @param turnChance Probability of considering a random turn on each tick
+     */
+    public SurvivalBot(long seed, double turnChance) {
+        this.random = new Random(seed);
+        this.turnChance = turnChance;
+    }
+
+    @Override
+    public String getName() {
+        return "Survival Bot";
+    }
+
+    @Override
+    public Direction nextDirection(GameEngine engine, int playerIndex) {
+        Player self = engine.getPlayer(playerIndex);
+        Direction current = self.getDirection();
+        Point pos = self.getPosition();
+
+        int straight = freeRun(engine, pos, current);
+        if(straight > 1 && random.nextDouble() >= turnChance) {
+            return current;
+        }
+
+        Direction best = current;
+        int bestRun = straight;
+        int offset = random.nextInt(DIRECTIONS.length);
+        for(int i = 0; i < DIRECTIONS.length; i++) {
+            Direction d = DIRECTIONS[(i + offset) % DIRECTIONS.length];
+            if(d == current.opposite()) continue;
+            int run = freeRun(engine, pos, d);
+            if(run > bestRun) {
+                best = d;
+                bestRun = run;
+            }
+        }
+        return best;
+    }
+
+    private static int freeRun(GameEngine engine, Point from, Direction d) {
+        int x = from.x;
+        int y = from.y;
+        for(int steps = 0; steps < LOOKAHEAD; steps++) {
+            switch(d) {
+                case UP: y--; break;
+                case DOWN: y++; break;
+                case LEFT: x--; break;
+                case RIGHT: x++; break;
+            }
+            if(engine.isBlocked(x, y)) return steps;
+        }
+        return LOOKAHEAD;
+    }
+}
@@ -0,0 +1,23 @@
+package tron;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event covering one game tick: moving both players
+ * and checking collisions.
+ */
+@Name("tron.Tick")
+@Label("Game Tick")
+@Category("Tron")
+@Description("Duration of one game loop step")
+public class TickEvent extends Event {
+    @Label("Tick")
+    public long tick;
+
+    @Label("Level")
+    public String level;
+}
@@ -0,0 +1,36 @@
+package tron;
+
+/**
+ * Game mode that ends the round after a fixed number of ticks. The team
+ * whose trails are longest in total at that point wins; equal lengths are
+ * a draw.
+ */
+public class TimeLimitMode implements GameMode {
+    /** Number of ticks a round lasts, 90 seconds at the normal speed. */
+    public static final int TICK_LIMIT = 600;
+
+    @Override
+    public String getName() {
+        return "Time Limit";
+    }
+
+    @Override
+    public void afterMove(GameEngine engine) {
+        if(engine.getTickCount() < TICK_LIMIT) return;
+        int longest = -1;
+        int best = MatchResult.NO_TEAM;
+        for(int team = 0; team < engine.getTeamCount(); team++) {
+            int length = 0;
+            for(int i = 0; i < engine.getPlayerCount(); i++) {
+                if(engine.getPlayer(i).getTeam() == team) length += engine.getTrail(i).getCellCount();
+            }
+            if(length > longest) {
+                longest = length;
+                best = team;
+            } else if(length == longest) {
+                best = MatchResult.NO_TEAM;
+            }
+        }
+        engine.endRound(best);
+    }
+}
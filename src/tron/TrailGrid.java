@@ -0,0 +1,172 @@
+package tron;
+
+import java.awt.Point;
+
+/**
+ * Occupancy grid for the light-cycle trails.
+ * Stores, for every cell, which player left a trail there and which
+ * neighbouring cells the trail continues into, so renderers can draw
+ * connected segments and corners. Changed cells are logged so that
+ * renderers only need to redraw what changed since the last frame.
+ */
+public class TrailGrid {
+    /** Owner value of a cell without a trail. */
+    public static final int EMPTY = 0;
+
+    /** Link bit for a trail continuing into the cell above. */
+    public static final int LINK_UP = 1;
+    /** Link bit for a trail continuing into the cell below. */
+    public static final int LINK_DOWN = 2;
+    /** Link bit for a trail continuing into the cell to the left. */
+    public static final int LINK_LEFT = 4;
+    /** Link bit for a trail continuing into the cell to the right. */
+    public static final int LINK_RIGHT = 8;
+
+    private static final int MAX_LOGGED_CHANGES = 4096;
+
+    private final int width;
+    private final int height;
+    private final byte[] owners;
+    private final byte[] links;
+    private final int[] changes = new int[MAX_LOGGED_CHANGES];
+    private int changeCount;
+    private boolean changesOverflowed;
+
+    /**
+     * Creates an empty grid.
+     *
+     * @param width The width of the level in cells
+     * @param height The height of the level in cells
+     */
+    public TrailGrid(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.owners = new byte[width * height];
+        this.links = new byte[width * height];
+    }
+
+    /**
+     * @return The width of the grid in cells
+     */
+    public int getWidth() { return width; }
+
+    /**
+     * @return The height of the grid in cells
+     */
+    public int getHeight() { return height; }
+
+    /**
+     * Marks a cell as part of a player's trail.
+     * Cells outside the grid are ignored.
+     *
+     * @param x X-coordinate of the cell
+     * @param y Y-coordinate of the cell
+     * @param owner The owning player (1-based)
+     * @param linkMask Combination of the {@code LINK_*} bits
+     */
+    public void set(int x, int y, int owner, int linkMask) {
+        if(!contains(x, y)) return;
+        int index = y * width + x;
+        owners[index] = (byte)owner;
+        links[index] = (byte)linkMask;
+        logChange(index);
+    }
+
+    /**
+     * Removes the trail from a cell.
+     *
+     * @param x X-coordinate of the cell
+     * @param y Y-coordinate of the cell
+     */
+    public void clear(int x, int y) {
+        set(x, y, EMPTY, 0);
+    }
+
+    /**
+     * @param x X-coordinate of the cell
+     * @param y Y-coordinate of the cell
+     * @return The owning player, or {@link #EMPTY} for free or out-of-range cells
+     */
+    public int getOwner(int x, int y) {
+        if(!contains(x, y)) return EMPTY;
+        return owners[y * width + x];
+    }
+
+    /**
+     * @param x X-coordinate of the cell
+     * @param y Y-coordinate of the cell
+     * @return The {@code LINK_*} bits of the cell
+     */
+    public int getLinks(int x, int y) {
+        if(!contains(x, y)) return 0;
+        return links[y * width + x];
+    }
+
+    /**
+     * @param x X-coordinate to check
+     * @param y Y-coordinate to check
+     * @return true if the coordinates are inside the grid
+     */
+    public boolean contains(int x, int y) {
+        return x >= 0 && y >= 0 && x < width && y < height;
+    }
+
+    /**
+     * @return The number of cells changed since the last {@link #clearChanges()}
+     */
+    public int getChangeCount() {
+        return changeCount;
+    }
+
+    /**
+     * Returns the linear index ({@code y * width + x}) of a logged change.
+     *
+     * @param i Index into the change log, below {@link #getChangeCount()}
+     * @return The changed cell index
+     */
+    public int getChange(int i) {
+        return changes[i];
+    }
+
+    /**
+     * @return true if more cells changed than the log can hold, in which case
+     *         readers should redraw the whole grid
+     */
+    public boolean isChangeLogOverflowed() {
+        return changesOverflowed;
+    }
+
+    /**
+     * Empties the change log after a reader has processed it.
+     */
+    public void clearChanges() {
+        changeCount = 0;
+        changesOverflowed = false;
+    }
+
+    /**
+     * Computes the link bit pointing from one cell towards an adjacent cell.
+     *
+     * @param from The cell the link starts at
+     * @param to The adjacent cell
+     * @return The matching {@code LINK_*} bit, or 0 if the cells are not adjacent
+     */
+    public static int linkTowards(Point from, Point to) {
+        int dx = to.x - from.x;
+        int dy = to.y - from.y;
+        if(dx == 0 && dy == -1) return LINK_UP;
+        if(dx == 0 && dy == 1) return LINK_DOWN;
+        if(dx == -1 && dy == 0) return LINK_LEFT;
+        if(dx == 1 && dy == 0) return LINK_RIGHT;
+        return 0;
+    }
+
+    private void logChange(int index) {
+        if(changesOverflowed) return;
+        if(changeCount == changes.length) {
+            changesOverflowed = true;
+            return;
+        }
+        changes[changeCount++] = index;
+    }
+}
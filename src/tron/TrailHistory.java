@@ -0,0 +1,280 @@
+package tron;
+
+import java.awt.Point;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Ordered history of one player's trail, stored as run-length segments.
+ * Each segment is a start cell, a direction and a length, so a straight run
+ * of any length costs the same as a single cell and memory grows with the
+ * number of turns rather than the number of cells. Cells can be removed from
+ * either end, which supports undo and trails that fade from the tail.
+ *
+ * The history only records order; use {@link TrailGrid} for occupancy lookups.
+ */
+public class TrailHistory {
+    /**
+     * Receives trail cells in the order they were laid down.
+     */
+    public interface CellVisitor {
+        /**
+         * @param x X-coordinate of the cell
+         * @param y Y-coordinate of the cell
+         */
+        void visit(int x, int y);
+    }
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private int[] startX = new int[8];
+    private int[] startY = new int[8];
+    private byte[] directions = new byte[8];
+    private int[] lengths = new int[8];
+    private int first;
+    private int end;
+    private int cellCount;
+
+    /**
+     * Appends the next cell of the trail. Extends the last segment when the
+     * cell continues it in a straight line, otherwise starts a new segment.
+     *
+     * @param x X-coordinate of the cell
+     * @param y Y-coordinate of the cell
+     */
+    public void append(int x, int y) {
+        cellCount++;
+        if(end > first) {
+            int last = end - 1;
+            int length = lengths[last];
+            int lastX = startX[last] + dx(directions[last]) * (length - 1);
+            int lastY = startY[last] + dy(directions[last]) * (length - 1);
+            int dir = directionBetween(lastX, lastY, x, y);
+            if(dir >= 0 && (length == 1 || dir == directions[last])) {
+                directions[last] = (byte)dir;
+                lengths[last] = length + 1;
+                return;
+            }
+        }
+        if(end == lengths.length) {
+            grow();
+        }
+        startX[end] = x;
+        startY[end] = y;
+        directions[end] = 0;
+        lengths[end] = 1;
+        end++;
+    }
+
+    /**
+     * Removes the most recently added cell.
+     *
+     * @param removed Receives the removed cell, may be null
+     * @return false if the history was empty
+     */
+    public boolean removeLast(Point removed) {
+        if(cellCount == 0) return false;
+        int last = end - 1;
+        int length = lengths[last];
+        if(removed != null) {
+            removed.setLocation(startX[last] + dx(directions[last]) * (length - 1),
+                                startY[last] + dy(directions[last]) * (length - 1));
+        }
+        if(length == 1) {
+            end--;
+        } else {
+            lengths[last] = length - 1;
+        }
+        cellCount--;
+        return true;
+    }
+
+    /**
+     * Removes the oldest cell.
+     *
+     * @param removed Receives the removed cell, may be null
+     * @return false if the history was empty
+     */
+    public boolean removeFirst(Point removed) {
+        if(cellCount == 0) return false;
+        if(removed != null) {
+            removed.setLocation(startX[first], startY[first]);
+        }
+        if(lengths[first] == 1) {
+            first++;
+        } else {
+            startX[first] += dx(directions[first]);
+            startY[first] += dy(directions[first]);
+            lengths[first]--;
+        }
+        cellCount--;
+        return true;
+    }
+
+    /**
+     * Reads the oldest cell without removing it.
+     *
+     * @param cell Receives the oldest cell
+     * @return false if the history is empty
+     */
+    public boolean peekFirst(Point cell) {
+        if(cellCount == 0) return false;
+        cell.setLocation(startX[first], startY[first]);
+        return true;
+    }
+
+    /**
+     * Removes every cell.
+     */
+    public void clear() {
+        first = 0;
+        end = 0;
+        cellCount = 0;
+    }
+
+    /**
+     * Visits every cell from oldest to newest.
+     *
+     * @param visitor Receives the cells
+     */
+    public void forEachCell(CellVisitor visitor) {
+        for(int s = first; s < end; s++) {
+            int x = startX[s];
+            int y = startY[s];
+            int stepX = dx(directions[s]);
+            int stepY = dy(directions[s]);
+            for(int i = 0; i < lengths[s]; i++) {
+                visitor.visit(x, y);
+                x += stepX;
+                y += stepY;
+            }
+        }
+    }
+
+    /**
+     * @return The number of cells in the trail
+     */
+    public int getCellCount() {
+        return cellCount;
+    }
+
+    /**
+     * @return The number of straight segments in the trail
+     */
+    public int getSegmentCount() {
+        return end - first;
+    }
+
+    /**
+     * @param segment 0-based segment index, oldest first
+     * @return The segment's first cell
+     */
+    public Point getSegmentStart(int segment) {
+        return new Point(startX[first + segment], startY[first + segment]);
+    }
+
+    /**
+     * @param segment 0-based segment index, oldest first
+     * @return The direction the segment runs in
+     */
+    public Direction getSegmentDirection(int segment) {
+        return DIRECTIONS[directions[first + segment]];
+    }
+
+    /**
+     * @param segment 0-based segment index, oldest first
+     * @return The number of cells in the segment
+     */
+    public int getSegmentLength(int segment) {
+        return lengths[first + segment];
+    }
+
+    /**
+     * Writes the segments in a compact binary form.
+     *
+     * @param out The stream to write to
+     * @throws IOException if writing fails
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(end - first);
+        for(int s = first; s < end; s++) {
+            out.writeShort(startX[s]);
+            out.writeShort(startY[s]);
+            out.writeByte(directions[s]);
+            out.writeInt(lengths[s]);
+        }
+    }
+
+    /**
+     * Replaces the contents with segments written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in The stream to read from
+     * @throws IOException if reading fails
+     */
+    public void readFrom(DataInput in) throws IOException {
+        clear();
+        int count = in.readInt();
+        if(count < 0) throw new IOException("Corrupt trail segment count " + count);
+        if(lengths.length < count) {
+            startX = new int[count];
+            startY = new int[count];
+            directions = new byte[count];
+            lengths = new int[count];
+        }
+        for(int s = 0; s < count; s++) {
+            startX[s] = in.readShort();
+            startY[s] = in.readShort();
+            directions[s] = in.readByte();
+            lengths[s] = in.readInt();
+            if(directions[s] < 0 || directions[s] >= DIRECTIONS.length || lengths[s] < 1) {
+                throw new IOException("Corrupt trail segment " + s);
+            }
+            cellCount += lengths[s];
+        }
+        end = count;
+    }
+
+    private void grow() {
+        // Reclaim segments already removed from the front before growing
+        int live = end - first;
+        int capacity = live * 2 > lengths.length ? lengths.length * 2 : lengths.length;
+        startX = compact(startX, capacity, live);
+        startY = compact(startY, capacity, live);
+        lengths = compact(lengths, capacity, live);
+        byte[] newDirections = new byte[capacity];
+        System.arraycopy(directions, first, newDirections, 0, live);
+        directions = newDirections;
+        first = 0;
+        end = live;
+    }
+
+    private int[] compact(int[] values, int capacity, int live) {
+        int[] result = capacity == values.length ? values : Arrays.copyOf(values, capacity);
+        System.arraycopy(values, first, result, 0, live);
+        return result;
+    }
+
+    private static int directionBetween(int fromX, int fromY, int toX, int toY) {
+        int dx = toX - fromX;
+        int dy = toY - fromY;
+        if(dx == 0 && dy == -1) return Direction.UP.ordinal();
+        if(dx == 0 && dy == 1) return Direction.DOWN.ordinal();
+        if(dx == -1 && dy == 0) return Direction.LEFT.ordinal();
+        if(dx == 1 && dy == 0) return Direction.RIGHT.ordinal();
+        return -1;
+    }
+
+    private static int dx(int direction) {
+        if(direction == Direction.LEFT.ordinal()) return -1;
+        if(direction == Direction.RIGHT.ordinal()) return 1;
+        return 0;
+    }
+
+    private static int dy(int direction) {
+        if(direction == Direction.UP.ordinal()) return -1;
+        if(direction == Direction.DOWN.ordinal()) return 1;
+        return 0;
+    }
+}